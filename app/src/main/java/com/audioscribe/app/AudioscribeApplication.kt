@@ -1,12 +1,25 @@
 package com.audioscribe.app
 
 import android.app.Application
+import android.content.pm.ApplicationInfo
+import android.util.Log
 import androidx.work.Configuration
 import androidx.work.WorkManager
 import androidx.work.PeriodicWorkRequestBuilder
 import androidx.work.ExistingPeriodicWorkPolicy
+import com.audioscribe.app.data.network.NetworkClient
+import com.audioscribe.app.data.network.RequestHedger
+import com.audioscribe.app.data.network.WhisperRateLimiter
+import com.audioscribe.app.data.repository.TranscriptionQueueRepository
 import com.audioscribe.app.worker.FileCleanupWorker
+import com.audioscribe.app.worker.TranscriptionWorker
+import com.audioscribe.app.utils.FileManager
+import com.audioscribe.app.utils.TranscriptionSettingsStore
 import com.audioscribe.app.utils.WorkManagerConfig
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
 import java.util.concurrent.TimeUnit
 
 /**
@@ -15,14 +28,55 @@ import java.util.concurrent.TimeUnit
  */
 class AudioscribeApplication : Application(), Configuration.Provider {
     
+    companion object {
+        private const val TAG = "AudioscribeApplication"
+    }
+    
+    private val applicationScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    
     override fun onCreate() {
         super.onCreate()
         
+        // Before any chunk writer exists in this process, repair chunks a killed one left behind
+        recoverInterruptedChunks()
+        
         // Initialize WorkManager with custom configuration if needed
         // WorkManager.initialize(this, workManagerConfiguration)
         
         // Schedule periodic file cleanup
         scheduleFileCleanup()
+        
+        // Client-side rate limits are configured per API key in Settings
+        WhisperRateLimiter.limitsProvider = { apiKey -> TranscriptionSettingsStore.getRateLimits(this, apiKey) }
+        RequestHedger.enabled = TranscriptionSettingsStore.isHedgingEnabled(this)
+        
+        // Body logging is a debug-only opt-in; release builds never install the logger
+        NetworkClient.bodyLoggingAllowed = (applicationInfo.flags and ApplicationInfo.FLAG_DEBUGGABLE) != 0
+        if (NetworkClient.bodyLoggingAllowed) {
+            NetworkClient.setBodyLoggingEnabled(TranscriptionSettingsStore.isBodyLoggingEnabled(this))
+        }
+        
+        // Finish chunks a previous process left in the transcription queue
+        TranscriptionWorker.resume(this)
+    }
+    
+    /**
+     * Repair preallocated WAV chunks from a previous process. Runs once per process, off the
+     * main thread; files written since the process started and chunks already queued for
+     * transcription are skipped.
+     */
+    private fun recoverInterruptedChunks() {
+        val processStartedAt = System.currentTimeMillis()
+        applicationScope.launch {
+            try {
+                val queuedPaths = TranscriptionQueueRepository(this@AudioscribeApplication)
+                    .getPendingChunks()
+                    .mapTo(HashSet()) { it.audioFilePath }
+                FileManager.recoverInterruptedChunks(this@AudioscribeApplication, processStartedAt, queuedPaths)
+            } catch (e: Exception) {
+                Log.e(TAG, "Error recovering interrupted chunks", e)
+            }
+        }
     }
     
     /**
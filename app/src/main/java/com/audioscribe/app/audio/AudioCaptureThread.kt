@@ -0,0 +1,170 @@
+package com.audioscribe.app.audio
+
+import android.media.AudioRecord
+import android.os.Process
+import android.os.SystemClock
+import android.util.Log
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ReceiveChannel
+
+/**
+ * Dedicated real-time thread that owns an [AudioRecord] for the length of one recording.
+ *
+ * It starts the record, reads it block by block straight into [ring] at
+ * THREAD_PRIORITY_URGENT_AUDIO, and stops and releases the record when it exits. Nothing else
+ * runs on this thread, so Room queries, uploads or workers on the IO dispatcher cannot
+ * delay a read. Each read that stores audio is announced on [blocksAvailable]. The audio
+ * itself stays in the ring, so the hand-off allocates nothing per block. The channel is
+ * closed when capture ends. The spacing of read() returns is recorded in [jitter].
+ * Every read() call, including a failed one, is counted in [metrics].
+ *
+ * While [paused], the record keeps running and is still read, but the audio is discarded
+ * instead of stored, so resuming takes one read rather than a new record or projection.
+ */
+class AudioCaptureThread(
+    private val record: AudioRecord,
+    private val ring: PcmRingBuffer,
+    private val copyMeter: CopyRateMeter,
+    val jitter: ReadJitterHistogram,
+    val metrics: CaptureMetrics,
+    private val onFirstSample: () -> Unit
+) : Thread(THREAD_NAME) {
+
+    companion object {
+        private const val TAG = "AudioCaptureThread"
+        private const val THREAD_NAME = "AudioscribeCapture"
+        private const val MAX_CONSECUTIVE_ERRORS = 10 // Transient AudioRecord.ERROR returns tolerated in a row
+    }
+
+    // Conflated: the writer only needs to know that the ring has something new, not how often
+    private val signal = Channel<Unit>(Channel.CONFLATED)
+
+    /**
+     * Receives an element whenever new audio is in the ring; closed once capture has ended
+     */
+    val blocksAvailable: ReceiveChannel<Unit> get() = signal
+
+    @Volatile
+    private var running = true
+
+    @Volatile
+    private var paused = false
+    private var inPause = false // Capture thread only
+    private var pausedAtMs = 0L
+
+    /**
+     * Number of pauses that have taken effect. Updated after the last pre-pause block is in the
+     * ring, so a consumer that sees a new value and then finds the ring empty has all of it.
+     */
+    @Volatile
+    var pauseCount = 0
+        private set
+
+    /**
+     * Length of the most recent completed pause, set just before the first resumed block is stored
+     */
+    @Volatile
+    var lastPauseDurationMs = 0L
+        private set
+
+    val isPaused: Boolean get() = paused
+
+    /**
+     * elapsedRealtime() when the first audio was stored, or -1 before that
+     */
+    @Volatile
+    var firstSampleAtMs = -1L
+        private set
+
+    /**
+     * Discard captured audio ([value] true) or store it again, without touching the record
+     */
+    fun setPaused(value: Boolean) {
+        paused = value
+    }
+
+    /**
+     * Ask the loop to exit after the current read; the record is released by this thread
+     */
+    fun requestStop() {
+        running = false
+    }
+
+    override fun run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO)
+        val source = PcmRingBuffer.PcmSource { target, sizeInBytes ->
+            val callStart = SystemClock.elapsedRealtimeNanos()
+            val n = record.read(target, sizeInBytes)
+            if (n >= 0) metrics.recordRead(callStart, SystemClock.elapsedRealtimeNanos(), n)
+            n
+        }
+        var firstSample = true
+        var consecutiveErrors = 0
+        try {
+            record.startRecording()
+            metrics.start(SystemClock.elapsedRealtimeNanos())
+            while (running) {
+                val bytesRead = if (paused) {
+                    enterPause()
+                    ring.discard(source)
+                } else {
+                    leavePause()
+                    ring.fill(source)
+                }
+                if (bytesRead >= 0) {
+                    jitter.record(SystemClock.elapsedRealtimeNanos())
+                    consecutiveErrors = 0
+                }
+                if (bytesRead > 0 && !inPause) {
+                    copyMeter.add(bytesRead)
+                    if (firstSample) {
+                        firstSample = false
+                        firstSampleAtMs = SystemClock.elapsedRealtime()
+                        onFirstSample()
+                    }
+                    signal.trySend(Unit)
+                } else if (bytesRead < 0) {
+                    metrics.recordReadError()
+                    if (bytesRead == AudioRecord.ERROR && ++consecutiveErrors < MAX_CONSECUTIVE_ERRORS) {
+                        Log.w(TAG, "AudioRecord read error: ERROR, retrying")
+                        continue
+                    }
+                    Log.e(TAG, "AudioRecord read error: ${errorName(bytesRead)}")
+                    break
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Capture loop failed", e)
+        } finally {
+            metrics.stop(SystemClock.elapsedRealtimeNanos())
+            try {
+                record.stop()
+            } catch (_: Exception) { }
+            record.release()
+            signal.close()
+            Log.d(TAG, "Capture loop exited; ${jitter.snapshot()}")
+        }
+    }
+
+    private fun enterPause() {
+        if (inPause) return
+        inPause = true
+        pausedAtMs = SystemClock.elapsedRealtime()
+        pauseCount++
+        signal.trySend(Unit)
+    }
+
+    private fun leavePause() {
+        if (!inPause) return
+        inPause = false
+        lastPauseDurationMs = SystemClock.elapsedRealtime() - pausedAtMs
+    }
+
+    private fun errorName(code: Int): String = when (code) {
+        AudioRecord.ERROR_INVALID_OPERATION -> "ERROR_INVALID_OPERATION"
+        AudioRecord.ERROR_BAD_VALUE -> "ERROR_BAD_VALUE"
+        AudioRecord.ERROR_DEAD_OBJECT -> "ERROR_DEAD_OBJECT"
+        AudioRecord.ERROR -> "ERROR"
+        else -> code.toString()
+    }
+}
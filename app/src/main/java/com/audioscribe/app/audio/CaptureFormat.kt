@@ -0,0 +1,74 @@
+package com.audioscribe.app.audio
+
+import android.media.MediaMetadataRetriever
+import android.util.Log
+import java.io.File
+import java.io.RandomAccessFile
+
+/**
+ * PCM formats used by the capture pipeline.
+ * AudioRecord delivers [CAPTURE_SAMPLE_RATE] stereo; chunks are written as
+ * [OUTPUT_SAMPLE_RATE] mono, which is what Whisper resamples to server-side anyway.
+ */
+object CaptureFormat {
+
+    private const val TAG = "CaptureFormat"
+
+    const val CAPTURE_SAMPLE_RATE = 44100
+    const val CAPTURE_CHANNELS = 2
+
+    const val OUTPUT_SAMPLE_RATE = 16000
+    const val OUTPUT_CHANNELS = 1
+
+    const val BYTES_PER_SAMPLE = 2 // 16-bit PCM
+    const val CAPTURE_BYTES_PER_SECOND = CAPTURE_SAMPLE_RATE * CAPTURE_CHANNELS * BYTES_PER_SAMPLE
+    const val OUTPUT_BYTES_PER_SECOND = OUTPUT_SAMPLE_RATE * OUTPUT_CHANNELS * BYTES_PER_SAMPLE
+
+    const val WAV_HEADER_BYTES = 44
+
+    /**
+     * Estimate the duration of a chunk in any [ChunkEncoding].
+     * Used when the producer did not record the duration explicitly.
+     * @return Duration in milliseconds, or 0 if it cannot be determined
+     */
+    fun estimateDurationMs(file: File): Long {
+        if (ChunkEncoding.forFile(file) == ChunkEncoding.WAV) {
+            return estimateWavDurationMs(file)
+        }
+        val retriever = MediaMetadataRetriever()
+        return try {
+            retriever.setDataSource(file.absolutePath)
+            retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)?.toLongOrNull() ?: 0L
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not read duration of ${file.name}: ${e.message}")
+            0L
+        } finally {
+            retriever.release()
+        }
+    }
+
+    /**
+     * Estimate the duration of a WAV chunk from its header byte rate
+     * @return Duration in milliseconds, or 0 if the file is not a readable WAV
+     */
+    fun estimateWavDurationMs(file: File): Long {
+        return try {
+            RandomAccessFile(file, "r").use { raf ->
+                if (raf.length() < WAV_HEADER_BYTES) return 0L
+                val header = ByteArray(WAV_HEADER_BYTES)
+                raf.readFully(header)
+                if (header[0] != 'R'.code.toByte() || header[8] != 'W'.code.toByte()) return 0L
+                val byteRate = (header[28].toInt() and 0xff) or
+                    ((header[29].toInt() and 0xff) shl 8) or
+                    ((header[30].toInt() and 0xff) shl 16) or
+                    ((header[31].toInt() and 0xff) shl 24)
+                if (byteRate <= 0) return 0L
+                val dataBytes = (raf.length() - WAV_HEADER_BYTES).coerceAtLeast(0)
+                (dataBytes * 1000) / byteRate
+            }
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not read WAV header of ${file.name}: ${e.message}")
+            0L
+        }
+    }
+}
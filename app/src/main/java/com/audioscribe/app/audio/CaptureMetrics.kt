@@ -0,0 +1,170 @@
+package com.audioscribe.app.audio
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import kotlin.math.ceil
+
+/**
+ * Lock-free health counters for one recording, used to tell whether a session is missing audio.
+ *
+ * The capture thread reports every AudioRecord read ([recordRead], [recordReadError]).
+ * The writer reports chunk rotations and bytes written. Comparing the frames actually read
+ * with the frames the wall clock says should exist shows loss that happened inside the
+ * AudioRecord before the app ever saw it. Ring overruns, which happen after the read, are
+ * passed to [snapshot] separately.
+ * Recording methods never allocate. [snapshot] is safe from any thread.
+ */
+class CaptureMetrics(
+    private val sampleRate: Int,
+    private val frameBytes: Int,
+    private val gapThresholdNanos: Long
+) {
+
+    companion object {
+        /**
+         * Upper bounds of the read-call latency buckets in microseconds; the last bucket is open-ended
+         */
+        val READ_LATENCY_BUCKET_US = longArrayOf(250, 500, 1_000, 2_000, 5_000, 10_000, 20_000, 50_000, 100_000)
+    }
+
+    private val framesRead = AtomicLong(0)
+    private val readErrors = AtomicLong(0)
+    private val gapCount = AtomicLong(0)
+    private val gapNanos = AtomicLong(0)
+    private val readLatency = AtomicLongArray(READ_LATENCY_BUCKET_US.size + 1)
+    private val maxReadNanos = AtomicLong(0)
+    private val rotationCount = AtomicLong(0)
+    private val rotationTotalNanos = AtomicLong(0)
+    private val rotationMaxNanos = AtomicLong(0)
+    private val bytesWritten = AtomicLong(0)
+
+    @Volatile
+    private var startNanos = 0L
+    @Volatile
+    private var stopNanos = 0L
+    private var lastReturnNanos = 0L // Capture thread only
+
+    /**
+     * Start of the expected-frames clock: the moment the record starts delivering audio
+     */
+    fun start(nowNanos: Long) {
+        startNanos = nowNanos
+        lastReturnNanos = nowNanos
+    }
+
+    /**
+     * End of the expected-frames clock: the record has stopped delivering audio
+     */
+    fun stop(nowNanos: Long) {
+        stopNanos = nowNanos
+    }
+
+    /**
+     * A read() call spanning [callStartNanos, returnNanos) returned [bytes] bytes. Capture thread only.
+     */
+    fun recordRead(callStartNanos: Long, returnNanos: Long, bytes: Int) {
+        framesRead.addAndGet((bytes / frameBytes).toLong())
+
+        val latency = returnNanos - callStartNanos
+        val micros = latency / 1_000L
+        var bucket = 0
+        while (bucket < READ_LATENCY_BUCKET_US.size && micros >= READ_LATENCY_BUCKET_US[bucket]) bucket++
+        readLatency.incrementAndGet(bucket)
+        if (latency > maxReadNanos.get()) maxReadNanos.set(latency)
+
+        // Longer than the AudioRecord's own buffer between reads: its buffer must have overflowed
+        val interval = returnNanos - lastReturnNanos
+        lastReturnNanos = returnNanos
+        if (interval > gapThresholdNanos) {
+            gapCount.incrementAndGet()
+            gapNanos.addAndGet(interval - gapThresholdNanos)
+        }
+    }
+
+    fun recordReadError() {
+        readErrors.incrementAndGet()
+    }
+
+    fun recordRotation(durationNanos: Long) {
+        rotationCount.incrementAndGet()
+        rotationTotalNanos.addAndGet(durationNanos)
+        if (durationNanos > rotationMaxNanos.get()) rotationMaxNanos.set(durationNanos)
+    }
+
+    fun addBytesWritten(bytes: Long) {
+        bytesWritten.addAndGet(bytes)
+    }
+
+    /**
+     * @param droppedBytes Audio discarded after the read, e.g. by ring overruns
+     */
+    fun snapshot(droppedBytes: Long, nowNanos: Long): CaptureMetricsSnapshot {
+        val start = startNanos
+        val end = stopNanos.takeIf { it > 0 } ?: nowNanos
+        val elapsed = if (start > 0) end - start else 0L
+        val latencies = LongArray(readLatency.length()) { readLatency.get(it) }
+        val rotations = rotationCount.get()
+        return CaptureMetricsSnapshot(
+            durationMs = elapsed / 1_000_000L,
+            framesRead = framesRead.get(),
+            expectedFrames = elapsed * sampleRate / 1_000_000_000L,
+            droppedFrames = droppedBytes / frameBytes,
+            gapCount = gapCount.get(),
+            gapMs = gapNanos.get() / 1_000_000L,
+            readErrorCount = readErrors.get(),
+            readLatencyP50Us = percentileUpperUs(latencies, 50.0),
+            readLatencyP95Us = percentileUpperUs(latencies, 95.0),
+            readLatencyP99Us = percentileUpperUs(latencies, 99.0),
+            readLatencyMaxUs = maxReadNanos.get() / 1_000L,
+            rotationCount = rotations,
+            rotationAvgMs = if (rotations > 0) rotationTotalNanos.get() / rotations / 1_000_000.0 else 0.0,
+            rotationMaxMs = rotationMaxNanos.get() / 1_000_000.0,
+            bytesWritten = bytesWritten.get()
+        )
+    }
+
+    /**
+     * Upper bound of the bucket holding the [percentile]th read; the observed maximum for the
+     * open-ended bucket, null when nothing has been read
+     */
+    private fun percentileUpperUs(counts: LongArray, percentile: Double): Long? {
+        val n = counts.sum()
+        if (n == 0L) return null
+        val rank = ceil(n * percentile / 100.0).toLong().coerceAtLeast(1)
+        var seen = 0L
+        for (i in counts.indices) {
+            seen += counts[i]
+            if (seen >= rank) return READ_LATENCY_BUCKET_US.getOrNull(i) ?: (maxReadNanos.get() / 1_000L)
+        }
+        return null
+    }
+}
+
+/**
+ * Point-in-time view of a recording's [CaptureMetrics]
+ */
+data class CaptureMetricsSnapshot(
+    val durationMs: Long,
+    val framesRead: Long,
+    val expectedFrames: Long,
+    val droppedFrames: Long,
+    val gapCount: Long,
+    val gapMs: Long,
+    val readErrorCount: Long,
+    val readLatencyP50Us: Long?,
+    val readLatencyP95Us: Long?,
+    val readLatencyP99Us: Long?,
+    val readLatencyMaxUs: Long,
+    val rotationCount: Long,
+    val rotationAvgMs: Double,
+    val rotationMaxMs: Double,
+    val bytesWritten: Long
+) {
+    override fun toString(): String {
+        return "Capture ${durationMs} ms: read $framesRead/$expectedFrames frames, $droppedFrames dropped, " +
+            "$gapCount gaps (${gapMs} ms), $readErrorCount read errors, read p50/p95/p99 " +
+            "${readLatencyP50Us}/${readLatencyP95Us}/${readLatencyP99Us} us (max $readLatencyMaxUs), " +
+            "$rotationCount rotations (avg ${"%.1f".format(rotationAvgMs)} ms, max ${"%.1f".format(rotationMaxMs)} ms), " +
+            "$bytesWritten bytes written"
+    }
+}
@@ -0,0 +1,267 @@
+package com.audioscribe.app.audio
+
+import kotlin.math.log10
+import kotlin.math.max
+import kotlin.math.sqrt
+
+/**
+ * Places chunk boundaries at pauses instead of at a fixed length.
+ *
+ * Samples pass straight through to the [Listener] until the chunk reaches the window minimum.
+ * From there they are held in a lookahead buffer with per-frame energies. The chunk is cut:
+ * - early, in the middle of the first sustained quiet run (a natural pause), or
+ * - at the window maximum, at the quietest point of the buffered audio.
+ * A frame is quiet when it is near the chunk's quietest frame and also either below an absolute
+ * ceiling or well below the chunk's mean level, so steady audio such as music or a fan does not
+ * read as one long pause.
+ * Audio after the cut is carried into the next chunk, so nothing is dropped.
+ * Buffers are sized up front for the widest window [sizing] can return, so every chunk can
+ * reach its maximum; [offer] never allocates.
+ */
+class ChunkBoundaryPlanner(
+    private val sampleRate: Int,
+    private val sizing: ChunkSizingPolicy,
+    private val listener: Listener,
+    frameMs: Int = DEFAULT_FRAME_MS
+) {
+
+    /**
+     * Receives the planned stream: samples for the current chunk and the cuts between chunks
+     */
+    interface Listener {
+        fun onSamples(samples: ShortArray, offset: Int, count: Int)
+
+        /**
+         * The current chunk is complete; following samples belong to a chunk sized by [next]
+         */
+        fun onBoundary(next: ChunkWindow)
+    }
+
+    companion object {
+        private const val DEFAULT_FRAME_MS = 20
+        private const val QUIET_MARGIN_DB = 6.0  // Within this of the chunk's quietest frame counts as a pause
+        private const val PAUSE_CEILING_DB = -50.0 // Quiet regardless of the chunk's level
+        private const val MIN_DROP_DB = 10.0     // Otherwise a pause must be this far below the chunk's mean
+        private const val QUIET_RUN_MS = 400     // Pause length that triggers an early cut
+        private const val SMOOTHING_FRAMES = 5   // Energy averaged over ~100 ms when searching the minimum
+    }
+
+    private val frameSamples = sampleRate * frameMs / 1000
+    private val quietRunFrames = QUIET_RUN_MS / frameMs
+
+    private val lookahead = ShortArray(sizing.maxSpanSeconds.coerceAtLeast(1) * sampleRate)
+    private val frameDb = DoubleArray(lookahead.size / frameSamples + 1)
+
+    private var minSamples = 0L
+    private var windowSamples = 0
+    private var chunkSamples = 0L
+
+    private var inLookahead = false
+    private var lookLen = 0
+    private var frames = 0
+    private var quietRun = 0
+    private var earlyCutFrame = -1
+
+    // Partial-frame energy accumulator and the chunk's quietest frame so far
+    private var sumSquares = 0.0
+    private var samplesInFrame = 0
+    private var floorDb = Double.MAX_VALUE
+    private var dbSum = 0.0
+    private var dbFrames = 0
+
+    /**
+     * Window applied to the chunk currently being built
+     */
+    var currentWindow: ChunkWindow = ChunkWindow(0, 0)
+        private set
+
+    init {
+        startChunk()
+    }
+
+    fun offer(samples: ShortArray, offset: Int, count: Int) {
+        var pos = offset
+        var remaining = count
+        while (remaining > 0) {
+            if (!inLookahead) {
+                val toMin = minSamples - chunkSamples
+                if (toMin > 0) {
+                    val n = minOf(remaining.toLong(), toMin).toInt()
+                    trackFloor(samples, pos, n)
+                    listener.onSamples(samples, pos, n)
+                    chunkSamples += n
+                    pos += n
+                    remaining -= n
+                    continue
+                }
+                enterLookahead()
+            }
+
+            val n = minOf(remaining, windowSamples - lookLen)
+            System.arraycopy(samples, pos, lookahead, lookLen, n)
+            scanFrames(lookLen, lookLen + n)
+            lookLen += n
+            pos += n
+            remaining -= n
+
+            if (earlyCutFrame >= 0) {
+                cutAt(earlyCutFrame * frameSamples)
+            } else if (lookLen >= windowSamples) {
+                cutAt(quietestPoint())
+            }
+        }
+    }
+
+    /**
+     * Emit any held-back audio into the current chunk (e.g. when recording stops)
+     */
+    fun flush() {
+        if (lookLen > 0) {
+            listener.onSamples(lookahead, 0, lookLen)
+            chunkSamples += lookLen
+        }
+        lookLen = 0
+        inLookahead = false
+    }
+
+    /**
+     * End the current chunk here, with all held-back audio, and start the next one (e.g. on pause)
+     */
+    fun cutNow() {
+        flush()
+        startChunk()
+        listener.onBoundary(currentWindow)
+    }
+
+    /**
+     * Cut the current chunk [cut] samples into the lookahead and carry the rest forward.
+     * Loops instead of recursing when the carried audio already fills the next window.
+     */
+    private fun cutAt(cut: Int) {
+        var cutPos = cut
+        while (true) {
+            cutPos = cutPos.coerceIn(0, lookLen)
+            if (cutPos > 0) listener.onSamples(lookahead, 0, cutPos)
+            startChunk()
+            listener.onBoundary(currentWindow)
+
+            var start = cutPos
+            val direct = minOf((lookLen - start).toLong(), minSamples).toInt()
+            if (direct > 0) {
+                trackFloor(lookahead, start, direct)
+                listener.onSamples(lookahead, start, direct)
+                chunkSamples += direct
+                start += direct
+            }
+
+            val rest = lookLen - start
+            lookLen = 0
+            if (rest == 0) return
+
+            // Remainder is past the new minimum: it becomes the start of the next lookahead
+            System.arraycopy(lookahead, start, lookahead, 0, rest)
+            enterLookahead()
+            scanFrames(0, rest)
+            lookLen = rest
+
+            cutPos = when {
+                earlyCutFrame >= 0 -> earlyCutFrame * frameSamples
+                lookLen >= windowSamples -> quietestPoint()
+                else -> return
+            }
+        }
+    }
+
+    private fun startChunk() {
+        currentWindow = sizing.nextWindow()
+        minSamples = currentWindow.minSeconds.toLong() * sampleRate
+        val span = (currentWindow.maxSeconds - currentWindow.minSeconds).toLong() * sampleRate
+        windowSamples = span.coerceIn(frameSamples.toLong(), lookahead.size.toLong()).toInt()
+        chunkSamples = 0L
+        inLookahead = false
+        floorDb = Double.MAX_VALUE
+        dbSum = 0.0
+        dbFrames = 0
+        sumSquares = 0.0
+        samplesInFrame = 0
+    }
+
+    private fun enterLookahead() {
+        inLookahead = true
+        lookLen = 0
+        frames = 0
+        quietRun = 0
+        earlyCutFrame = -1
+        sumSquares = 0.0
+        samplesInFrame = 0
+    }
+
+    /**
+     * Energy bookkeeping for audio written before the lookahead starts
+     */
+    private fun trackFloor(samples: ShortArray, offset: Int, count: Int) {
+        for (i in offset until offset + count) {
+            val s = samples[i].toInt()
+            sumSquares += (s * s).toDouble()
+            if (++samplesInFrame == frameSamples) {
+                addToLevel(completeFrame())
+            }
+        }
+    }
+
+    /**
+     * Per-frame energies for lookahead[from, to), detecting the first sustained pause
+     */
+    private fun scanFrames(from: Int, to: Int) {
+        for (i in from until to) {
+            val s = lookahead[i].toInt()
+            sumSquares += (s * s).toDouble()
+            if (++samplesInFrame == frameSamples) {
+                val db = completeFrame()
+                frameDb[frames++] = db
+                addToLevel(db)
+                quietRun = if (isPause(db)) quietRun + 1 else 0
+                if (quietRun >= quietRunFrames && earlyCutFrame < 0) {
+                    earlyCutFrame = frames - 1 - quietRunFrames / 2
+                }
+            }
+        }
+    }
+
+    private fun addToLevel(db: Double) {
+        floorDb = minOf(floorDb, db)
+        dbSum += db
+        dbFrames++
+    }
+
+    private fun isPause(db: Double): Boolean {
+        if (db >= floorDb + QUIET_MARGIN_DB) return false
+        return db <= PAUSE_CEILING_DB || db <= dbSum / dbFrames - MIN_DROP_DB
+    }
+
+    private fun completeFrame(): Double {
+        val rms = sqrt(sumSquares / samplesInFrame)
+        sumSquares = 0.0
+        samplesInFrame = 0
+        return 20 * log10(max(rms, 1.0) / Short.MAX_VALUE)
+    }
+
+    /**
+     * Sample offset at the centre of the quietest ~100 ms of the lookahead
+     */
+    private fun quietestPoint(): Int {
+        if (frames < SMOOTHING_FRAMES) return lookLen
+        var windowSum = 0.0
+        for (f in 0 until SMOOTHING_FRAMES) windowSum += frameDb[f]
+        var bestSum = windowSum
+        var bestStart = 0
+        for (f in SMOOTHING_FRAMES until frames) {
+            windowSum += frameDb[f] - frameDb[f - SMOOTHING_FRAMES]
+            if (windowSum < bestSum) {
+                bestSum = windowSum
+                bestStart = f - SMOOTHING_FRAMES + 1
+            }
+        }
+        return (bestStart + SMOOTHING_FRAMES / 2) * frameSamples
+    }
+}
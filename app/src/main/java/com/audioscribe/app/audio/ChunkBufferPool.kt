@@ -0,0 +1,45 @@
+package com.audioscribe.app.audio
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Off-heap buffers that hold finished chunks in memory between the writer and the upload stage.
+ *
+ * Buffers are direct, so a chunk never touches the Java heap, and they are reused across
+ * chunks. The total allocated is capped at [maxBytes]. When no buffer can be handed out,
+ * [acquire] returns null and the caller writes that chunk to disk instead, which is how
+ * backpressure from a slow upload reaches the writer.
+ */
+class ChunkBufferPool(private val maxBytes: Long) {
+
+    private val idle = ArrayList<ByteBuffer>()
+    private var allocatedBytes = 0L
+
+    /**
+     * A cleared buffer of at least [minBytes], or null if the pool is exhausted
+     */
+    @Synchronized
+    fun acquire(minBytes: Long): ByteBuffer? {
+        if (minBytes > Int.MAX_VALUE) return null
+        val reusable = idle.indexOfFirst { it.capacity() >= minBytes }
+        if (reusable >= 0) {
+            return idle.removeAt(reusable).apply { clear() }
+        }
+        // Idle buffers that are too small for this chunk are dropped to make room
+        while (allocatedBytes + minBytes > maxBytes && idle.isNotEmpty()) {
+            allocatedBytes -= idle.removeAt(idle.size - 1).capacity()
+        }
+        if (allocatedBytes + minBytes > maxBytes) return null
+        allocatedBytes += minBytes
+        return ByteBuffer.allocateDirect(minBytes.toInt()).order(ByteOrder.LITTLE_ENDIAN)
+    }
+
+    /**
+     * Return a buffer obtained from [acquire]; it must not be used afterwards
+     */
+    @Synchronized
+    fun release(buffer: ByteBuffer) {
+        idle.add(buffer)
+    }
+}
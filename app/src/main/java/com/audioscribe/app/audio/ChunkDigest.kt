@@ -0,0 +1,65 @@
+package com.audioscribe.app.audio
+
+import java.security.MessageDigest
+
+/**
+ * Streaming SHA-256 of one chunk's audio, updated alongside the sink as samples are written,
+ * so a chunk can be recognised by its content without reading the file back.
+ *
+ * The PCM is hashed rather than the file, so the result does not depend on the encoder or the
+ * WAV header, which is only completed when the chunk is finished. The sample format goes into
+ * the hash first, so the same samples at another rate or channel count count as different audio.
+ * Nothing allocates after construction.
+ */
+class ChunkDigest(
+    private val sampleRate: Int,
+    private val channels: Int
+) {
+
+    companion object {
+        private const val SCRATCH_SAMPLES = 4096
+    }
+
+    private val digest = MessageDigest.getInstance("SHA-256")
+    private val scratch = ByteArray(SCRATCH_SAMPLES * CaptureFormat.BYTES_PER_SAMPLE)
+
+    init {
+        reset()
+    }
+
+    /**
+     * Start hashing a new chunk
+     */
+    fun reset() {
+        digest.reset()
+        for (shift in 0 until 32 step 8) digest.update((sampleRate shr shift).toByte())
+        digest.update(channels.toByte())
+    }
+
+    /**
+     * Hash [count] interleaved samples from [offset], in the little-endian order they are stored in
+     */
+    fun update(samples: ShortArray, offset: Int, count: Int) {
+        var pos = offset
+        val end = offset + count
+        while (pos < end) {
+            val n = minOf(end - pos, SCRATCH_SAMPLES)
+            for (i in 0 until n) {
+                val s = samples[pos + i].toInt()
+                scratch[2 * i] = s.toByte()
+                scratch[2 * i + 1] = (s shr 8).toByte()
+            }
+            digest.update(scratch, 0, n * CaptureFormat.BYTES_PER_SAMPLE)
+            pos += n
+        }
+    }
+
+    /**
+     * Hex digest of everything hashed since [reset]; starts the next chunk
+     */
+    fun finish(): String {
+        val hex = digest.digest().joinToString("") { "%02x".format(it) }
+        reset()
+        return hex
+    }
+}
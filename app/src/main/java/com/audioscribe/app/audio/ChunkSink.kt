@@ -0,0 +1,96 @@
+package com.audioscribe.app.audio
+
+import android.media.MediaFormat
+import android.media.MediaMuxer
+import android.util.Log
+import java.io.File
+
+/**
+ * Destination for the 16-bit PCM produced by the writer stage.
+ * One sink instance is reused across chunk rotations: [open] starts a chunk file,
+ * [write] appends samples, [finish] finalizes the file and readies the sink for the next one.
+ */
+interface ChunkSink {
+
+    val encoding: ChunkEncoding
+
+    /**
+     * Start a new chunk in [file]
+     * @param expectedDataBytes Likely PCM size of the chunk, used to preallocate; 0 if unknown
+     */
+    fun open(file: File, expectedDataBytes: Long = 0L)
+
+    /**
+     * Append [count] interleaved samples starting at [offset]
+     */
+    fun write(samples: ShortArray, offset: Int, count: Int)
+
+    /**
+     * Finalize the current chunk
+     * @return Size of the finished file in bytes
+     */
+    fun finish(): Long
+
+    /**
+     * Release codec/file resources; the sink cannot be used afterwards
+     */
+    fun release()
+
+    companion object {
+        private const val TAG = "ChunkSink"
+
+        /**
+         * Create a sink for [encoding], falling back to WAV if no suitable encoder is available
+         */
+        fun create(encoding: ChunkEncoding, sampleRate: Int, channels: Int): ChunkSink {
+            if (encoding == ChunkEncoding.WAV) {
+                return MappedWavChunkWriter(sampleRate, channels)
+            }
+            return try {
+                EncodedChunkWriter(encoding, sampleRate, channels)
+            } catch (e: Exception) {
+                Log.w(TAG, "No ${encoding.name} encoder available, writing WAV chunks instead", e)
+                MappedWavChunkWriter(sampleRate, channels)
+            }
+        }
+    }
+}
+
+/**
+ * On-disk chunk formats
+ */
+enum class ChunkEncoding(
+    val extension: String,
+    val mimeType: String,
+    val codecMime: String?,
+    val muxerFormat: Int,
+    val bitRate: Int
+) {
+    WAV("wav", "audio/wav", null, -1, 0),
+    AAC("m4a", "audio/mp4", MediaFormat.MIMETYPE_AUDIO_AAC, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4, 32_000),
+    OPUS("ogg", "audio/ogg", MediaFormat.MIMETYPE_AUDIO_OPUS, MediaMuxer.OutputFormat.MUXER_OUTPUT_OGG, 24_000);
+
+    /**
+     * Approximate on-disk size of one second of output audio
+     */
+    val bytesPerSecond: Int
+        get() = bytesPerSecond(CaptureFormat.OUTPUT_CHANNELS)
+
+    /**
+     * Approximate on-disk size of one second of output audio with [channels] channels
+     */
+    fun bytesPerSecond(channels: Int): Int =
+        if (codecMime == null) CaptureFormat.OUTPUT_SAMPLE_RATE * channels * CaptureFormat.BYTES_PER_SAMPLE else bitRate / 8
+
+    companion object {
+        /**
+         * File extensions of every chunk format the app may leave on disk
+         */
+        val extensions: Set<String> = values().map { it.extension }.toSet()
+
+        fun forFile(file: File): ChunkEncoding? {
+            val extension = file.extension.lowercase()
+            return values().firstOrNull { it.extension == extension }
+        }
+    }
+}
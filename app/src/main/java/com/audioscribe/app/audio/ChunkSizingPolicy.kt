@@ -0,0 +1,74 @@
+package com.audioscribe.app.audio
+
+import com.audioscribe.app.data.network.WhisperApiService
+
+/**
+ * Window, in seconds, inside which the next chunk boundary is placed
+ */
+data class ChunkWindow(val minSeconds: Int, val maxSeconds: Int)
+
+/**
+ * User-selectable chunk length ranges
+ */
+enum class ChunkWindowPreset(val minSeconds: Int, val maxSeconds: Int, val latencySensitive: Boolean) {
+    LOW_LATENCY(10, 20, true),
+    BALANCED(20, 45, false),
+    LONG(45, 90, false)
+}
+
+/**
+ * Decides the boundary window for each new chunk.
+ *
+ * Latency-sensitive presets are used as-is. Otherwise, when the uplink is fast, chunks grow
+ * so that fewer requests are made per hour, but always stay under the API's upload size limit
+ * for the chunk encoding in use.
+ */
+class ChunkSizingPolicy(
+    private val preset: ChunkWindowPreset,
+    private val encodedBytesPerSecond: Int,
+    private val uplinkKbps: () -> Int?
+) {
+
+    companion object {
+        private const val FAST_UPLINK_KBPS = 2_000
+        private const val GROWTH_FACTOR = 2
+        private const val MAX_CHUNK_SECONDS = 300
+        private const val UPLOAD_LIMIT_SAFETY = 0.9 // Leave room for container overhead
+    }
+
+    /**
+     * Longest chunk that still fits under the API upload limit
+     */
+    val limitSeconds: Int =
+        ((WhisperApiService.MAX_UPLOAD_BYTES * UPLOAD_LIMIT_SAFETY) / encodedBytesPerSecond).toInt()
+
+    /**
+     * Widest span between minimum and maximum of any window [nextWindow] can return; the
+     * boundary planner sizes its lookahead from it
+     */
+    val maxSpanSeconds: Int
+        get() {
+            val factors = if (preset.latencySensitive) listOf(1) else listOf(1, GROWTH_FACTOR)
+            return factors.maxOf { factor ->
+                val window = capped(ChunkWindow(preset.minSeconds * factor, preset.maxSeconds * factor))
+                window.maxSeconds - window.minSeconds
+            }
+        }
+
+    fun nextWindow(): ChunkWindow {
+        val factor = if (!preset.latencySensitive && isUplinkFast()) GROWTH_FACTOR else 1
+        return capped(ChunkWindow(preset.minSeconds * factor, preset.maxSeconds * factor))
+    }
+
+    private fun capped(window: ChunkWindow): ChunkWindow {
+        val cap = minOf(limitSeconds, MAX_CHUNK_SECONDS)
+        val maxSeconds = window.maxSeconds.coerceAtMost(cap)
+        val minSeconds = window.minSeconds.coerceAtMost(maxSeconds - 1).coerceAtLeast(1)
+        return ChunkWindow(minSeconds, maxSeconds)
+    }
+
+    private fun isUplinkFast(): Boolean {
+        val kbps = uplinkKbps() ?: return false
+        return kbps >= FAST_UPLINK_KBPS
+    }
+}
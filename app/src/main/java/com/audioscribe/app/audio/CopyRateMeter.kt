@@ -0,0 +1,45 @@
+package com.audioscribe.app.audio
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Counts bytes copied by the capture hot path so its rate can be checked over long sessions.
+ * With the direct-buffer pipeline the expected rate is the capture byte rate (AudioRecord into
+ * the ring) plus the output byte rate (resampled samples into the sink); anything well above
+ * that means an extra copy crept back in. [add] is safe from any thread and never allocates.
+ */
+class CopyRateMeter {
+
+    private val totalBytes = AtomicLong(0)
+
+    private var lastBytes = 0L
+    private var lastNanos = System.nanoTime()
+
+    /**
+     * Bytes per second over the most recent [sample] interval
+     */
+    @Volatile
+    var lastRateBytesPerSecond = 0L
+        private set
+
+    fun add(bytes: Int) {
+        totalBytes.addAndGet(bytes.toLong())
+    }
+
+    fun total(): Long = totalBytes.get()
+
+    /**
+     * Close the current interval and update [lastRateBytesPerSecond]. Single caller only.
+     */
+    fun sample(): Long {
+        val now = System.nanoTime()
+        val bytes = totalBytes.get()
+        val elapsedNanos = now - lastNanos
+        if (elapsedNanos > 0) {
+            lastRateBytesPerSecond = (bytes - lastBytes) * 1_000_000_000L / elapsedNanos
+        }
+        lastBytes = bytes
+        lastNanos = now
+        return lastRateBytesPerSecond
+    }
+}
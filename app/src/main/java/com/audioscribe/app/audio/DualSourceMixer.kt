@@ -0,0 +1,192 @@
+package com.audioscribe.app.audio
+
+/**
+ * Combines two mono streams at the same nominal rate, the microphone ("me") and system
+ * playback ("them"), into one chunk stream.
+ *
+ * Each source is queued in its own preallocated FIFO, and output is produced sample for sample
+ * from whatever both FIFOs hold. Either the two are summed into mono, or they are interleaved
+ * as a stereo pair with the microphone on the left and playback on the right.
+ *
+ * The two AudioRecords run on separate clocks, so their FIFOs drift apart. The lead of one FIFO
+ * over the other is smoothed, because block-sized jitter from the two read loops is not drift.
+ * While the smoothed lead exceeds [DRIFT_TOLERANCE_MS], one sample is dropped from the leading
+ * FIFO per [read], which pulls the streams back together without an audible jump. If a source stops delivering
+ * for longer than [STALL_LIMIT_MS], the other is mixed against silence so output keeps flowing.
+ * Nothing allocates after construction.
+ */
+class DualSourceMixer(
+    sampleRate: Int,
+    val separateChannels: Boolean
+) {
+
+    companion object {
+        const val MIC = 0
+        const val SYSTEM = 1
+        private const val FIFO_SECONDS = 2
+        private const val DRIFT_TOLERANCE_MS = 40
+        private const val LEAD_SMOOTHING = 0.02 // Per read; averages out read-loop jitter over ~50 reads
+        private const val STALL_LIMIT_MS = 500
+    }
+
+    /**
+     * Interleaved channels in the mixed output
+     */
+    val outputChannels: Int = if (separateChannels) 2 else 1
+
+    private val capacity = sampleRate * FIFO_SECONDS
+    private val fifos = arrayOf(ShortArray(capacity), ShortArray(capacity))
+    private val readPos = IntArray(2)
+    private val levels = IntArray(2)
+    private val pendingSkip = IntArray(2)
+
+    private val driftTolerance = sampleRate * DRIFT_TOLERANCE_MS / 1000
+    private val stallLimit = sampleRate * STALL_LIMIT_MS / 1000
+    private var smoothedLead = 0.0
+
+    /**
+     * Samples dropped to correct clock drift or start-up offset
+     */
+    var droppedSamples = 0L
+        private set
+
+    /**
+     * Samples of silence substituted for a stalled source
+     */
+    var paddedSamples = 0L
+        private set
+
+    /**
+     * Discard the oldest [samples] of [source], queued or still to come, e.g. because it
+     * started that much earlier than the other source
+     */
+    fun skipLeading(source: Int, samples: Int) {
+        val queued = minOf(samples, levels[source])
+        readPos[source] = (readPos[source] + queued) % capacity
+        levels[source] -= queued
+        droppedSamples += queued
+        pendingSkip[source] += samples - queued
+    }
+
+    /**
+     * Queue mono samples from [source]. Audio that would overflow the FIFO replaces the oldest.
+     */
+    fun write(source: Int, samples: ShortArray, offset: Int, count: Int) {
+        var pos = offset
+        var remaining = count
+        val skip = minOf(pendingSkip[source], remaining)
+        if (skip > 0) {
+            pendingSkip[source] -= skip
+            droppedSamples += skip
+            pos += skip
+            remaining -= skip
+        }
+        val fifo = fifos[source]
+        while (remaining > 0) {
+            if (levels[source] == capacity) {
+                // Only reachable if the other source stalled and nobody read; drop the oldest
+                readPos[source] = (readPos[source] + 1) % capacity
+                levels[source]--
+                droppedSamples++
+            }
+            val writePos = (readPos[source] + levels[source]) % capacity
+            val n = minOf(remaining, capacity - writePos, capacity - levels[source])
+            System.arraycopy(samples, pos, fifo, writePos, n)
+            levels[source] += n
+            pos += n
+            remaining -= n
+        }
+    }
+
+    /**
+     * Mix as many aligned samples as both sources allow into [out]
+     * @return Number of interleaved output samples written
+     */
+    fun read(out: ShortArray): Int {
+        correctDrift()
+        val maxFrames = out.size / outputChannels
+        var frames = minOf(levels[MIC], levels[SYSTEM], maxFrames)
+
+        // A source that has fallen silent for too long is treated as silence
+        val lead = levels[MIC] - levels[SYSTEM]
+        var padMic = 0
+        var padSystem = 0
+        if (lead > stallLimit) {
+            padSystem = minOf(lead - stallLimit, maxFrames - frames)
+        } else if (-lead > stallLimit) {
+            padMic = minOf(-lead - stallLimit, maxFrames - frames)
+        }
+
+        var o = 0
+        for (i in 0 until frames) {
+            o = put(out, o, take(MIC), take(SYSTEM))
+        }
+        for (i in 0 until padSystem) {
+            o = put(out, o, take(MIC), 0)
+        }
+        for (i in 0 until padMic) {
+            o = put(out, o, 0, take(SYSTEM))
+        }
+        paddedSamples += padMic + padSystem
+        frames += padMic + padSystem
+        return frames * outputChannels
+    }
+
+    /**
+     * Mix out everything still queued, padding the shorter source with silence (e.g. before a pause)
+     * @return Number of interleaved output samples written
+     */
+    fun drain(out: ShortArray): Int {
+        val frames = minOf(maxOf(levels[MIC], levels[SYSTEM]), out.size / outputChannels)
+        var o = 0
+        for (i in 0 until frames) {
+            val mic = if (levels[MIC] > 0) take(MIC) else 0
+            val system = if (levels[SYSTEM] > 0) take(SYSTEM) else 0
+            o = put(out, o, mic, system)
+        }
+        return o
+    }
+
+    /**
+     * Forget queued audio and any pending skips
+     */
+    fun clear() {
+        readPos.fill(0)
+        levels.fill(0)
+        pendingSkip.fill(0)
+        smoothedLead = 0.0
+    }
+
+    private fun correctDrift() {
+        val lead = levels[MIC] - levels[SYSTEM]
+        // Beyond the stall limit the gap is a stall, not drift; padding handles it
+        if (lead > stallLimit || -lead > stallLimit) return
+        smoothedLead += (lead - smoothedLead) * LEAD_SMOOTHING
+        if (smoothedLead > driftTolerance && levels[MIC] > 0) {
+            take(MIC)
+            droppedSamples++
+            smoothedLead -= 1.0
+        } else if (-smoothedLead > driftTolerance && levels[SYSTEM] > 0) {
+            take(SYSTEM)
+            droppedSamples++
+            smoothedLead += 1.0
+        }
+    }
+
+    private fun take(source: Int): Int {
+        val value = fifos[source][readPos[source]].toInt()
+        readPos[source] = (readPos[source] + 1) % capacity
+        levels[source]--
+        return value
+    }
+
+    private fun put(out: ShortArray, index: Int, mic: Int, system: Int): Int {
+        if (separateChannels) {
+            out[index] = mic.toShort()
+            out[index + 1] = system.toShort()
+            return index + 2
+        }
+        out[index] = (mic + system).coerceIn(Short.MIN_VALUE.toInt(), Short.MAX_VALUE.toInt()).toShort()
+        return index + 1
+    }
+}
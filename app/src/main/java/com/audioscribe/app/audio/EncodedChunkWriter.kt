@@ -0,0 +1,202 @@
+package com.audioscribe.app.audio
+
+import android.media.MediaCodec
+import android.media.MediaCodecInfo
+import android.media.MediaFormat
+import android.media.MediaMuxer
+import android.util.Log
+import java.io.File
+import java.nio.ByteOrder
+
+/**
+ * Streams PCM through a single long-lived MediaCodec encoder and muxes every chunk
+ * into its own container file (.m4a for AAC, .ogg for Opus).
+ *
+ * The encoder is created once; at each rotation it is drained to end-of-stream, the
+ * muxer is closed, and the codec is flushed so the next chunk starts immediately.
+ * The codec's output format (including codec-specific data) is cached, so later
+ * muxers can add their track before the encoder emits anything.
+ */
+class EncodedChunkWriter(
+    override val encoding: ChunkEncoding,
+    private val sampleRate: Int,
+    private val channels: Int
+) : ChunkSink {
+
+    companion object {
+        private const val TAG = "EncodedChunkWriter"
+        private const val DEQUEUE_TIMEOUT_US = 10_000L
+        private const val EOS_DRAIN_TIMEOUT_MS = 2_000L
+        private const val MAX_INPUT_BYTES = 16 * 1024
+    }
+
+    private val mediaFormat: MediaFormat = MediaFormat.createAudioFormat(
+        requireNotNull(encoding.codecMime) { "$encoding is not an encoded format" },
+        sampleRate,
+        channels
+    ).apply {
+        setInteger(MediaFormat.KEY_BIT_RATE, encoding.bitRate)
+        setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, MAX_INPUT_BYTES)
+        if (encoding == ChunkEncoding.AAC) {
+            setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC)
+        }
+    }
+
+    private val codec: MediaCodec = MediaCodec.createEncoderByType(encoding.codecMime!!).also {
+        it.configure(mediaFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE)
+        it.start()
+    }
+
+    private val bufferInfo = MediaCodec.BufferInfo()
+    private var outputFormat: MediaFormat? = null
+
+    private var file: File? = null
+    private var muxer: MediaMuxer? = null
+    private var trackIndex = -1
+    private var muxerStarted = false
+    private var framesQueued = 0L
+
+    override fun open(file: File, expectedDataBytes: Long) {
+        this.file = file
+        muxer = MediaMuxer(file.absolutePath, encoding.muxerFormat)
+        muxerStarted = false
+        trackIndex = -1
+        framesQueued = 0L
+        // After the first chunk the format is known and the track can be added right away
+        startMuxerIfReady()
+    }
+
+    override fun write(samples: ShortArray, offset: Int, count: Int) {
+        var pos = offset
+        var remaining = count
+        while (remaining > 0) {
+            val index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US)
+            if (index < 0) {
+                drain(endOfStream = false)
+                continue
+            }
+            val input = codec.getInputBuffer(index) ?: continue
+            input.clear()
+            input.order(ByteOrder.LITTLE_ENDIAN)
+            var n = minOf(remaining, input.remaining() / CaptureFormat.BYTES_PER_SAMPLE)
+            n -= n % channels
+            for (i in pos until pos + n) {
+                input.putShort(samples[i])
+            }
+            codec.queueInputBuffer(index, 0, n * CaptureFormat.BYTES_PER_SAMPLE, presentationTimeUs(), 0)
+            framesQueued += n / channels
+            pos += n
+            remaining -= n
+            drain(endOfStream = false)
+        }
+    }
+
+    override fun finish(): Long {
+        val target = file ?: return 0L
+        try {
+            signalEndOfStream()
+            drain(endOfStream = true)
+        } catch (e: Exception) {
+            Log.e(TAG, "Error draining encoder for ${target.name}", e)
+        }
+
+        try {
+            if (muxerStarted) muxer?.stop()
+        } catch (e: Exception) {
+            // Stopping a muxer that never received a sample throws; the chunk is empty anyway
+            Log.w(TAG, "Muxer stop failed for ${target.name}: ${e.message}")
+        }
+        muxer?.release()
+        muxer = null
+        muxerStarted = false
+        file = null
+
+        resetCodec()
+        return target.length()
+    }
+
+    override fun release() {
+        try {
+            muxer?.release()
+        } catch (_: Exception) { }
+        muxer = null
+        try {
+            codec.stop()
+        } catch (_: Exception) { }
+        codec.release()
+    }
+
+    private fun presentationTimeUs(): Long = framesQueued * 1_000_000L / sampleRate
+
+    private fun signalEndOfStream() {
+        val deadline = System.currentTimeMillis() + EOS_DRAIN_TIMEOUT_MS
+        while (System.currentTimeMillis() < deadline) {
+            val index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US)
+            if (index >= 0) {
+                codec.queueInputBuffer(index, 0, 0, presentationTimeUs(), MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+                return
+            }
+            drain(endOfStream = false)
+        }
+        Log.w(TAG, "Timed out signalling end of stream")
+    }
+
+    /**
+     * Move encoded output into the muxer. With [endOfStream] this blocks until the
+     * encoder reports end-of-stream (bounded by [EOS_DRAIN_TIMEOUT_MS]).
+     */
+    private fun drain(endOfStream: Boolean) {
+        val deadline = System.currentTimeMillis() + EOS_DRAIN_TIMEOUT_MS
+        while (true) {
+            val index = codec.dequeueOutputBuffer(bufferInfo, if (endOfStream) DEQUEUE_TIMEOUT_US else 0L)
+            when {
+                index == MediaCodec.INFO_TRY_AGAIN_LATER -> {
+                    if (!endOfStream || System.currentTimeMillis() > deadline) return
+                }
+                index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED -> {
+                    outputFormat = codec.outputFormat
+                    startMuxerIfReady()
+                }
+                index >= 0 -> {
+                    val output = codec.getOutputBuffer(index)
+                    val isConfig = (bufferInfo.flags and MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0
+                    // Codec config is already carried by the cached output format
+                    if (output != null && !isConfig && bufferInfo.size > 0 && muxerStarted) {
+                        output.position(bufferInfo.offset)
+                        output.limit(bufferInfo.offset + bufferInfo.size)
+                        muxer?.writeSampleData(trackIndex, output, bufferInfo)
+                    }
+                    codec.releaseOutputBuffer(index, false)
+                    if ((bufferInfo.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) return
+                }
+                else -> {
+                    if (System.currentTimeMillis() > deadline) return
+                }
+            }
+        }
+    }
+
+    private fun startMuxerIfReady() {
+        val format = outputFormat ?: return
+        val activeMuxer = muxer ?: return
+        if (muxerStarted) return
+        trackIndex = activeMuxer.addTrack(format)
+        activeMuxer.start()
+        muxerStarted = true
+    }
+
+    /**
+     * Return the encoder to a state that accepts input for the next chunk without
+     * tearing it down. Falls back to a stop/configure/start cycle on the same instance.
+     */
+    private fun resetCodec() {
+        try {
+            codec.flush()
+        } catch (e: Exception) {
+            Log.w(TAG, "Encoder flush failed, reconfiguring: ${e.message}")
+            codec.stop()
+            codec.configure(mediaFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE)
+            codec.start()
+        }
+    }
+}
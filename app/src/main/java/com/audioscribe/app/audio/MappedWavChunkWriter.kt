@@ -0,0 +1,201 @@
+package com.audioscribe.app.audio
+
+import android.util.Log
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.ShortBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * Writes WAV chunks into a preallocated, memory-mapped file.
+ *
+ * Each chunk is opened once. The expected size is mapped up front, and PCM goes straight
+ * into the mapping. If a chunk outgrows its estimate, another region is mapped.
+ * The header's size fields are kept current in the mapping after every write. So if the
+ * process dies, the page cache still holds a header that says how much audio is valid
+ * ([recover] truncates the zero-filled tail to it). At rotation, the header is already final and the
+ * file is truncated to its real length on the same channel before it is closed.
+ *
+ * Falls back to [WavChunkWriter] for a chunk whose mapping cannot be created.
+ */
+class MappedWavChunkWriter(
+    private val sampleRate: Int,
+    private val channels: Int
+) : ChunkSink {
+
+    companion object {
+        private const val TAG = "MappedWavChunkWriter"
+        private const val DEFAULT_EXPECTED_SECONDS = 60L
+        private const val GROWTH_SECONDS = 30L
+
+        /**
+         * Repair a WAV chunk left behind by an interrupted recording: trust the header's data
+         * length. A header that was never written (a chunk from [WavChunkWriter], which sets
+         * the sizes only when it finishes) or that claims more than the file holds is set to
+         * the whole file instead; zeros there may be silence that was actually recorded.
+         * @return true if the file was repaired
+         */
+        fun recover(file: File): Boolean {
+            return try {
+                RandomAccessFile(file, "rw").use { raf ->
+                    val length = raf.length()
+                    if (length < CaptureFormat.WAV_HEADER_BYTES) return false
+                    val header = ByteBuffer.allocate(CaptureFormat.WAV_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    raf.channel.read(header, 0)
+                    if (header.get(0) != 'R'.code.toByte() || header.get(8) != 'W'.code.toByte()) return false
+
+                    val blockAlign = header.getShort(32).toInt().coerceAtLeast(1)
+                    val available = length - CaptureFormat.WAV_HEADER_BYTES
+                    val recorded = header.getInt(40).toLong() and 0xffffffffL
+                    val dataSize = if (recorded == 0L || recorded > available) {
+                        available - available % blockAlign
+                    } else {
+                        recorded
+                    }
+                    if (dataSize == recorded && CaptureFormat.WAV_HEADER_BYTES + dataSize >= length) return false
+
+                    header.putInt(4, (dataSize + 36).toInt())
+                    header.putInt(40, dataSize.toInt())
+                    header.clear()
+                    raf.channel.write(header, 0)
+                    if (CaptureFormat.WAV_HEADER_BYTES + dataSize < length) {
+                        raf.channel.truncate(CaptureFormat.WAV_HEADER_BYTES + dataSize)
+                    }
+                    Log.i(TAG, "Recovered ${file.name}: $dataSize bytes of audio")
+                    true
+                }
+            } catch (e: IOException) {
+                Log.e(TAG, "Failed to recover ${file.name}", e)
+                false
+            }
+        }
+    }
+
+    override val encoding: ChunkEncoding = ChunkEncoding.WAV
+
+    private val bytesPerSecond = sampleRate * channels * CaptureFormat.BYTES_PER_SAMPLE.toLong()
+    // Created the first time a chunk cannot be mapped
+    private var fallback: WavChunkWriter? = null
+    private var usingFallback = false
+
+    private var file: File? = null
+    private var channel: FileChannel? = null
+
+    // Mapping that holds the header; data may continue into later growth regions
+    private var headerMap: MappedByteBuffer? = null
+    private var dataView: ShortBuffer? = null
+    private var mappedEnd = 0L
+    private var dataBytes = 0L
+
+    override fun open(file: File, expectedDataBytes: Long) {
+        this.file = file
+        dataBytes = 0L
+        val expected = if (expectedDataBytes > 0) expectedDataBytes else bytesPerSecond * DEFAULT_EXPECTED_SECONDS
+        try {
+            val out = FileChannel.open(
+                file.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            )
+            channel = out
+            mappedEnd = CaptureFormat.WAV_HEADER_BYTES + expected
+            val map = out.map(FileChannel.MapMode.READ_WRITE, 0, mappedEnd)
+            map.order(ByteOrder.LITTLE_ENDIAN)
+            map.put(WavChunkWriter.buildHeader(sampleRate, channels, 0))
+            headerMap = map
+            dataView = map.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer()
+            usingFallback = false
+        } catch (e: IOException) {
+            Log.w(TAG, "Could not map ${file.name}, writing it through a FileChannel instead", e)
+            closeChannel()
+            val writer = fallback ?: WavChunkWriter(sampleRate, channels).also { fallback = it }
+            writer.open(file, expectedDataBytes)
+            usingFallback = true
+        }
+    }
+
+    override fun write(samples: ShortArray, offset: Int, count: Int) {
+        if (usingFallback) {
+            fallback?.write(samples, offset, count)
+            return
+        }
+        var view = dataView ?: return
+        var pos = offset
+        var remaining = count
+        while (remaining > 0) {
+            if (!view.hasRemaining()) {
+                view = grow()
+            }
+            val n = minOf(remaining, view.remaining())
+            view.put(samples, pos, n)
+            pos += n
+            remaining -= n
+        }
+        dataBytes += count.toLong() * CaptureFormat.BYTES_PER_SAMPLE
+        updateHeader()
+    }
+
+    override fun finish(): Long {
+        if (usingFallback) {
+            usingFallback = false
+            file = null
+            return fallback?.finish() ?: 0L
+        }
+        val target = file ?: return 0L
+        try {
+            // Header is already current; one truncate drops the unused preallocation. The
+            // mappings cover the region being cut off, so nothing may touch them afterwards
+            updateHeader()
+            headerMap = null
+            dataView = null
+            channel?.truncate(CaptureFormat.WAV_HEADER_BYTES + dataBytes)
+        } catch (e: IOException) {
+            Log.e(TAG, "Error finalizing ${target.name}", e)
+        }
+        closeChannel()
+        file = null
+        return target.length()
+    }
+
+    override fun release() {
+        if (file != null) {
+            finish()
+        }
+        closeChannel()
+        fallback?.release()
+    }
+
+    private fun updateHeader() {
+        val map = headerMap ?: return
+        map.putInt(4, (dataBytes + 36).toInt())
+        map.putInt(40, dataBytes.toInt())
+    }
+
+    /**
+     * Map the next region when the chunk outgrows its estimate
+     */
+    private fun grow(): ShortBuffer {
+        val out = channel ?: throw IOException("Chunk is not open")
+        val size = bytesPerSecond * GROWTH_SECONDS
+        val region = out.map(FileChannel.MapMode.READ_WRITE, mappedEnd, size)
+        mappedEnd += size
+        return region.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().also { dataView = it }
+    }
+
+    private fun closeChannel() {
+        // Mappings stay valid until collected; dropping the references is all Java allows
+        headerMap = null
+        dataView = null
+        try {
+            channel?.close()
+        } catch (_: Exception) { }
+        channel = null
+    }
+}
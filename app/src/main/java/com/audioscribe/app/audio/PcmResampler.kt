@@ -0,0 +1,141 @@
+package com.audioscribe.app.audio
+
+import java.nio.ByteBuffer
+import kotlin.math.PI
+import kotlin.math.cos
+import kotlin.math.roundToInt
+import kotlin.math.sin
+
+/**
+ * Streaming downmix + polyphase resampler for 16-bit little-endian PCM.
+ *
+ * Interleaved input frames are averaged to mono and converted from [inputRate] to [outputRate]
+ * with a windowed-sinc low-pass split into L phases (L/M = outputRate/inputRate reduced).
+ * All state and buffers are allocated up front, so [process] never allocates.
+ */
+class PcmResampler(
+    private val inputRate: Int,
+    private val inputChannels: Int,
+    private val outputRate: Int,
+    private val tapsPerPhase: Int = DEFAULT_TAPS_PER_PHASE
+) {
+
+    companion object {
+        private const val DEFAULT_TAPS_PER_PHASE = 64
+        private const val CUTOFF_ROLLOFF = 0.9 // Keep the transition band below output Nyquist
+    }
+
+    private val upFactor: Int
+    private val downFactor: Int
+
+    // coefficients[phase * tapsPerPhase + j] multiplies the j-th most recent input sample
+    private val coefficients: FloatArray
+
+    // Input history stored twice so the newest tapsPerPhase samples are always contiguous
+    private val history = FloatArray(tapsPerPhase * 2)
+    private var historyPos = 0
+
+    // Position of the next output sample relative to the newest input, in upsampled ticks
+    private var phase = 0
+
+    init {
+        val g = gcd(inputRate, outputRate)
+        upFactor = outputRate / g
+        downFactor = inputRate / g
+        coefficients = designFilter()
+    }
+
+    /**
+     * Upper bound of output samples produced from [inputBytes] of input
+     */
+    fun maxOutputSamples(inputBytes: Int): Int {
+        val inputFrames = inputBytes / (inputChannels * CaptureFormat.BYTES_PER_SAMPLE)
+        return (inputFrames.toLong() * upFactor / downFactor).toInt() + 2
+    }
+
+    /**
+     * Downmix and resample [length] bytes of interleaved little-endian PCM from [src],
+     * reading in place with absolute gets (the buffer's position is not touched).
+     * @return Number of mono samples written to [dst] starting at [dstOffset]
+     */
+    fun process(src: ByteBuffer, offset: Int, length: Int, dst: ShortArray, dstOffset: Int = 0): Int {
+        val frameBytes = inputChannels * CaptureFormat.BYTES_PER_SAMPLE
+        val frames = length / frameBytes
+        var out = dstOffset
+        var pos = offset
+
+        for (f in 0 until frames) {
+            var sum = 0
+            for (c in 0 until inputChannels) {
+                sum += src.getShort(pos)
+                pos += 2
+            }
+            push(sum.toFloat() / inputChannels)
+
+            while (phase < upFactor) {
+                dst[out++] = filterAt(phase)
+                phase += downFactor
+            }
+            phase -= upFactor
+        }
+        return out - dstOffset
+    }
+
+    /**
+     * Clear filter history, e.g. between unrelated recordings
+     */
+    fun reset() {
+        history.fill(0f)
+        historyPos = 0
+        phase = 0
+    }
+
+    private fun push(sample: Float) {
+        historyPos = (historyPos + 1) % tapsPerPhase
+        history[historyPos] = sample
+        history[historyPos + tapsPerPhase] = sample
+    }
+
+    private fun filterAt(p: Int): Short {
+        // Newest sample sits at historyPos + tapsPerPhase, older ones below it
+        val base = p * tapsPerPhase
+        val newest = historyPos + tapsPerPhase
+        var acc = 0f
+        for (j in 0 until tapsPerPhase) {
+            acc += coefficients[base + j] * history[newest - j]
+        }
+        val rounded = acc.roundToInt()
+        return when {
+            rounded > Short.MAX_VALUE -> Short.MAX_VALUE
+            rounded < Short.MIN_VALUE -> Short.MIN_VALUE
+            else -> rounded.toShort()
+        }
+    }
+
+    /**
+     * Blackman-windowed sinc prototype at the upsampled rate, rearranged into polyphase order
+     */
+    private fun designFilter(): FloatArray {
+        val length = upFactor * tapsPerPhase
+        val center = (length - 1) / 2.0
+        // Cutoff in cycles per upsampled sample
+        val cutoff = 0.5 * minOf(inputRate, outputRate) / (inputRate.toDouble() * upFactor) * CUTOFF_ROLLOFF
+        val prototype = DoubleArray(length)
+        for (k in 0 until length) {
+            val x = k - center
+            val sinc = if (x == 0.0) 2 * cutoff else sin(2 * PI * cutoff * x) / (PI * x)
+            val window = 0.42 - 0.5 * cos(2 * PI * k / (length - 1)) + 0.08 * cos(4 * PI * k / (length - 1))
+            prototype[k] = sinc * window * upFactor
+        }
+
+        val polyphase = FloatArray(length)
+        for (p in 0 until upFactor) {
+            for (j in 0 until tapsPerPhase) {
+                polyphase[p * tapsPerPhase + j] = prototype[p + j * upFactor].toFloat()
+            }
+        }
+        return polyphase
+    }
+
+    private fun gcd(a: Int, b: Int): Int = if (b == 0) a else gcd(b, a % b)
+}
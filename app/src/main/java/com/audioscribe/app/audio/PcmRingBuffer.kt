@@ -0,0 +1,176 @@
+package com.audioscribe.app.audio
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Preallocated single-producer/single-consumer ring of PCM bytes in direct memory.
+ *
+ * The capture thread is the only writer and the chunk writer is the only reader, so both
+ * sides coordinate through two monotonically increasing positions and never lock or allocate.
+ * The producer reads the AudioRecord straight into the ring one block at a time ([fill]) and
+ * the consumer processes audio in place ([drain]), so PCM never passes through a heap array.
+ * When the reader falls behind and the ring is full, new audio is dropped and counted as an
+ * overrun instead of stalling the AudioRecord. AudioRecord only ever returns whole frames,
+ * so reads and drops stay frame-aligned and the reader only ever sees whole frames.
+ */
+class PcmRingBuffer(capacityBytes: Int, private val frameBytes: Int, blockBytes: Int) {
+
+    /**
+     * Fills a direct buffer from its start with whole frames, like AudioRecord.read(ByteBuffer, Int)
+     */
+    fun interface PcmSource {
+        /**
+         * @return Bytes written at the start of [target], or a negative error code
+         */
+        fun read(target: ByteBuffer, sizeInBytes: Int): Int
+    }
+
+    /**
+     * Receives a contiguous region of buffered PCM; must not retain or modify [buffer]
+     */
+    fun interface PcmConsumer {
+        fun consume(buffer: ByteBuffer, offset: Int, length: Int)
+    }
+
+    /**
+     * Usable capacity, rounded up to a power of two so positions can be masked
+     */
+    val capacity: Int = Integer.highestOneBit((capacityBytes - 1).coerceAtLeast(1)) shl 1
+
+    /**
+     * Size of one producer read; a power of two, so blocks tile the ring exactly
+     */
+    val blockBytes: Int = Integer.highestOneBit(blockBytes.coerceAtLeast(frameBytes)).coerceAtMost(capacity)
+
+    private val mask = (capacity - 1).toLong()
+    private val data: ByteBuffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN)
+
+    // One preallocated slice per block. AudioRecord writes at the buffer's base address,
+    // so each read needs a buffer that starts exactly where the audio should land.
+    private val slots: Array<ByteBuffer> = Array(capacity / this.blockBytes) { i ->
+        data.duplicate().apply {
+            position(i * this@PcmRingBuffer.blockBytes)
+            limit((i + 1) * this@PcmRingBuffer.blockBytes)
+        }.slice()
+    }
+
+    // Audio read while the ring is full lands here and is discarded
+    private val overflow: ByteBuffer = ByteBuffer.allocateDirect(this.blockBytes)
+
+    // Total bytes ever written / read; only the producer advances head, only the consumer tail
+    private val head = AtomicLong(0)
+    private val tail = AtomicLong(0)
+
+    private val overrunCount = AtomicLong(0)
+    private val overrunBytes = AtomicLong(0)
+    private val highWaterMark = AtomicInteger(0)
+
+    /**
+     * Read one block from [source] directly into free ring space. Producer side only.
+     * @return Bytes stored (0 if the ring was full and the block was dropped), or the
+     * source's negative error code
+     */
+    fun fill(source: PcmSource): Int {
+        val h = head.get()
+        val free = capacity - (h - tail.get()).toInt()
+        val start = (h and mask).toInt()
+        val offsetInBlock = start % blockBytes
+        val n = blockBytes - offsetInBlock
+
+        if (free < n) {
+            // Keep the recorder drained so its own buffer does not overflow; count the loss
+            overflow.clear()
+            val dropped = source.read(overflow, n)
+            if (dropped < 0) return dropped
+            if (dropped > 0) {
+                overrunCount.incrementAndGet()
+                overrunBytes.addAndGet(dropped.toLong())
+            }
+            return 0
+        }
+
+        val target = if (offsetInBlock == 0) {
+            slots[start / blockBytes].also { it.clear() }
+        } else {
+            // Only after a short read: finish the block so later reads realign to the slots
+            data.duplicate().apply {
+                position(start)
+                limit(start + n)
+            }.slice()
+        }
+        val read = source.read(target, n)
+        if (read <= 0) return read
+        val stored = read - read % frameBytes
+        head.lazySet(h + stored)
+
+        val used = (h + stored - tail.get()).toInt()
+        if (used > highWaterMark.get()) {
+            highWaterMark.set(used)
+        }
+        return stored
+    }
+
+    /**
+     * Read one block from [source] and throw it away, e.g. while capture is paused.
+     * Keeps the recorder drained without touching the ring or its overrun counters.
+     * Producer side only.
+     * @return Bytes discarded, or the source's negative error code
+     */
+    fun discard(source: PcmSource): Int {
+        overflow.clear()
+        return source.read(overflow, blockBytes)
+    }
+
+    /**
+     * Hand up to [maxBytes] of buffered audio to [consumer] in place, then release it.
+     * Consumer side only. A wrapped region is delivered as two calls, oldest first.
+     * @return Number of bytes consumed (0 when the ring is empty)
+     */
+    fun drain(consumer: PcmConsumer, maxBytes: Int): Int {
+        val t = tail.get()
+        var n = minOf(maxBytes, (head.get() - t).toInt())
+        n -= n % frameBytes
+        if (n <= 0) return 0
+
+        val start = (t and mask).toInt()
+        val first = minOf(n, capacity - start)
+        consumer.consume(data, start, first)
+        if (n > first) {
+            consumer.consume(data, 0, n - first)
+        }
+        tail.lazySet(t + n)
+        return n
+    }
+
+    /**
+     * Bytes currently buffered and not yet read
+     */
+    fun available(): Int = (head.get() - tail.get()).toInt()
+
+    /**
+     * Snapshot of the ring's health counters
+     */
+    fun stats(): RingBufferStats = RingBufferStats(
+        capacityBytes = capacity,
+        highWaterMarkBytes = highWaterMark.get(),
+        overrunCount = overrunCount.get(),
+        overrunBytes = overrunBytes.get()
+    )
+}
+
+/**
+ * Health counters for a [PcmRingBuffer]
+ */
+data class RingBufferStats(
+    val capacityBytes: Int,
+    val highWaterMarkBytes: Int,
+    val overrunCount: Long,
+    val overrunBytes: Long
+) {
+    override fun toString(): String {
+        return "Ring high-water ${highWaterMarkBytes}/${capacityBytes} bytes, $overrunCount overruns ($overrunBytes bytes dropped)"
+    }
+}
@@ -0,0 +1,45 @@
+package com.audioscribe.app.audio
+
+/**
+ * Keeps the most recent [capacity] samples of a stream in a preallocated circular buffer,
+ * so the end of one chunk can be replayed at the start of the next.
+ */
+class PcmTail(val capacity: Int) {
+
+    private val data = ShortArray(capacity)
+    private var writePos = 0
+    private var size = 0
+
+    fun append(samples: ShortArray, offset: Int, count: Int) {
+        // Only the last [capacity] samples of a large block can survive
+        val skip = (count - capacity).coerceAtLeast(0)
+        var pos = offset + skip
+        var remaining = count - skip
+        while (remaining > 0) {
+            val n = minOf(remaining, capacity - writePos)
+            System.arraycopy(samples, pos, data, writePos, n)
+            writePos = (writePos + n) % capacity
+            pos += n
+            remaining -= n
+        }
+        size = minOf(capacity, size + count)
+    }
+
+    /**
+     * Copy the buffered samples, oldest first, into [dst]
+     * @return Number of samples copied
+     */
+    fun copyTo(dst: ShortArray): Int {
+        val n = minOf(size, dst.size)
+        val start = (writePos - n + capacity) % capacity
+        val first = minOf(n, capacity - start)
+        System.arraycopy(data, start, dst, 0, first)
+        System.arraycopy(data, 0, dst, first, n - first)
+        return n
+    }
+
+    fun clear() {
+        writePos = 0
+        size = 0
+    }
+}
@@ -0,0 +1,89 @@
+package com.audioscribe.app.audio
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import kotlin.math.abs
+import kotlin.math.ceil
+
+/**
+ * Histogram of how far the interval between consecutive AudioRecord read() returns strays
+ * from the nominal block period. A healthy capture thread stays in the lowest buckets; a tail
+ * in the tens of milliseconds means it is being descheduled long enough to risk overruns.
+ * [record] is called from the capture thread and never allocates; [snapshot] is safe from any thread.
+ */
+class ReadJitterHistogram(private val expectedPeriodNanos: Long) {
+
+    companion object {
+        /**
+         * Upper bounds of the buckets in milliseconds; the last bucket is open-ended
+         */
+        val BUCKET_UPPER_MS = longArrayOf(1, 2, 5, 10, 20, 50, 100)
+    }
+
+    private val counts = AtomicLongArray(BUCKET_UPPER_MS.size + 1)
+    private val maxNanos = AtomicLong(0)
+    private var lastReturnNanos = 0L
+
+    /**
+     * Note that a read() just returned. Capture thread only.
+     */
+    fun record(nowNanos: Long) {
+        val last = lastReturnNanos
+        lastReturnNanos = nowNanos
+        if (last == 0L) return
+        val jitter = abs(nowNanos - last - expectedPeriodNanos)
+        if (jitter > maxNanos.get()) maxNanos.set(jitter)
+        val ms = jitter / 1_000_000L
+        var bucket = 0
+        while (bucket < BUCKET_UPPER_MS.size && ms >= BUCKET_UPPER_MS[bucket]) bucket++
+        counts.incrementAndGet(bucket)
+    }
+
+    fun snapshot(): JitterSnapshot {
+        val copy = LongArray(counts.length()) { counts.get(it) }
+        return JitterSnapshot(copy, maxNanos.get() / 1_000_000.0)
+    }
+}
+
+/**
+ * Point-in-time copy of a [ReadJitterHistogram]
+ */
+data class JitterSnapshot(
+    val counts: LongArray,
+    val maxMs: Double
+) {
+    val total: Long get() = counts.sum()
+
+    /**
+     * Upper bound, in milliseconds, of the bucket holding the [percentile]th read; null for
+     * the open-ended last bucket or when nothing has been recorded
+     */
+    fun percentileUpperMs(percentile: Double): Long? {
+        val n = total
+        if (n == 0L) return null
+        val rank = ceil(n * percentile / 100.0).toLong().coerceAtLeast(1)
+        var seen = 0L
+        for (i in counts.indices) {
+            seen += counts[i]
+            if (seen >= rank) return ReadJitterHistogram.BUCKET_UPPER_MS.getOrNull(i)
+        }
+        return null
+    }
+
+    override fun toString(): String {
+        val bounds = ReadJitterHistogram.BUCKET_UPPER_MS
+        val buckets = counts.indices.joinToString(" ") { i ->
+            val label = if (i < bounds.size) "<${bounds[i]}ms" else ">=${bounds.last()}ms"
+            "$label:${counts[i]}"
+        }
+        return "Read jitter $buckets, max ${"%.1f".format(maxMs)} ms"
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is JitterSnapshot) return false
+        return counts.contentEquals(other.counts) && maxMs == other.maxMs
+    }
+
+    override fun hashCode(): Int = 31 * counts.contentHashCode() + maxMs.hashCode()
+}
@@ -0,0 +1,181 @@
+package com.audioscribe.app.audio
+
+import android.util.Log
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.ShortBuffer
+
+/**
+ * Writes WAV chunks into pooled off-heap memory instead of a file.
+ *
+ * A finished chunk stays in its buffer and is collected with [takeSpooled], so the upload can
+ * stream it without the chunk ever reaching flash. The chunk goes to disk through
+ * [MappedWavChunkWriter] only when the pool has no buffer for it, when it outgrows its buffer,
+ * or later through [SpooledChunk.spill] when it has to be handed to WorkManager.
+ */
+class SpooledWavChunkWriter(
+    private val sampleRate: Int,
+    private val channels: Int,
+    private val pool: ChunkBufferPool
+) : ChunkSink {
+
+    companion object {
+        private const val TAG = "SpooledWavChunkWriter"
+        private const val SPILL_BLOCK_SAMPLES = 8192
+    }
+
+    override val encoding: ChunkEncoding = ChunkEncoding.WAV
+
+    private val disk = MappedWavChunkWriter(sampleRate, channels)
+    private val spillScratch = ShortArray(SPILL_BLOCK_SAMPLES)
+
+    private var file: File? = null
+    private var buffer: ByteBuffer? = null
+    private var dataView: ShortBuffer? = null
+    private var spooled: SpooledChunk? = null
+
+    override fun open(file: File, expectedDataBytes: Long) {
+        this.file = file
+        // A chunk nobody collected is not needed any more
+        spooled?.release()
+        spooled = null
+        val buf = if (expectedDataBytes > 0) pool.acquire(CaptureFormat.WAV_HEADER_BYTES + expectedDataBytes) else null
+        if (buf == null) {
+            disk.open(file, expectedDataBytes)
+            return
+        }
+        buf.order(ByteOrder.LITTLE_ENDIAN)
+        buf.put(WavChunkWriter.buildHeader(sampleRate, channels, 0))
+        buffer = buf
+        dataView = buf.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer()
+    }
+
+    override fun write(samples: ShortArray, offset: Int, count: Int) {
+        val view = dataView
+        if (view == null) {
+            disk.write(samples, offset, count)
+            return
+        }
+        if (view.remaining() >= count) {
+            view.put(samples, offset, count)
+            return
+        }
+        spillToDisk(view)
+        disk.write(samples, offset, count)
+    }
+
+    override fun finish(): Long {
+        val buf = buffer
+        val view = dataView
+        val target = file
+        file = null
+        if (buf == null || view == null || target == null) {
+            return disk.finish()
+        }
+        val dataBytes = view.position() * CaptureFormat.BYTES_PER_SAMPLE
+        buf.putInt(4, dataBytes + 36)
+        buf.putInt(40, dataBytes)
+        buf.limit(CaptureFormat.WAV_HEADER_BYTES + dataBytes)
+        buf.position(0)
+        buffer = null
+        dataView = null
+        spooled = SpooledChunk(target, buf, pool)
+        return buf.limit().toLong()
+    }
+
+    /**
+     * The chunk just finished, if it was kept in memory; the caller becomes responsible for it
+     */
+    fun takeSpooled(): SpooledChunk? {
+        val chunk = spooled
+        spooled = null
+        return chunk
+    }
+
+    override fun release() {
+        if (file != null) {
+            finish()
+        }
+        spooled?.release()
+        spooled = null
+        disk.release()
+    }
+
+    /**
+     * Move the chunk written so far to disk and continue it there
+     */
+    private fun spillToDisk(view: ShortBuffer) {
+        val target = file ?: return
+        Log.w(TAG, "Chunk ${target.name} outgrew its buffer, continuing on disk")
+        disk.open(target, view.capacity().toLong() * CaptureFormat.BYTES_PER_SAMPLE * 2)
+        view.flip()
+        while (view.hasRemaining()) {
+            val n = minOf(view.remaining(), spillScratch.size)
+            view.get(spillScratch, 0, n)
+            disk.write(spillScratch, 0, n)
+        }
+        buffer?.let { pool.release(it) }
+        buffer = null
+        dataView = null
+    }
+}
+
+/**
+ * A finished WAV chunk held in a pooled buffer. Exactly one of [release] or [spill] must be
+ * called once the chunk is no longer needed in memory.
+ */
+class SpooledChunk(
+    /**
+     * Where the chunk would have been written; also where [spill] writes it
+     */
+    val file: File,
+    private var buffer: ByteBuffer?,
+    private val pool: ChunkBufferPool
+) {
+
+    companion object {
+        private const val TAG = "SpooledChunk"
+    }
+
+    val sizeBytes: Long = buffer?.remaining()?.toLong() ?: 0L
+
+    /**
+     * Read-only view of the whole WAV file, positioned at its start
+     */
+    fun data(): ByteBuffer {
+        val buf = buffer ?: throw IllegalStateException("Chunk ${file.name} was already released")
+        return buf.asReadOnlyBuffer()
+    }
+
+    /**
+     * Write the chunk to [file] and give its buffer back
+     * @return The file, or null if it could not be written
+     */
+    fun spill(): File? {
+        val buf = buffer ?: return null
+        return try {
+            FileOutputStream(file).channel.use { channel ->
+                val data = buf.duplicate()
+                while (data.hasRemaining()) {
+                    channel.write(data)
+                }
+            }
+            file
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to spill ${file.name} to disk", e)
+            file.delete()
+            null
+        } finally {
+            release()
+        }
+    }
+
+    fun release() {
+        val buf = buffer ?: return
+        buffer = null
+        pool.release(buf)
+    }
+}
@@ -0,0 +1,113 @@
+package com.audioscribe.app.audio
+
+import kotlin.math.log10
+import kotlin.math.max
+import kotlin.math.sqrt
+
+/**
+ * Streaming energy + zero-crossing voice activity detector for 16-bit mono PCM.
+ *
+ * Audio is labelled in fixed frames (20 ms by default). A frame counts as speech when its
+ * energy clears an adaptive noise floor by [SPEECH_MARGIN_DB] and its zero-crossing rate
+ * does not look like broadband noise, unless it is loud enough to be speech regardless.
+ * A short hangover keeps word endings and brief pauses labelled as speech.
+ * All state is scalar, so [process] never allocates.
+ */
+class VoiceActivityDetector(sampleRate: Int, frameMs: Int = DEFAULT_FRAME_MS) {
+
+    companion object {
+        private const val DEFAULT_FRAME_MS = 20
+        private const val MIN_SPEECH_DB = -55.0         // Absolute floor (dBFS) for anything called speech
+        private const val SPEECH_MARGIN_DB = 9.0        // Required rise above the noise floor
+        private const val LOUD_MARGIN_DB = 18.0         // Above this, ignore the ZCR check
+        private const val MAX_SPEECH_ZCR = 0.35         // Crossings per sample; hiss and fans sit higher
+        private const val NOISE_FLOOR_RISE_DB = 0.05    // Per-frame drift up towards louder backgrounds
+        private const val HANGOVER_FRAMES = 15          // ~300 ms at 20 ms frames
+        private const val INITIAL_NOISE_FLOOR_DB = -60.0
+    }
+
+    private val frameSamples = sampleRate * frameMs / 1000
+    val frameDurationMs: Int = frameMs
+
+    // Partial-frame accumulators
+    private var sumSquares = 0.0
+    private var zeroCrossings = 0
+    private var samplesInFrame = 0
+    private var lastSample = 0
+
+    private var noiseFloorDb = INITIAL_NOISE_FLOOR_DB
+    private var hangover = 0
+
+    /**
+     * Frames labelled since the last [resetCounts]
+     */
+    var totalFrames = 0
+        private set
+    var speechFrames = 0
+        private set
+
+    /**
+     * Label of the most recently completed frame
+     */
+    var isSpeech = false
+        private set
+
+    /**
+     * Energy of the most recently completed frame, in dBFS
+     */
+    var lastFrameEnergyDb = INITIAL_NOISE_FLOOR_DB
+        private set
+
+    fun process(samples: ShortArray, offset: Int, count: Int) {
+        for (i in offset until offset + count) {
+            val s = samples[i].toInt()
+            sumSquares += (s * s).toDouble()
+            if ((s >= 0) != (lastSample >= 0)) zeroCrossings++
+            lastSample = s
+            if (++samplesInFrame == frameSamples) {
+                completeFrame()
+            }
+        }
+    }
+
+    /**
+     * Fraction of frames labelled speech since the last [resetCounts]
+     */
+    fun speechRatio(): Float = if (totalFrames == 0) 0f else speechFrames.toFloat() / totalFrames
+
+    /**
+     * Start counting a new chunk; the adaptive noise floor is kept
+     */
+    fun resetCounts() {
+        totalFrames = 0
+        speechFrames = 0
+    }
+
+    private fun completeFrame() {
+        val rms = sqrt(sumSquares / samplesInFrame)
+        val energyDb = 20 * log10(max(rms, 1.0) / Short.MAX_VALUE)
+        val zcr = zeroCrossings.toDouble() / samplesInFrame
+
+        // Track the background: follow drops immediately, rise slowly
+        noiseFloorDb = if (energyDb < noiseFloorDb) energyDb else noiseFloorDb + NOISE_FLOOR_RISE_DB
+
+        val aboveFloor = energyDb - noiseFloorDb
+        val voiced = energyDb > MIN_SPEECH_DB && aboveFloor > SPEECH_MARGIN_DB &&
+            (zcr < MAX_SPEECH_ZCR || aboveFloor > LOUD_MARGIN_DB)
+
+        if (voiced) {
+            hangover = HANGOVER_FRAMES
+        } else if (hangover > 0) {
+            hangover--
+        }
+        isSpeech = voiced || hangover > 0
+        lastFrameEnergyDb = energyDb
+
+        totalFrames++
+        if (isSpeech) speechFrames++
+
+        sumSquares = 0.0
+        zeroCrossings = 0
+        samplesInFrame = 0
+    }
+}
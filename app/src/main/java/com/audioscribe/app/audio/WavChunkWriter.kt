@@ -0,0 +1,179 @@
+package com.audioscribe.app.audio
+
+import android.util.Log
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.ShortBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * Writes uncompressed PCM chunks as canonical 44-byte-header WAV files through a FileChannel.
+ * The header is written with a zero data size and patched in place when the chunk is finished.
+ */
+class WavChunkWriter(
+    private val sampleRate: Int,
+    private val channels: Int
+) : ChunkSink {
+
+    companion object {
+        private const val TAG = "WavChunkWriter"
+        private const val SCRATCH_SAMPLES = 8 * 1024
+
+        /**
+         * Build a canonical PCM WAV header for [dataSize] bytes of 16-bit audio
+         */
+        fun buildHeader(sampleRate: Int, channels: Int, dataSize: Int): ByteArray {
+            val header = ByteArray(CaptureFormat.WAV_HEADER_BYTES)
+            val totalSize = dataSize + 36
+            val blockAlign = channels * CaptureFormat.BYTES_PER_SAMPLE
+            val byteRate = sampleRate * blockAlign // SampleRate * NumChannels * BitsPerSample/8
+
+            // RIFF header
+            header[0] = 'R'.code.toByte()
+            header[1] = 'I'.code.toByte()
+            header[2] = 'F'.code.toByte()
+            header[3] = 'F'.code.toByte()
+
+            // File size
+            putIntLE(header, 4, totalSize)
+
+            // WAVE header
+            header[8] = 'W'.code.toByte()
+            header[9] = 'A'.code.toByte()
+            header[10] = 'V'.code.toByte()
+            header[11] = 'E'.code.toByte()
+
+            // fmt subchunk
+            header[12] = 'f'.code.toByte()
+            header[13] = 'm'.code.toByte()
+            header[14] = 't'.code.toByte()
+            header[15] = ' '.code.toByte()
+
+            // Subchunk1Size (16 for PCM)
+            header[16] = 16
+
+            // AudioFormat (1 for PCM)
+            header[20] = 1
+
+            // NumChannels
+            header[22] = channels.toByte()
+
+            // SampleRate
+            putIntLE(header, 24, sampleRate)
+
+            // ByteRate
+            putIntLE(header, 28, byteRate)
+
+            // BlockAlign
+            header[32] = blockAlign.toByte()
+
+            // BitsPerSample
+            header[34] = 16
+
+            // data subchunk
+            header[36] = 'd'.code.toByte()
+            header[37] = 'a'.code.toByte()
+            header[38] = 't'.code.toByte()
+            header[39] = 'a'.code.toByte()
+
+            // Subchunk2Size (data size)
+            putIntLE(header, 40, dataSize)
+            return header
+        }
+
+        private fun putIntLE(target: ByteArray, offset: Int, value: Int) {
+            target[offset] = (value and 0xff).toByte()
+            target[offset + 1] = ((value shr 8) and 0xff).toByte()
+            target[offset + 2] = ((value shr 16) and 0xff).toByte()
+            target[offset + 3] = ((value shr 24) and 0xff).toByte()
+        }
+    }
+
+    override val encoding: ChunkEncoding = ChunkEncoding.WAV
+
+    // Direct buffers, so FileChannel writes go straight from native memory to the kernel
+    private val scratch: ByteBuffer = ByteBuffer.allocateDirect(SCRATCH_SAMPLES * CaptureFormat.BYTES_PER_SAMPLE)
+        .order(ByteOrder.LITTLE_ENDIAN)
+    private val scratchView: ShortBuffer = scratch.asShortBuffer()
+    private val header: ByteBuffer = ByteBuffer.allocateDirect(CaptureFormat.WAV_HEADER_BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .put(buildHeader(sampleRate, channels, 0))
+
+    private var file: File? = null
+    private var channel: FileChannel? = null
+    private var dataBytes = 0
+
+    override fun open(file: File, expectedDataBytes: Long) {
+        this.file = file
+        channel = FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING
+        ).also {
+            writeHeader(it, 0)
+        }
+        dataBytes = 0
+    }
+
+    override fun write(samples: ShortArray, offset: Int, count: Int) {
+        val out = channel ?: return
+        var pos = offset
+        var remaining = count
+        while (remaining > 0) {
+            val n = minOf(remaining, SCRATCH_SAMPLES)
+            scratchView.clear()
+            scratchView.put(samples, pos, n)
+            scratch.clear()
+            scratch.limit(n * CaptureFormat.BYTES_PER_SAMPLE)
+            while (scratch.hasRemaining()) {
+                out.write(scratch)
+            }
+            dataBytes += n * CaptureFormat.BYTES_PER_SAMPLE
+            pos += n
+            remaining -= n
+        }
+    }
+
+    override fun finish(): Long {
+        val target = file ?: return 0L
+        channel?.let { out ->
+            try {
+                if (dataBytes > 0) {
+                    writeHeader(out, dataBytes)
+                }
+            } catch (e: IOException) {
+                Log.e(TAG, "Error updating WAV header", e)
+            }
+            try {
+                out.close()
+            } catch (_: Exception) { }
+        }
+        channel = null
+        file = null
+        return target.length()
+    }
+
+    override fun release() {
+        try {
+            channel?.close()
+        } catch (_: Exception) { }
+        channel = null
+    }
+
+    /**
+     * Write the header at offset 0 with the RIFF and data sizes for [dataSize] bytes
+     */
+    private fun writeHeader(out: FileChannel, dataSize: Int) {
+        header.putInt(4, dataSize + 36)
+        header.putInt(40, dataSize)
+        header.clear()
+        var position = 0L
+        while (header.hasRemaining()) {
+            position += out.write(header, position)
+        }
+    }
+}
@@ -7,22 +7,32 @@ import androidx.room.TypeConverters
 import android.content.Context
 import com.audioscribe.app.data.database.entity.TranscriptionSession
 import com.audioscribe.app.data.database.entity.TranscriptChunk
+import com.audioscribe.app.data.database.entity.CaptureMetricsRecord
+import com.audioscribe.app.data.database.entity.QueuedChunk
+import com.audioscribe.app.data.database.entity.TranscriptCacheEntry
 import com.audioscribe.app.data.database.dao.TranscriptionSessionDao
 import com.audioscribe.app.data.database.dao.TranscriptChunkDao
+import com.audioscribe.app.data.database.dao.CaptureMetricsDao
+import com.audioscribe.app.data.database.dao.QueuedChunkDao
+import com.audioscribe.app.data.database.dao.TranscriptCacheDao
 import com.audioscribe.app.data.database.converter.Converters
 import net.sqlcipher.database.SQLiteDatabase
 import net.sqlcipher.database.SupportFactory
 
 /**
  * Room database for Audioscribe app
- * Stores transcription sessions and transcript chunks
+ * Stores transcription sessions, transcript chunks, per-session capture metrics, the
+ * queue of chunks waiting for transcription and transcripts cached by audio hash
  */
 @Database(
     entities = [
         TranscriptionSession::class,
-        TranscriptChunk::class
+        TranscriptChunk::class,
+        CaptureMetricsRecord::class,
+        QueuedChunk::class,
+        TranscriptCacheEntry::class
     ],
-    version = 2,
+    version = 9,
     exportSchema = false
 )
 @TypeConverters(Converters::class)
@@ -37,6 +47,21 @@ abstract class AudioscribeDatabase : RoomDatabase() {
      */
     abstract fun chunkDao(): TranscriptChunkDao
 
+    /**
+     * Get the CaptureMetricsRecord DAO
+     */
+    abstract fun captureMetricsDao(): CaptureMetricsDao
+
+    /**
+     * Get the transcription queue DAO
+     */
+    abstract fun queuedChunkDao(): QueuedChunkDao
+
+    /**
+     * Get the transcript cache DAO
+     */
+    abstract fun transcriptCacheDao(): TranscriptCacheDao
+
     companion object {
         private const val DATABASE_NAME = "audioscribe_encrypted.db"
 
@@ -59,7 +84,9 @@ abstract class AudioscribeDatabase : RoomDatabase() {
                     DATABASE_NAME
                 )
                     .openHelperFactory(factory)
-                    .fallbackToDestructiveMigration() // For development - remove in production
+                    // The queue holds work not yet uploaded; schemas newer than the first release are migrated
+                    .addMigrations(*Migrations.ALL)
+                    .fallbackToDestructiveMigrationFrom(1)
                     .build()
 
                 INSTANCE = instance
@@ -0,0 +1,124 @@
+package com.audioscribe.app.data.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Schema migrations for [AudioscribeDatabase]. The transcription queue holds work that has not
+ * been uploaded yet, so upgrades must keep existing rows instead of recreating the database.
+ *
+ * The SQL mirrors what Room generates for the entities; Room validates the result on open.
+ */
+internal object Migrations {
+
+    /**
+     * Voice activity detection: audio and chunks skipped as silent
+     */
+    val MIGRATION_2_3 = object : Migration(2, 3) {
+        override fun migrate(db: SupportSQLiteDatabase) {
+            db.execSQL("ALTER TABLE `transcription_sessions` ADD COLUMN `skippedSilenceMs` INTEGER NOT NULL DEFAULT 0")
+            db.execSQL("ALTER TABLE `transcription_sessions` ADD COLUMN `skippedChunkCount` INTEGER NOT NULL DEFAULT 0")
+        }
+    }
+
+    /**
+     * Chunk overlap and the de-duplicated transcript text
+     */
+    val MIGRATION_3_4 = object : Migration(3, 4) {
+        override fun migrate(db: SupportSQLiteDatabase) {
+            db.execSQL("ALTER TABLE `transcript_chunks` ADD COLUMN `dedupedText` TEXT")
+            db.execSQL("ALTER TABLE `transcript_chunks` ADD COLUMN `overlapMs` INTEGER NOT NULL DEFAULT 0")
+        }
+    }
+
+    /**
+     * Time to first captured sample
+     */
+    val MIGRATION_4_5 = object : Migration(4, 5) {
+        override fun migrate(db: SupportSQLiteDatabase) {
+            db.execSQL("ALTER TABLE `transcription_sessions` ADD COLUMN `timeToFirstSampleMs` INTEGER")
+        }
+    }
+
+    /**
+     * Per-session capture metrics
+     */
+    val MIGRATION_5_6 = object : Migration(5, 6) {
+        override fun migrate(db: SupportSQLiteDatabase) {
+            db.execSQL(
+                "CREATE TABLE IF NOT EXISTS `capture_metrics` (" +
+                    "`sessionId` INTEGER NOT NULL, `device` TEXT NOT NULL, `sdkInt` INTEGER NOT NULL, " +
+                    "`durationMs` INTEGER NOT NULL, `framesRead` INTEGER NOT NULL, `expectedFrames` INTEGER NOT NULL, " +
+                    "`droppedFrames` INTEGER NOT NULL, `gapCount` INTEGER NOT NULL, `gapMs` INTEGER NOT NULL, " +
+                    "`readErrorCount` INTEGER NOT NULL, `readLatencyP50Us` INTEGER, `readLatencyP95Us` INTEGER, " +
+                    "`readLatencyP99Us` INTEGER, `readLatencyMaxUs` INTEGER NOT NULL, `rotationCount` INTEGER NOT NULL, " +
+                    "`rotationAvgMs` REAL NOT NULL, `rotationMaxMs` REAL NOT NULL, `bytesWritten` INTEGER NOT NULL, " +
+                    "`updatedAt` INTEGER NOT NULL, PRIMARY KEY(`sessionId`), " +
+                    "FOREIGN KEY(`sessionId`) REFERENCES `transcription_sessions`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE)"
+            )
+        }
+    }
+
+    /**
+     * Paused time before each chunk
+     */
+    val MIGRATION_6_7 = object : Migration(6, 7) {
+        override fun migrate(db: SupportSQLiteDatabase) {
+            db.execSQL("ALTER TABLE `transcript_chunks` ADD COLUMN `pauseBeforeMs` INTEGER NOT NULL DEFAULT 0")
+        }
+    }
+
+    /**
+     * The transcription queue moves into Room
+     */
+    val MIGRATION_7_8 = object : Migration(7, 8) {
+        override fun migrate(db: SupportSQLiteDatabase) {
+            db.execSQL(
+                "CREATE TABLE IF NOT EXISTS `transcription_queue` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `sessionId` INTEGER, `chunkOrder` INTEGER, " +
+                    "`audioFilePath` TEXT NOT NULL, `language` TEXT, `durationMs` INTEGER, " +
+                    "`overlapMs` INTEGER NOT NULL, `pauseBeforeMs` INTEGER NOT NULL, `status` TEXT NOT NULL, " +
+                    "`attemptCount` INTEGER NOT NULL, `nextAttemptAt` INTEGER NOT NULL, `lastError` TEXT, " +
+                    "`createdAt` INTEGER NOT NULL, `updatedAt` INTEGER NOT NULL)"
+            )
+            db.execSQL(
+                "CREATE INDEX IF NOT EXISTS `index_transcription_queue_status_nextAttemptAt` " +
+                    "ON `transcription_queue` (`status`, `nextAttemptAt`)"
+            )
+        }
+    }
+
+    /**
+     * Transcripts cached by audio hash, and one stored transcript per chunk position
+     */
+    val MIGRATION_8_9 = object : Migration(8, 9) {
+        override fun migrate(db: SupportSQLiteDatabase) {
+            db.execSQL("ALTER TABLE `transcription_queue` ADD COLUMN `audioHash` TEXT")
+            db.execSQL(
+                "CREATE TABLE IF NOT EXISTS `transcript_cache` (" +
+                    "`audioHash` TEXT NOT NULL, `text` TEXT NOT NULL, `model` TEXT NOT NULL, `language` TEXT, " +
+                    "`createdAt` INTEGER NOT NULL, PRIMARY KEY(`audioHash`))"
+            )
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_transcript_cache_createdAt` ON `transcript_cache` (`createdAt`)")
+            // Chunks stored twice before the unique index existed keep their newest row
+            db.execSQL(
+                "DELETE FROM `transcript_chunks` WHERE `id` NOT IN " +
+                    "(SELECT MAX(`id`) FROM `transcript_chunks` GROUP BY `sessionId`, `chunkIndex`)"
+            )
+            db.execSQL(
+                "CREATE UNIQUE INDEX IF NOT EXISTS `index_transcript_chunks_sessionId_chunkIndex` " +
+                    "ON `transcript_chunks` (`sessionId`, `chunkIndex`)"
+            )
+        }
+    }
+
+    val ALL = arrayOf(
+        MIGRATION_2_3,
+        MIGRATION_3_4,
+        MIGRATION_4_5,
+        MIGRATION_5_6,
+        MIGRATION_6_7,
+        MIGRATION_7_8,
+        MIGRATION_8_9
+    )
+}
@@ -3,6 +3,7 @@ package com.audioscribe.app.data.database.converter
 import androidx.room.TypeConverter
 import com.audioscribe.app.data.database.entity.SessionStatus
 import com.audioscribe.app.data.database.entity.ChunkStatus
+import com.audioscribe.app.data.database.entity.QueueStatus
 import java.util.Date
 
 /**
@@ -57,4 +58,20 @@ class Converters {
     fun toChunkStatus(status: String): ChunkStatus {
         return ChunkStatus.valueOf(status)
     }
+    
+    /**
+     * Convert QueueStatus enum to String for storage
+     */
+    @TypeConverter
+    fun fromQueueStatus(status: QueueStatus): String {
+        return status.name
+    }
+    
+    /**
+     * Convert String to QueueStatus enum
+     */
+    @TypeConverter
+    fun toQueueStatus(status: String): QueueStatus {
+        return QueueStatus.valueOf(status)
+    }
 }
@@ -0,0 +1,34 @@
+package com.audioscribe.app.data.database.dao
+
+import androidx.room.*
+import com.audioscribe.app.data.database.entity.CaptureMetricsRecord
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Data Access Object for CaptureMetricsRecord entities
+ */
+@Dao
+interface CaptureMetricsDao {
+
+    /**
+     * Insert or replace the metrics of a session
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsertMetrics(metrics: CaptureMetricsRecord)
+
+    /**
+     * Get the metrics of a session
+     */
+    @Query("SELECT * FROM capture_metrics WHERE sessionId = :sessionId")
+    fun getMetricsForSession(sessionId: Long): Flow<CaptureMetricsRecord?>
+
+    /**
+     * Get the metrics of every session that lost audio, worst first
+     */
+    @Query("""
+        SELECT * FROM capture_metrics
+        WHERE droppedFrames > 0 OR gapCount > 0 OR readErrorCount > 0
+        ORDER BY (MAX(expectedFrames - framesRead, 0) + droppedFrames) DESC
+    """)
+    suspend fun getSessionsWithAudioLoss(): List<CaptureMetricsRecord>
+}
@@ -0,0 +1,96 @@
+package com.audioscribe.app.data.database.dao
+
+import androidx.room.*
+import com.audioscribe.app.data.database.entity.QueuedChunk
+import com.audioscribe.app.data.database.entity.QueueStatus
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Data Access Object for the transcription queue
+ */
+@Dao
+interface QueuedChunkDao {
+
+    @Insert
+    suspend fun insertChunk(chunk: QueuedChunk): Long
+
+    /**
+     * Get the oldest chunks that are due for an attempt
+     */
+    @Query("""
+        SELECT * FROM transcription_queue
+        WHERE status = 'QUEUED' AND nextAttemptAt <= :now
+        ORDER BY id ASC
+        LIMIT :limit
+    """)
+    suspend fun getReadyChunks(now: Long, limit: Int): List<QueuedChunk>
+
+    /**
+     * Get every chunk that still needs work, oldest first
+     */
+    @Query("SELECT * FROM transcription_queue WHERE status IN ('QUEUED', 'IN_PROGRESS') ORDER BY id ASC")
+    suspend fun getPendingChunks(): List<QueuedChunk>
+
+    /**
+     * Earliest time a queued chunk becomes due, or null if nothing is queued
+     */
+    @Query("SELECT MIN(nextAttemptAt) FROM transcription_queue WHERE status = 'QUEUED'")
+    suspend fun getNextAttemptTime(): Long?
+
+    /**
+     * Count chunks that still need work
+     */
+    @Query("SELECT COUNT(*) FROM transcription_queue WHERE status IN ('QUEUED', 'IN_PROGRESS')")
+    suspend fun getPendingCount(): Int
+
+    @Query("UPDATE transcription_queue SET status = :status, updatedAt = :updatedAt WHERE id = :id")
+    suspend fun updateStatus(id: Long, status: QueueStatus, updatedAt: Long = System.currentTimeMillis())
+
+    /**
+     * Put a chunk back in the queue after a failed attempt
+     */
+    @Query("""
+        UPDATE transcription_queue
+        SET status = 'QUEUED',
+            attemptCount = :attemptCount,
+            nextAttemptAt = :nextAttemptAt,
+            lastError = :error,
+            updatedAt = :updatedAt
+        WHERE id = :id
+    """)
+    suspend fun scheduleRetry(
+        id: Long,
+        attemptCount: Int,
+        nextAttemptAt: Long,
+        error: String?,
+        updatedAt: Long = System.currentTimeMillis()
+    )
+
+    @Query("""
+        UPDATE transcription_queue
+        SET status = 'FAILED', lastError = :error, updatedAt = :updatedAt
+        WHERE id = :id
+    """)
+    suspend fun markFailed(id: Long, error: String, updatedAt: Long = System.currentTimeMillis())
+
+    /**
+     * Return chunks left in progress by a worker that did not finish
+     */
+    @Query("UPDATE transcription_queue SET status = 'QUEUED' WHERE status = 'IN_PROGRESS'")
+    suspend fun resetInProgress(): Int
+
+    @Query("DELETE FROM transcription_queue WHERE id = :id")
+    suspend fun deleteChunk(id: Long)
+
+    /**
+     * Delete failed chunks last touched before [olderThan]
+     */
+    @Query("DELETE FROM transcription_queue WHERE status = 'FAILED' AND updatedAt < :olderThan")
+    suspend fun deleteFailedChunks(olderThan: Long): Int
+
+    /**
+     * Status of a chunk; emits null once it has been transcribed and removed
+     */
+    @Query("SELECT status FROM transcription_queue WHERE id = :id")
+    fun observeStatus(id: Long): Flow<QueueStatus?>
+}
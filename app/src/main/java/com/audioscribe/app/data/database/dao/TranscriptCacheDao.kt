@@ -0,0 +1,30 @@
+package com.audioscribe.app.data.database.dao
+
+import androidx.room.*
+import com.audioscribe.app.data.database.entity.TranscriptCacheEntry
+
+/**
+ * Data Access Object for TranscriptCacheEntry entities
+ */
+@Dao
+interface TranscriptCacheDao {
+
+    /**
+     * Insert or replace the transcript of a piece of audio
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsertEntry(entry: TranscriptCacheEntry)
+
+    /**
+     * Get the cached transcript of the audio with [audioHash]
+     */
+    @Query("SELECT * FROM transcript_cache WHERE audioHash = :audioHash")
+    suspend fun getEntry(audioHash: String): TranscriptCacheEntry?
+
+    /**
+     * Delete entries created before [cutoff] (epoch milliseconds)
+     * @return Number of entries deleted
+     */
+    @Query("DELETE FROM transcript_cache WHERE createdAt < :cutoff")
+    suspend fun deleteEntriesBefore(cutoff: Long): Int
+}
@@ -18,6 +18,24 @@ interface TranscriptChunkDao {
     @Insert
     suspend fun insertChunk(chunk: TranscriptChunk): Long
     
+    /**
+     * Insert a transcript chunk, or update the one already stored at the same session and index
+     * in place, keeping its ID, creation time and overlap-trimmed text
+     * @return The ID of the stored chunk
+     */
+    @Transaction
+    suspend fun upsertChunk(chunk: TranscriptChunk): Long {
+        val existing = getChunkByIndex(chunk.sessionId, chunk.chunkIndex) ?: return insertChunk(chunk)
+        updateChunk(
+            chunk.copy(
+                id = existing.id,
+                dedupedText = existing.dedupedText,
+                createdAt = existing.createdAt
+            )
+        )
+        return existing.id
+    }
+    
     /**
      * Insert multiple chunks
      */
@@ -60,6 +78,18 @@ interface TranscriptChunkDao {
     @Query("SELECT * FROM transcript_chunks WHERE sessionId = :sessionId ORDER BY chunkIndex ASC")
     suspend fun getChunksForSessionSync(sessionId: Long): List<TranscriptChunk>
     
+    /**
+     * Get the chunk at a given index within a session
+     */
+    @Query("SELECT * FROM transcript_chunks WHERE sessionId = :sessionId AND chunkIndex = :chunkIndex LIMIT 1")
+    suspend fun getChunkByIndex(sessionId: Long, chunkIndex: Int): TranscriptChunk?
+    
+    /**
+     * Store the overlap-trimmed text of a chunk
+     */
+    @Query("UPDATE transcript_chunks SET dedupedText = :dedupedText, updatedAt = :updatedAt WHERE id = :chunkId")
+    suspend fun updateDedupedText(chunkId: Long, dedupedText: String, updatedAt: Long = System.currentTimeMillis())
+    
     /**
      * Get chunks by status
      */
@@ -136,10 +166,10 @@ interface TranscriptChunkDao {
     )
     
     /**
-     * Get combined text for all completed chunks in a session
+     * Get combined text for all completed chunks in a session, overlap-trimmed where merged
      */
     @Query("""
-        SELECT text FROM transcript_chunks 
+        SELECT COALESCE(dedupedText, text) FROM transcript_chunks 
         WHERE sessionId = :sessionId AND status = 'COMPLETED' 
         ORDER BY chunkIndex ASC
     """)
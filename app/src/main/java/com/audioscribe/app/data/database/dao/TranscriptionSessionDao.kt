@@ -84,6 +84,18 @@ interface TranscriptionSessionDao {
     @Query("UPDATE transcription_sessions SET chunkCount = :chunkCount, transcribedChunkCount = :transcribedChunkCount, updatedAt = :updatedAt WHERE id = :sessionId")
     suspend fun updateSessionChunkCounts(sessionId: Long, chunkCount: Int, transcribedChunkCount: Int, updatedAt: Long = System.currentTimeMillis())
     
+    /**
+     * Add a silent chunk that was skipped instead of transcribed
+     */
+    @Query("UPDATE transcription_sessions SET skippedSilenceMs = skippedSilenceMs + :durationMs, skippedChunkCount = skippedChunkCount + 1, updatedAt = :updatedAt WHERE id = :sessionId")
+    suspend fun addSkippedSilence(sessionId: Long, durationMs: Long, updatedAt: Long = System.currentTimeMillis())
+    
+    /**
+     * Record the session's start-to-first-sample latency
+     */
+    @Query("UPDATE transcription_sessions SET timeToFirstSampleMs = :latencyMs, updatedAt = :updatedAt WHERE id = :sessionId")
+    suspend fun updateTimeToFirstSample(sessionId: Long, latencyMs: Long, updatedAt: Long = System.currentTimeMillis())
+    
     /**
      * Get session statistics
      */
@@ -0,0 +1,94 @@
+package com.audioscribe.app.data.database.entity
+
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.PrimaryKey
+import java.util.Date
+
+/**
+ * Capture health of one recording session, so sessions that lost audio can be traced back to
+ * the device and load conditions they were recorded under. Updated while recording and once
+ * more when capture ends.
+ */
+@Entity(
+    tableName = "capture_metrics",
+    foreignKeys = [
+        ForeignKey(
+            entity = TranscriptionSession::class,
+            parentColumns = ["id"],
+            childColumns = ["sessionId"],
+            onDelete = ForeignKey.CASCADE
+        )
+    ]
+)
+data class CaptureMetricsRecord(
+    /**
+     * ID of the session these metrics belong to
+     */
+    @PrimaryKey
+    val sessionId: Long,
+
+    /**
+     * Device the session was recorded on (manufacturer and model) and its Android SDK level
+     */
+    val device: String,
+    val sdkInt: Int,
+
+    /**
+     * Wall-clock time covered by the metrics, in milliseconds
+     */
+    val durationMs: Long,
+
+    /**
+     * Frames returned by AudioRecord reads vs. frames the wall clock says were captured
+     */
+    val framesRead: Long,
+    val expectedFrames: Long,
+
+    /**
+     * Frames read but discarded because the writer fell behind (ring overruns)
+     */
+    val droppedFrames: Long,
+
+    /**
+     * Read intervals longer than the AudioRecord's buffer, and the audio they are estimated to have lost
+     */
+    val gapCount: Long,
+    val gapMs: Long,
+
+    /**
+     * AudioRecord reads that returned an error code
+     */
+    val readErrorCount: Long,
+
+    /**
+     * Time spent inside AudioRecord.read() (bucket upper bounds, microseconds)
+     */
+    val readLatencyP50Us: Long?,
+    val readLatencyP95Us: Long?,
+    val readLatencyP99Us: Long?,
+    val readLatencyMaxUs: Long,
+
+    /**
+     * Chunk file rotations and how long they held up the writer
+     */
+    val rotationCount: Long,
+    val rotationAvgMs: Double,
+    val rotationMaxMs: Double,
+
+    /**
+     * Bytes written to chunk files
+     */
+    val bytesWritten: Long,
+
+    /**
+     * Timestamp when this record was last updated
+     */
+    val updatedAt: Date = Date()
+) {
+    /**
+     * Frames the app never got to write: lost inside the AudioRecord or dropped by the ring
+     */
+    val missingFrames: Long
+        get() = (expectedFrames - framesRead).coerceAtLeast(0) + droppedFrames
+}
@@ -0,0 +1,78 @@
+package com.audioscribe.app.data.database.entity
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+import java.util.Date
+
+/**
+ * A recorded chunk waiting to be transcribed. Rows are drained by TranscriptionWorker and
+ * deleted once the chunk's transcript is stored; chunks that fail for good are kept as
+ * [QueueStatus.FAILED] until pruned.
+ */
+@Entity(
+    tableName = "transcription_queue",
+    indices = [
+        Index(value = ["status", "nextAttemptAt"])
+    ]
+)
+data class QueuedChunk(
+    @PrimaryKey(autoGenerate = true)
+    val id: Long = 0,
+
+    /**
+     * Session and position the transcript belongs to, if the chunk was recorded in a session
+     */
+    val sessionId: Long? = null,
+    val chunkOrder: Int? = null,
+
+    /**
+     * Audio file to upload; deleted once transcribed
+     */
+    val audioFilePath: String,
+
+    /**
+     * Language hint, or null for auto-detection
+     */
+    val language: String? = null,
+
+    /**
+     * Recorded length, repeated audio at the start and paused time before the chunk, in milliseconds
+     */
+    val durationMs: Long? = null,
+    val overlapMs: Long = 0,
+    val pauseBeforeMs: Long = 0,
+
+    /**
+     * Hash of the chunk's audio, used to find an earlier transcript of it; null for old entries
+     */
+    val audioHash: String? = null,
+
+    /**
+     * Where the chunk is in the queue
+     */
+    val status: QueueStatus = QueueStatus.QUEUED,
+
+    /**
+     * Failed attempts so far, and when the chunk may be tried again (epoch milliseconds)
+     */
+    val attemptCount: Int = 0,
+    val nextAttemptAt: Long = 0,
+
+    /**
+     * Error from the most recent failed attempt
+     */
+    val lastError: String? = null,
+
+    val createdAt: Date = Date(),
+    val updatedAt: Date = Date()
+)
+
+/**
+ * State of a [QueuedChunk]
+ */
+enum class QueueStatus {
+    QUEUED,
+    IN_PROGRESS,
+    FAILED
+}
@@ -0,0 +1,37 @@
+package com.audioscribe.app.data.database.entity
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+import java.util.Date
+
+/**
+ * Transcript of a piece of audio, keyed by the hash of its PCM. Looked up before a chunk is
+ * uploaded, so audio that was already paid for is not transcribed again.
+ */
+@Entity(
+    tableName = "transcript_cache",
+    indices = [
+        Index(value = ["createdAt"])
+    ]
+)
+data class TranscriptCacheEntry(
+    /**
+     * SHA-256 of the chunk's audio, as computed by ChunkDigest
+     */
+    @PrimaryKey
+    val audioHash: String,
+
+    /**
+     * The transcribed text
+     */
+    val text: String,
+
+    /**
+     * Model and language hint the text was produced with; a lookup with others misses
+     */
+    val model: String,
+    val language: String? = null,
+
+    val createdAt: Date = Date()
+)
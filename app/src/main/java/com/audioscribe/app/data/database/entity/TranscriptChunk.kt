@@ -8,7 +8,7 @@ import java.util.Date
 
 /**
  * Entity representing a single transcript chunk within a session.
- * Each chunk corresponds to a 30-second audio segment that was transcribed.
+ * Each chunk corresponds to an audio segment (20-45 seconds by default, split at a pause) that was transcribed.
  */
 @Entity(
     tableName = "transcript_chunks",
@@ -22,6 +22,8 @@ import java.util.Date
     ],
     indices = [
         Index(value = ["sessionId"]),
+        // One transcript per chunk position, so storing a chunk again replaces it
+        Index(value = ["sessionId", "chunkIndex"], unique = true),
         Index(value = ["chunkIndex"]),
         Index(value = ["createdAt"])
     ]
@@ -45,6 +47,22 @@ data class TranscriptChunk(
      */
     val text: String,
     
+    /**
+     * [text] with the words already transcribed by the previous chunk's overlap removed,
+     * or null when the chunk has no overlap or its predecessor has not been merged yet
+     */
+    val dedupedText: String? = null,
+    
+    /**
+     * Length of audio at the start of this chunk repeated from the end of the previous one
+     */
+    val overlapMs: Long = 0,
+    
+    /**
+     * How long recording was paused between the previous transcribed chunk and this one
+     */
+    val pauseBeforeMs: Long = 0,
+    
     /**
      * Confidence score from the transcription API (0.0 to 1.0)
      */
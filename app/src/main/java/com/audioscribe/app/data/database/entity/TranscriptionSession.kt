@@ -58,6 +58,21 @@ data class TranscriptionSession(
      */
     val totalAudioSizeBytes: Long = 0,
     
+    /**
+     * Audio dropped before upload because voice activity detection found no speech, in milliseconds
+     */
+    val skippedSilenceMs: Long = 0,
+    
+    /**
+     * Number of chunks that were never transcribed because they were (near-)silent
+     */
+    val skippedChunkCount: Int = 0,
+    
+    /**
+     * Time from the start request to the first captured audio sample, in milliseconds (null if unknown)
+     */
+    val timeToFirstSampleMs: Long? = null,
+    
     /**
      * Timestamp when this record was created
      */
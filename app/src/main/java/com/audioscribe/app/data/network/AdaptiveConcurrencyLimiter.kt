@@ -0,0 +1,197 @@
+package com.audioscribe.app.data.network
+
+import android.os.SystemClock
+import android.util.Log
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.first
+import okhttp3.Headers
+import java.util.Date
+
+/**
+ * AIMD (additive increase, multiplicative decrease) limit on concurrent transcription requests.
+ *
+ * Every request that completes quickly raises the limit by 1/limit, so it grows by about one
+ * per round of requests. A request that gets a 429, a 5xx or a timeout halves the limit. Latency
+ * is tracked per uploaded byte against a slowly rising floor. A request that takes more than
+ * [LATENCY_TOLERANCE] times the floor is treated as queueing on the server: it trims the limit
+ * slightly instead of raising it. Only requests started after the last cut can cut it again,
+ * so a burst of failures from one round counts once.
+ *
+ * Retry-After, and an exhausted x-ratelimit-remaining-requests, stop new requests from starting
+ * until the server's reset time. A backlog therefore drains at about the account's rate limit
+ * instead of failing in bursts.
+ */
+class AdaptiveConcurrencyLimiter(
+    initialLimit: Int = INITIAL_LIMIT,
+    private val minLimit: Int = 1,
+    private val maxLimit: Int = MAX_LIMIT
+) {
+
+    companion object {
+        private const val TAG = "ConcurrencyLimiter"
+        private const val INITIAL_LIMIT = 2
+        private const val MAX_LIMIT = 8
+        private const val DECREASE_FACTOR = 0.5
+        private const val LATENCY_DECREASE_FACTOR = 0.9
+        private const val LATENCY_TOLERANCE = 2.0
+        private const val FLOOR_DRIFT = 0.05 // Lets the latency floor follow a slower network
+        private const val DEFAULT_RATE_LIMIT_PAUSE_MS = 1_000L // 429 without Retry-After
+        private const val MAX_PAUSE_MS = 5 * 60 * 1000L
+
+        /**
+         * Wait requested by retry-after-ms or Retry-After (seconds or an HTTP date), or null
+         */
+        fun retryAfterMs(headers: Headers): Long? {
+            headers["retry-after-ms"]?.trim()?.toDoubleOrNull()?.let { return it.toLong().coerceAtLeast(0) }
+            val value = headers["Retry-After"]?.trim() ?: return null
+            value.toDoubleOrNull()?.let { return (it * 1000).toLong().coerceAtLeast(0) }
+            val date: Date = headers.getDate("Retry-After") ?: return null
+            return (date.time - System.currentTimeMillis()).coerceAtLeast(0)
+        }
+
+        /**
+         * Parse an x-ratelimit-reset-* duration such as "20ms", "1.5s" or "6m0s"
+         */
+        fun parseResetMs(value: String): Long? {
+            var totalMs = 0.0
+            var matched = false
+            Regex("""(\d+(?:\.\d+)?)(ms|h|m|s)""").findAll(value.trim()).forEach { match ->
+                val amount = match.groupValues[1].toDouble()
+                totalMs += when (match.groupValues[2]) {
+                    "h" -> amount * 3_600_000
+                    "m" -> amount * 60_000
+                    "s" -> amount * 1_000
+                    else -> amount
+                }
+                matched = true
+            }
+            return if (matched) totalMs.toLong() else null
+        }
+    }
+
+    private data class State(
+        val limit: Double,
+        val inFlight: Int,
+        val blockedUntilMs: Long
+    )
+
+    private val state = MutableStateFlow(State(initialLimit.toDouble(), 0, 0L))
+
+    // Guarded by this
+    private var latencyFloor = 0.0
+    private var lastDecreaseAtMs = 0L
+
+    /**
+     * Current number of requests allowed at once
+     */
+    val limit: Int get() = state.value.limit.toInt()
+
+    /**
+     * Wait until a request may start and count it as in flight; pair with [release]
+     * @return Start time to pass to [onSuccess] or [onOverload]
+     */
+    suspend fun acquire(): Long {
+        while (true) {
+            val current = state.value
+            val pauseMs = current.blockedUntilMs - SystemClock.elapsedRealtime()
+            if (pauseMs > 0) {
+                delay(pauseMs)
+                continue
+            }
+            if (current.inFlight < current.limit.toInt()) {
+                if (state.compareAndSet(current, current.copy(inFlight = current.inFlight + 1))) {
+                    return SystemClock.elapsedRealtime()
+                }
+                continue
+            }
+            state.first { it != current }
+        }
+    }
+
+    /**
+     * Count a request as in flight if one may start right now, without waiting; pair a non-null
+     * result with [release]
+     * @return Start time as for [acquire], or null if the limit is reached or requests are paused
+     */
+    fun tryAcquire(): Long? {
+        while (true) {
+            val current = state.value
+            if (current.blockedUntilMs > SystemClock.elapsedRealtime()) return null
+            if (current.inFlight >= current.limit.toInt()) return null
+            if (state.compareAndSet(current, current.copy(inFlight = current.inFlight + 1))) {
+                return SystemClock.elapsedRealtime()
+            }
+        }
+    }
+
+    fun release() {
+        update { it.copy(inFlight = (it.inFlight - 1).coerceAtLeast(0)) }
+    }
+
+    /**
+     * A request started at [startedAtMs] that uploaded [bytes] succeeded just now
+     */
+    @Synchronized
+    fun onSuccess(startedAtMs: Long, bytes: Long) {
+        val latencyMs = SystemClock.elapsedRealtime() - startedAtMs
+        if (bytes <= 0) {
+            update { it.copy(limit = increased(it.limit)) }
+            return
+        }
+        val perByte = latencyMs.toDouble() / bytes
+        latencyFloor = when {
+            latencyFloor == 0.0 || perByte < latencyFloor -> perByte
+            else -> latencyFloor + (perByte - latencyFloor) * FLOOR_DRIFT
+        }
+        if (perByte > latencyFloor * LATENCY_TOLERANCE) {
+            if (startedAtMs >= lastDecreaseAtMs) {
+                lastDecreaseAtMs = SystemClock.elapsedRealtime()
+                update { it.copy(limit = (it.limit * LATENCY_DECREASE_FACTOR).coerceAtLeast(minLimit.toDouble())) }
+                Log.d(TAG, "Latency ${latencyMs} ms above tolerance, limit now $limit")
+            }
+        } else {
+            update { it.copy(limit = increased(it.limit)) }
+        }
+    }
+
+    /**
+     * A request started at [startedAtMs] was refused or timed out: a 429, a 5xx or a timeout.
+     * [retryAfterMs] is the server's requested wait, if it gave one.
+     */
+    @Synchronized
+    fun onOverload(startedAtMs: Long, rateLimited: Boolean, retryAfterMs: Long?) {
+        val now = SystemClock.elapsedRealtime()
+        val pauseMs = (retryAfterMs ?: if (rateLimited) DEFAULT_RATE_LIMIT_PAUSE_MS else 0L).coerceAtMost(MAX_PAUSE_MS)
+        val cut = startedAtMs >= lastDecreaseAtMs
+        if (cut) lastDecreaseAtMs = now
+        update {
+            it.copy(
+                limit = if (cut) (it.limit * DECREASE_FACTOR).coerceAtLeast(minLimit.toDouble()) else it.limit,
+                blockedUntilMs = maxOf(it.blockedUntilMs, now + pauseMs)
+            )
+        }
+        Log.w(TAG, "Server overloaded (rate limited: $rateLimited), limit now $limit, pausing ${pauseMs} ms")
+    }
+
+    /**
+     * Hold new requests until the reset time once x-ratelimit-remaining-requests reaches zero
+     */
+    fun onRateLimitHeaders(headers: Headers) {
+        val remaining = headers["x-ratelimit-remaining-requests"]?.trim()?.toIntOrNull() ?: return
+        if (remaining > 0) return
+        val resetMs = headers["x-ratelimit-reset-requests"]?.let { parseResetMs(it) } ?: return
+        val until = SystemClock.elapsedRealtime() + resetMs.coerceAtMost(MAX_PAUSE_MS)
+        update { it.copy(blockedUntilMs = maxOf(it.blockedUntilMs, until)) }
+        Log.d(TAG, "Request budget exhausted, holding new requests for ${resetMs} ms")
+    }
+
+    private fun increased(limit: Double): Double = (limit + 1.0 / limit).coerceAtMost(maxLimit.toDouble())
+
+    private inline fun update(transform: (State) -> State) {
+        while (true) {
+            val current = state.value
+            if (state.compareAndSet(current, transform(current))) return
+        }
+    }
+}
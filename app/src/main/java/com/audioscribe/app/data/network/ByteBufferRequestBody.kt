@@ -0,0 +1,51 @@
+package com.audioscribe.app.data.network
+
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import java.nio.ByteBuffer
+
+/**
+ * Request body that streams an in-memory (possibly off-heap) buffer straight into the
+ * connection, without first copying it to a file or a byte array.
+ * The buffer must stay unchanged until the call completes; each write starts from its
+ * position, so the body can be replayed on retry.
+ * With a [name], the buffer is written in slices and progress is reported to
+ * [UploadProgressTracker] as for [FileChannelRequestBody].
+ */
+class ByteBufferRequestBody(
+    private val data: ByteBuffer,
+    private val mediaType: MediaType?,
+    private val name: String? = null
+) : RequestBody() {
+
+    override fun contentType(): MediaType? = mediaType
+
+    override fun contentLength(): Long = data.remaining().toLong()
+
+    override fun writeTo(sink: BufferedSink) {
+        val source = data.duplicate()
+        if (name == null) {
+            while (source.hasRemaining()) {
+                sink.write(source)
+            }
+            return
+        }
+        val total = source.remaining().toLong()
+        var sent = 0L
+        UploadProgressTracker.update(UploadProgress(name, 0L, total))
+        val startNanos = System.nanoTime()
+        while (source.hasRemaining()) {
+            val slice = source.duplicate()
+            slice.limit(minOf(source.position() + UploadProgressTracker.SLICE_BYTES, source.limit()))
+            while (slice.hasRemaining()) {
+                sink.write(slice)
+            }
+            sink.flush()
+            sent += slice.position() - source.position()
+            source.position(slice.position())
+            UploadProgressTracker.update(UploadProgress(name, sent, total))
+        }
+        UploadProgressTracker.recordTransfer(sent, System.nanoTime() - startNanos)
+    }
+}
@@ -0,0 +1,51 @@
+package com.audioscribe.app.data.network
+
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * Request body that streams a file from a [FileChannel] in fixed-size slices, flushing each one
+ * to the connection and reporting the bytes written to [UploadProgressTracker] under [name].
+ * The file must stay unchanged until the call completes; each write reopens it, so the body can
+ * be replayed on retry.
+ */
+class FileChannelRequestBody(
+    private val file: File,
+    private val mediaType: MediaType?,
+    private val name: String = file.name
+) : RequestBody() {
+
+    private val length = file.length()
+
+    override fun contentType(): MediaType? = mediaType
+
+    override fun contentLength(): Long = length
+
+    override fun writeTo(sink: BufferedSink) {
+        val buffer = ByteBuffer.allocate(UploadProgressTracker.SLICE_BYTES)
+        var sent = 0L
+        UploadProgressTracker.update(UploadProgress(name, 0L, length))
+        val startNanos = System.nanoTime()
+        FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+            while (sent < length) {
+                buffer.clear()
+                val read = channel.read(buffer)
+                if (read < 0) break
+                buffer.flip()
+                while (buffer.hasRemaining()) {
+                    sink.write(buffer)
+                }
+                // Flushed per slice so progress follows the socket, not OkHttp's buffer
+                sink.flush()
+                sent += read
+                UploadProgressTracker.update(UploadProgress(name, sent, length))
+            }
+        }
+        UploadProgressTracker.recordTransfer(sent, System.nanoTime() - startNanos)
+    }
+}
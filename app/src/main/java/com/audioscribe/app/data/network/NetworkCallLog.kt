@@ -0,0 +1,114 @@
+package com.audioscribe.app.data.network
+
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+
+/**
+ * Timings and sizes of one HTTP call. Phases that did not happen (DNS and connect on a reused
+ * connection, the request body of a GET) are null.
+ */
+data class NetworkCallRecord(
+    val startedAtMs: Long,
+    val method: String,
+    val host: String,
+    val path: String,
+    val statusCode: Int?,
+    val protocol: String?,
+    val reusedConnection: Boolean,
+    val dnsMs: Long?,
+    val connectMs: Long?,
+    val tlsMs: Long?,
+    val requestBodyMs: Long?,
+    val ttfbMs: Long?,
+    val responseMs: Long?,
+    val totalMs: Long,
+    val bytesSent: Long,
+    val bytesReceived: Long,
+    val error: String?
+) {
+    /**
+     * One line for logcat and the debug screen
+     */
+    fun summary(): String {
+        val outcome = statusCode?.toString() ?: error ?: "no response"
+        val phases = listOfNotNull(
+            dnsMs?.let { "dns $it" },
+            connectMs?.let { "connect $it" },
+            tlsMs?.let { "tls $it" },
+            requestBodyMs?.let { "send $it" },
+            ttfbMs?.let { "ttfb $it" },
+            responseMs?.let { "receive $it" }
+        ).joinToString(", ")
+        return "$method $host$path $outcome in $totalMs ms ($phases) " +
+            "sent $bytesSent B, received $bytesReceived B, ${if (reusedConnection) "reused" else "new"} ${protocol ?: ""}".trimEnd()
+    }
+
+    fun toCsvRow(): String = listOf(
+        CSV_TIME_FORMAT.get()!!.format(Date(startedAtMs)),
+        method,
+        host,
+        path,
+        statusCode?.toString().orEmpty(),
+        protocol.orEmpty(),
+        reusedConnection.toString(),
+        dnsMs?.toString().orEmpty(),
+        connectMs?.toString().orEmpty(),
+        tlsMs?.toString().orEmpty(),
+        requestBodyMs?.toString().orEmpty(),
+        ttfbMs?.toString().orEmpty(),
+        responseMs?.toString().orEmpty(),
+        totalMs.toString(),
+        bytesSent.toString(),
+        bytesReceived.toString(),
+        error?.let { "\"" + it.replace("\"", "\"\"") + "\"" }.orEmpty()
+    ).joinToString(",")
+
+    companion object {
+        const val CSV_HEADER = "started,method,host,path,status,protocol,reused,dns_ms,connect_ms,tls_ms," +
+            "request_body_ms,ttfb_ms,response_ms,total_ms,bytes_sent,bytes_received,error"
+
+        private val CSV_TIME_FORMAT = object : ThreadLocal<SimpleDateFormat>() {
+            override fun initialValue() = SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ", Locale.US)
+        }
+    }
+}
+
+/**
+ * The most recent calls made through [NetworkClient], oldest dropped first. Read by the network
+ * debug screen and its export.
+ */
+object NetworkCallLog {
+
+    private const val CAPACITY = 200
+
+    private val records = ArrayDeque<NetworkCallRecord>(CAPACITY)
+
+    @Synchronized
+    fun record(record: NetworkCallRecord) {
+        if (records.size == CAPACITY) records.removeFirst()
+        records.addLast(record)
+    }
+
+    /**
+     * Recorded calls, newest first
+     */
+    @Synchronized
+    fun snapshot(): List<NetworkCallRecord> = records.reversed()
+
+    @Synchronized
+    fun clear() {
+        records.clear()
+    }
+
+    /**
+     * Recorded calls as CSV, oldest first
+     */
+    fun exportCsv(): String {
+        val rows = snapshot().asReversed()
+        return buildString {
+            appendLine(NetworkCallRecord.CSV_HEADER)
+            rows.forEach { appendLine(it.toCsvRow()) }
+        }
+    }
+}
@@ -1,44 +1,124 @@
 package com.audioscribe.app.data.network
 
+import android.util.Log
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.ConnectionPool
+import okhttp3.Dispatcher
 import okhttp3.OkHttpClient
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
 import okhttp3.logging.HttpLoggingInterceptor
 import retrofit2.Retrofit
 import retrofit2.converter.gson.GsonConverterFactory
+import java.io.IOException
 import java.util.concurrent.TimeUnit
 
 /**
- * Network client factory for creating Retrofit instances
+ * Process-wide network stack for the Whisper API.
+ *
+ * One OkHttpClient and one Retrofit service are built on first use and shared by the recording
+ * service and every worker run. Chunks therefore reuse pooled, multiplexed HTTP/2 connections
+ * instead of paying for DNS, TCP and TLS each time. [prewarm] opens a connection ahead of the
+ * first upload.
  */
 object NetworkClient {
-    
+
+    private const val TAG = "NetworkClient"
     private const val TIMEOUT_SECONDS = 60L // Whisper API can take time for longer audio files
-    
+    private const val MAX_IDLE_CONNECTIONS = 4
+    private const val KEEP_ALIVE_MINUTES = 5L
+    private const val PING_INTERVAL_SECONDS = 30L // Keeps an idle HTTP/2 connection alive between chunks
+    private const val MAX_REQUESTS_PER_HOST = 16 // Above the concurrency limiter's ceiling, so it decides
+
+    /**
+     * Whether request and response bodies may be logged at all. Set once at startup, true only
+     * for debuggable builds; release builds never install the body logger.
+     */
+    @Volatile
+    var bodyLoggingAllowed = false
+
+    // Level is switched at runtime by setBodyLoggingEnabled; NONE unless opted in
+    private val bodyLogger = HttpLoggingInterceptor().apply {
+        level = HttpLoggingInterceptor.Level.NONE
+        redactHeader("Authorization")
+    }
+
+    /**
+     * Shared client with appropriate timeouts and connection pooling
+     */
+    val okHttpClient: OkHttpClient by lazy { createOkHttpClient() }
+
     /**
-     * Create OkHttpClient with appropriate timeouts and logging
+     * Shared Retrofit service for the Whisper API
+     */
+    val whisperApiService: WhisperApiService by lazy {
+        Retrofit.Builder()
+            .baseUrl(WhisperApiService.BASE_URL)
+            .client(okHttpClient)
+            .addConverterFactory(GsonConverterFactory.create())
+            .build()
+            .create(WhisperApiService::class.java)
+    }
+
+    /**
+     * Create OkHttpClient with appropriate timeouts. Calls are timed by [NetworkMetricsListener],
+     * which never reads bodies; the body logger is only present in debuggable builds.
      */
     private fun createOkHttpClient(): OkHttpClient {
-        val loggingInterceptor = HttpLoggingInterceptor().apply {
-            level = HttpLoggingInterceptor.Level.BODY
-        }
-        
         return OkHttpClient.Builder()
-            .addInterceptor(loggingInterceptor)
+            .apply { if (bodyLoggingAllowed) addInterceptor(bodyLogger) }
             .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
             .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
             .writeTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .protocols(listOf(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectionPool(ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .pingInterval(PING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+            .dispatcher(Dispatcher().apply { maxRequestsPerHost = MAX_REQUESTS_PER_HOST })
+            .eventListenerFactory(NetworkMetricsListener.factory)
             .build()
     }
-    
+
     /**
-     * Create Retrofit instance for Whisper API
+     * Shared Retrofit service for Whisper API
      */
-    fun createWhisperApiService(): WhisperApiService {
-        val retrofit = Retrofit.Builder()
-            .baseUrl(WhisperApiService.BASE_URL)
-            .client(createOkHttpClient())
-            .addConverterFactory(GsonConverterFactory.create())
+    fun createWhisperApiService(): WhisperApiService = whisperApiService
+
+    /**
+     * Open a connection to the API host in the background, unless one is already pooled, so
+     * the next upload starts on a connected socket. The response is discarded.
+     */
+    fun prewarm() {
+        if (okHttpClient.connectionPool.idleConnectionCount() > 0) return
+        val request = Request.Builder()
+            .url(WhisperApiService.BASE_URL)
+            .head()
             .build()
-        
-        return retrofit.create(WhisperApiService::class.java)
+        okHttpClient.newCall(request).enqueue(object : Callback {
+            override fun onResponse(call: Call, response: Response) {
+                response.close()
+                Log.d(TAG, "Prewarmed connection to ${request.url.host} (${response.protocol})")
+            }
+
+            override fun onFailure(call: Call, e: IOException) {
+                Log.w(TAG, "Prewarm failed: ${e.message}")
+            }
+        })
     }
+
+    /**
+     * Log full request and response bodies to logcat. Debug-only opt-in: ignored unless
+     * [bodyLoggingAllowed]. Multipart uploads are buffered into the log, so leave it off for
+     * anything but short investigations.
+     */
+    fun setBodyLoggingEnabled(enabled: Boolean) {
+        val level = if (enabled && bodyLoggingAllowed) HttpLoggingInterceptor.Level.BODY else HttpLoggingInterceptor.Level.NONE
+        bodyLogger.level = level
+    }
+
+    /**
+     * Connection reuse and handshake times so far
+     */
+    fun connectionStats(): NetworkConnectionStats = NetworkMetricsListener.snapshot()
 }
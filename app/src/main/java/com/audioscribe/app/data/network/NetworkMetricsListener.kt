@@ -0,0 +1,200 @@
+package com.audioscribe.app.data.network
+
+import android.util.Log
+import okhttp3.Call
+import okhttp3.Connection
+import okhttp3.EventListener
+import okhttp3.Handshake
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Times each phase of a call from OkHttp's events and records it in [NetworkCallLog] when the
+ * call ends. Only event callbacks and byte counts are used, so request and response bodies
+ * (multipart WAV uploads, transcripts) are never read, buffered or logged.
+ *
+ * One listener is created per call by [factory]. Connection reuse and handshake totals are
+ * kept across calls for [snapshot].
+ */
+class NetworkMetricsListener private constructor() : EventListener() {
+
+    companion object {
+        private const val TAG = "NetworkMetrics"
+
+        private val calls = AtomicLong(0)
+        private val newConnections = AtomicLong(0)
+        private val handshakeTotalNanos = AtomicLong(0)
+        private val handshakeMaxNanos = AtomicLong(0)
+
+        val factory = Factory { NetworkMetricsListener() }
+
+        fun snapshot(): NetworkConnectionStats {
+            val opened = newConnections.get()
+            return NetworkConnectionStats(
+                calls = calls.get(),
+                newConnections = opened,
+                avgHandshakeMs = if (opened > 0) handshakeTotalNanos.get() / opened / 1_000_000 else 0L,
+                maxHandshakeMs = handshakeMaxNanos.get() / 1_000_000
+            )
+        }
+
+        private fun elapsedMs(startNanos: Long, endNanos: Long): Long? =
+            if (startNanos > 0L && endNanos >= startNanos) (endNanos - startNanos) / 1_000_000 else null
+    }
+
+    private var startedAtMs = 0L
+    private var method = ""
+    private var host = ""
+    private var path = ""
+    private var protocol: Protocol? = null
+    private var reusedConnection = false
+    private var statusCode: Int? = null
+    private var bytesSent = 0L
+    private var bytesReceived = 0L
+
+    private var callStartNanos = 0L
+    private var dnsStartNanos = 0L
+    private var dnsEndNanos = 0L
+    private var connectStartNanos = 0L
+    private var connectEndNanos = 0L
+    private var secureConnectStartNanos = 0L
+    private var secureConnectEndNanos = 0L
+    private var requestBodyStartNanos = 0L
+    private var requestBodyEndNanos = 0L
+    private var requestEndNanos = 0L
+    private var responseHeadersStartNanos = 0L
+    private var responseBodyEndNanos = 0L
+
+    override fun callStart(call: Call) {
+        callStartNanos = System.nanoTime()
+        startedAtMs = System.currentTimeMillis()
+        val url = call.request().url
+        method = call.request().method
+        host = url.host
+        // The path only: query strings are not needed and could carry parameters
+        path = url.encodedPath
+    }
+
+    override fun dnsStart(call: Call, domainName: String) {
+        dnsStartNanos = System.nanoTime()
+    }
+
+    override fun dnsEnd(call: Call, domainName: String, inetAddressList: List<InetAddress>) {
+        dnsEndNanos = System.nanoTime()
+    }
+
+    override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+        connectStartNanos = System.nanoTime()
+    }
+
+    override fun secureConnectStart(call: Call) {
+        secureConnectStartNanos = System.nanoTime()
+    }
+
+    override fun secureConnectEnd(call: Call, handshake: Handshake?) {
+        secureConnectEndNanos = System.nanoTime()
+    }
+
+    override fun connectEnd(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy, protocol: Protocol?) {
+        connectEndNanos = System.nanoTime()
+        val elapsed = connectEndNanos - connectStartNanos
+        newConnections.incrementAndGet()
+        handshakeTotalNanos.addAndGet(elapsed)
+        handshakeMaxNanos.accumulateAndGet(elapsed, ::maxOf)
+    }
+
+    override fun connectionAcquired(call: Call, connection: Connection) {
+        calls.incrementAndGet()
+        reusedConnection = connectStartNanos == 0L
+        protocol = connection.protocol()
+    }
+
+    override fun requestHeadersEnd(call: Call, request: Request) {
+        bytesSent += request.headers.byteCount()
+        requestEndNanos = System.nanoTime()
+    }
+
+    override fun requestBodyStart(call: Call) {
+        requestBodyStartNanos = System.nanoTime()
+    }
+
+    override fun requestBodyEnd(call: Call, byteCount: Long) {
+        requestBodyEndNanos = System.nanoTime()
+        requestEndNanos = requestBodyEndNanos
+        bytesSent += byteCount
+    }
+
+    override fun responseHeadersStart(call: Call) {
+        responseHeadersStartNanos = System.nanoTime()
+    }
+
+    override fun responseHeadersEnd(call: Call, response: Response) {
+        statusCode = response.code
+        bytesReceived += response.headers.byteCount()
+    }
+
+    override fun responseBodyEnd(call: Call, byteCount: Long) {
+        responseBodyEndNanos = System.nanoTime()
+        bytesReceived += byteCount
+    }
+
+    override fun callEnd(call: Call) {
+        finish(null)
+    }
+
+    override fun callFailed(call: Call, ioe: IOException) {
+        finish(ioe.javaClass.simpleName + (ioe.message?.let { ": $it" } ?: ""))
+    }
+
+    private fun finish(error: String?) {
+        val now = System.nanoTime()
+        val record = NetworkCallRecord(
+            startedAtMs = startedAtMs,
+            method = method,
+            host = host,
+            path = path,
+            statusCode = statusCode,
+            protocol = protocol?.toString(),
+            reusedConnection = reusedConnection,
+            dnsMs = elapsedMs(dnsStartNanos, dnsEndNanos),
+            connectMs = elapsedMs(connectStartNanos, connectEndNanos),
+            tlsMs = elapsedMs(secureConnectStartNanos, secureConnectEndNanos),
+            requestBodyMs = elapsedMs(requestBodyStartNanos, requestBodyEndNanos),
+            ttfbMs = elapsedMs(requestEndNanos, responseHeadersStartNanos),
+            responseMs = elapsedMs(responseHeadersStartNanos, responseBodyEndNanos),
+            totalMs = elapsedMs(callStartNanos, now) ?: 0L,
+            bytesSent = bytesSent,
+            bytesReceived = bytesReceived,
+            error = error
+        )
+        NetworkCallLog.record(record)
+        Log.d(TAG, record.summary())
+    }
+}
+
+/**
+ * Point-in-time view of connection setup across the process
+ */
+data class NetworkConnectionStats(
+    val calls: Long,
+    val newConnections: Long,
+    val avgHandshakeMs: Long,
+    val maxHandshakeMs: Long
+) {
+    /**
+     * Share of calls that ran on an already open connection
+     */
+    val reuseRate: Double
+        get() = if (calls > 0) (calls - newConnections).coerceAtLeast(0).toDouble() / calls else 0.0
+
+    override fun toString(): String {
+        return "$calls calls, ${"%.0f".format(reuseRate * 100)}% on reused connections, " +
+            "$newConnections handshakes (avg ${avgHandshakeMs} ms, max ${maxHandshakeMs} ms)"
+    }
+}
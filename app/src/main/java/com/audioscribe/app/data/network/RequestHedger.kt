@@ -0,0 +1,114 @@
+package com.audioscribe.app.data.network
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Hedge counters since the process started
+ */
+data class HedgeStats(
+    val hedgesSent: Long,
+    val hedgeWins: Long,
+    val hedgeLosses: Long,
+    val deniedByBudget: Long
+) {
+    override fun toString(): String {
+        return "$hedgesSent hedges ($hedgeWins won, $hedgeLosses lost, $deniedByBudget over budget)"
+    }
+}
+
+/**
+ * Decides when a transcription request is slow enough to send a second, identical copy.
+ *
+ * Latencies are kept per payload size class, since upload time grows with the chunk. A request
+ * is hedged once it has run longer than the p95 of the last [WINDOW] requests of its class;
+ * with fewer than [MIN_SAMPLES] there is no estimate and nothing is hedged.
+ *
+ * Every hedge is billed a second time, so hedges draw on a budget: each request earns
+ * [BUDGET_PER_REQUEST] of a hedge, up to [BUDGET_CAP] saved, which keeps the extra spend to
+ * about a tenth of requests even when the API is slow across the board.
+ */
+object RequestHedger {
+
+    private const val WINDOW = 50
+    private const val MIN_SAMPLES = 10
+    private const val MIN_HEDGE_DELAY_MS = 1_000L
+    private const val BUDGET_PER_REQUEST = 0.1
+    private const val BUDGET_CAP = 3.0
+    private const val BUDGET_INITIAL = 1.0
+
+    // Upper bounds of the payload size classes; the last class is open-ended
+    private val SIZE_CLASS_BYTES = longArrayOf(256 * 1024L, 1024 * 1024L, 4 * 1024 * 1024L, 16 * 1024 * 1024L)
+
+    /**
+     * Whether slow requests are hedged. Set from Settings; off by default
+     */
+    @Volatile
+    var enabled = false
+
+    private val latencies = Array(SIZE_CLASS_BYTES.size + 1) { ArrayDeque<Long>(WINDOW) }
+    private var budget = BUDGET_INITIAL
+
+    private val hedgesSent = AtomicLong(0)
+    private val hedgeWins = AtomicLong(0)
+    private val hedgeLosses = AtomicLong(0)
+    private val deniedByBudget = AtomicLong(0)
+
+    private fun sizeClass(bytes: Long): Int {
+        val index = SIZE_CLASS_BYTES.indexOfFirst { bytes <= it }
+        return if (index >= 0) index else SIZE_CLASS_BYTES.size
+    }
+
+    /**
+     * A request of [bytes] took [latencyMs] from send to response
+     */
+    @Synchronized
+    fun recordLatency(bytes: Long, latencyMs: Long) {
+        val window = latencies[sizeClass(bytes)]
+        if (window.size == WINDOW) window.removeFirst()
+        window.addLast(latencyMs)
+    }
+
+    /**
+     * How long to wait for a request of [bytes] before hedging it, or null if it should not be
+     * hedged. Each call also earns budget, so call it once per request.
+     */
+    @Synchronized
+    fun hedgeDelayMs(bytes: Long): Long? {
+        if (!enabled) return null
+        budget = (budget + BUDGET_PER_REQUEST).coerceAtMost(BUDGET_CAP)
+        val window = latencies[sizeClass(bytes)]
+        if (window.size < MIN_SAMPLES) return null
+        val sorted = window.sorted()
+        val p95 = sorted[((sorted.size - 1) * 95) / 100]
+        return p95.coerceAtLeast(MIN_HEDGE_DELAY_MS)
+    }
+
+    /**
+     * Take one hedge from the budget
+     * @return false if the budget is spent and the request should not be hedged
+     */
+    @Synchronized
+    fun tryStartHedge(): Boolean {
+        if (budget < 1.0) {
+            deniedByBudget.incrementAndGet()
+            return false
+        }
+        budget -= 1.0
+        hedgesSent.incrementAndGet()
+        return true
+    }
+
+    /**
+     * A hedged request finished; [hedgeWon] if the copy answered first
+     */
+    fun onHedgeSettled(hedgeWon: Boolean) {
+        if (hedgeWon) hedgeWins.incrementAndGet() else hedgeLosses.incrementAndGet()
+    }
+
+    fun stats(): HedgeStats = HedgeStats(
+        hedgesSent = hedgesSent.get(),
+        hedgeWins = hedgeWins.get(),
+        hedgeLosses = hedgeLosses.get(),
+        deniedByBudget = deniedByBudget.get()
+    )
+}
@@ -0,0 +1,146 @@
+package com.audioscribe.app.data.network
+
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import java.io.IOException
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Request body whose bytes are still being produced while it is sent, using chunked transfer.
+ *
+ * The producer calls [write] as audio is recorded and [close] when the chunk ends. OkHttp's
+ * call thread sends whatever has arrived and waits for more. [write] never blocks: if the
+ * connection falls more than [maxBufferedBytes] behind, it returns false and the body is
+ * aborted, so a slow network cannot stall the recording. Queued bytes wait in a ring of
+ * [maxBufferedBytes] allocated with the body, so writes copy into it without allocating.
+ * [abort] fails the request on purpose, e.g. for a chunk that turned out to be silent.
+ * With [bytesPerSecond] set, [audioDurationMs] tells how much audio has been written.
+ */
+class StreamingAudioRequestBody(
+    private val mediaType: MediaType?,
+    maxBufferedBytes: Long,
+    private val bytesPerSecond: Int = 0
+) : RequestBody() {
+
+    companion object {
+        private const val SEND_BLOCK_BYTES = 64 * 1024
+    }
+
+    private val lock = ReentrantLock()
+    private val dataAvailable = lock.newCondition()
+
+    // Queued bytes: pendingBytes of them starting at readPos, wrapping at the end of the ring
+    private val ring = ByteArray(maxBufferedBytes.toInt())
+    private var readPos = 0
+    private var pendingBytes = 0
+    private var closed = false
+    private var aborted = false
+    private var writtenBytes = 0L
+
+    /**
+     * Length of the audio accepted by [write] so far, or 0 if the byte rate is unknown
+     */
+    val audioDurationMs: Long
+        get() = lock.withLock { if (bytesPerSecond > 0) writtenBytes * 1000 / bytesPerSecond else 0L }
+
+    override fun contentType(): MediaType? = mediaType
+
+    // Unknown up front: sent with chunked transfer encoding
+    override fun contentLength(): Long = -1L
+
+    // The bytes are consumed as they are sent, so the body cannot be replayed
+    override fun isOneShot(): Boolean = true
+
+    /**
+     * Append [length] bytes of [bytes] from [offset]
+     * @return false if the body was aborted, now or earlier; the bytes were not queued
+     */
+    fun write(bytes: ByteArray, offset: Int, length: Int): Boolean = lock.withLock {
+        if (!reserve(length)) return false
+        val start = (readPos + pendingBytes) % ring.size
+        val first = minOf(length, ring.size - start)
+        System.arraycopy(bytes, offset, ring, start, first)
+        System.arraycopy(bytes, offset + first, ring, 0, length - first)
+        queued(length)
+    }
+
+    /**
+     * Append [count] 16-bit samples of [samples] from [offset], little-endian
+     * @return false if the body was aborted, now or earlier; the samples were not queued
+     */
+    fun writeSamples(samples: ShortArray, offset: Int, count: Int): Boolean = lock.withLock {
+        val length = count * 2
+        if (!reserve(length)) return false
+        var pos = (readPos + pendingBytes) % ring.size
+        for (i in offset until offset + count) {
+            val s = samples[i].toInt()
+            ring[pos] = s.toByte()
+            ring[(pos + 1) % ring.size] = (s shr 8).toByte()
+            pos = (pos + 2) % ring.size
+        }
+        queued(length)
+    }
+
+    /**
+     * Whether [length] more bytes fit; aborts the body if the connection fell too far behind.
+     * Called with the lock held.
+     */
+    private fun reserve(length: Int): Boolean {
+        if (aborted || closed) return false
+        if (pendingBytes.toLong() + length > ring.size) {
+            aborted = true
+            dataAvailable.signalAll()
+            return false
+        }
+        return true
+    }
+
+    private fun queued(length: Int): Boolean {
+        pendingBytes += length
+        writtenBytes += length
+        dataAvailable.signalAll()
+        return true
+    }
+
+    /**
+     * No more bytes follow; the request completes once everything queued is sent
+     */
+    fun close() = lock.withLock {
+        closed = true
+        dataAvailable.signalAll()
+    }
+
+    /**
+     * Fail the request instead of completing it
+     */
+    fun abort() = lock.withLock {
+        aborted = true
+        pendingBytes = 0
+        dataAvailable.signalAll()
+    }
+
+    override fun writeTo(sink: BufferedSink) {
+        val block = ByteArray(minOf(SEND_BLOCK_BYTES, ring.size))
+        while (true) {
+            val n = lock.withLock {
+                while (pendingBytes == 0 && !closed && !aborted) {
+                    dataAvailable.await()
+                }
+                if (aborted) throw IOException("Streaming upload aborted")
+                if (pendingBytes == 0) return
+                val n = minOf(pendingBytes, block.size)
+                val first = minOf(n, ring.size - readPos)
+                System.arraycopy(ring, readPos, block, 0, first)
+                System.arraycopy(ring, 0, block, first, n - first)
+                readPos = (readPos + n) % ring.size
+                pendingBytes -= n
+                n
+            }
+            // Sent outside the lock so the producer never waits for the network
+            sink.write(block, 0, n)
+            sink.flush()
+        }
+    }
+}
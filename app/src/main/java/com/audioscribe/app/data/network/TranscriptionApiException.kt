@@ -0,0 +1,18 @@
+package com.audioscribe.app.data.network
+
+/**
+ * Non-successful response from the transcription API
+ *
+ * @param code HTTP status code
+ * @param retryAfterMs Wait requested by the server through Retry-After, if any
+ * @param quotaExhausted A 429 caused by the account running out of credit, which waiting does not fix
+ */
+class TranscriptionApiException(
+    val code: Int,
+    message: String,
+    val retryAfterMs: Long? = null,
+    val quotaExhausted: Boolean = false
+) : Exception(message) {
+
+    val isRateLimited: Boolean get() = code == 429 && !quotaExhausted
+}
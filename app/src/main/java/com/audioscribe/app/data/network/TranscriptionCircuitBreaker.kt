@@ -0,0 +1,146 @@
+package com.audioscribe.app.data.network
+
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.flow.updateAndGet
+
+/**
+ * Process-wide circuit breaker in front of the transcription API.
+ *
+ * [FAILURE_THRESHOLD] failures in a row, or one authentication failure, open the breaker. A
+ * failure here means a timeout, a network error, a 5xx, or a 401/403. While the breaker is
+ * open, requests fail at once with [CircuitOpenException] and nothing is uploaded. Once the
+ * open period ends, the next caller moves the breaker to half-open and sends one small probe
+ * request. Success closes it, and the parked backlog is released. Failure reopens it for twice
+ * as long, up to [MAX_OPEN_MS]. Responses that prove the API is reachable, including other 4xx,
+ * reset the count. Rate limits are left to the limiters.
+ */
+object TranscriptionCircuitBreaker {
+
+    private const val TAG = "CircuitBreaker"
+    private const val FAILURE_THRESHOLD = 3
+    private const val INITIAL_OPEN_MS = 30_000L
+    private const val MAX_OPEN_MS = 10 * 60 * 1000L
+
+    enum class State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * @param retryAtMs Wall-clock time the next probe is allowed, while open
+     * @param lastError Failure that opened the breaker
+     */
+    data class Status(
+        val state: State = State.CLOSED,
+        val consecutiveFailures: Int = 0,
+        val openMs: Long = 0L,
+        val retryAtMs: Long = 0L,
+        val lastError: String? = null
+    )
+
+    private val _status = MutableStateFlow(Status())
+
+    /**
+     * Current state, for the notification and Settings
+     */
+    val status: StateFlow<Status> = _status.asStateFlow()
+
+    /**
+     * Milliseconds until a probe may be sent; 0 when closed or due
+     */
+    fun remainingOpenMs(): Long {
+        val current = _status.value
+        if (current.state == State.CLOSED) return 0L
+        return (current.retryAtMs - System.currentTimeMillis()).coerceAtLeast(0L)
+    }
+
+    /**
+     * Whether a request may go out now. A caller that finds the open period over runs
+     * [probe] as the single half-open request.
+     */
+    suspend fun allowRequest(probe: suspend () -> Boolean): Boolean {
+        val current = _status.value
+        when (current.state) {
+            State.CLOSED -> return true
+            State.HALF_OPEN -> return false
+            State.OPEN -> {
+                if (System.currentTimeMillis() < current.retryAtMs) return false
+                // Only the caller that wins the transition probes; the rest keep failing fast
+                if (!_status.compareAndSet(current, current.copy(state = State.HALF_OPEN))) return false
+            }
+        }
+        Log.i(TAG, "Probing the transcription API")
+        val healthy = try {
+            probe()
+        } catch (e: CancellationException) {
+            // The probe never finished; leave the breaker open and due so the next caller probes
+            _status.update { if (it.state == State.HALF_OPEN) current else it }
+            throw e
+        } catch (e: Exception) {
+            Log.w(TAG, "Probe failed: ${e.message}")
+            false
+        }
+        if (healthy) {
+            Log.i(TAG, "Probe succeeded, closing")
+            _status.value = Status()
+        } else {
+            val openMs = (current.openMs * 2).coerceAtMost(MAX_OPEN_MS)
+            Log.w(TAG, "Probe failed, opening for $openMs ms")
+            _status.value = opened(current.lastError, openMs)
+        }
+        return healthy
+    }
+
+    /**
+     * The API answered; anything but a 429 counts as reachable
+     */
+    fun onSuccess() {
+        if (_status.value.consecutiveFailures != 0) _status.update { it.copy(consecutiveFailures = 0) }
+    }
+
+    /**
+     * A request failed in a way that suggests the API or the key is unusable
+     * @param authentication The key was rejected, which no amount of retrying fixes
+     */
+    fun onFailure(error: String?, authentication: Boolean = false) {
+        val next = _status.updateAndGet { current ->
+            if (current.state != State.CLOSED) return
+            val failures = current.consecutiveFailures + 1
+            if (authentication || failures >= FAILURE_THRESHOLD) {
+                opened(error, INITIAL_OPEN_MS)
+            } else {
+                current.copy(consecutiveFailures = failures, lastError = error)
+            }
+        }
+        if (next.state == State.OPEN) {
+            Log.w(TAG, "Opening for ${next.openMs} ms after: $error")
+        }
+    }
+
+    /**
+     * Allow a probe right away, e.g. after the API key was changed
+     */
+    fun retryNow() {
+        _status.update { if (it.state == State.OPEN) it.copy(retryAtMs = 0L) else it }
+    }
+
+    private fun opened(error: String?, openMs: Long) = Status(
+        state = State.OPEN,
+        consecutiveFailures = FAILURE_THRESHOLD,
+        openMs = openMs,
+        retryAtMs = System.currentTimeMillis() + openMs,
+        lastError = error
+    )
+}
+
+/**
+ * Request refused locally because the [TranscriptionCircuitBreaker] is open
+ */
+class CircuitOpenException(val retryInMs: Long) :
+    Exception("Transcription API unavailable; retrying in ${retryInMs / 1000} s")
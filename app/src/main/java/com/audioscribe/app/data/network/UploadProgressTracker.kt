@@ -0,0 +1,89 @@
+package com.audioscribe.app.data.network
+
+import android.os.SystemClock
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.update
+
+/**
+ * How much of one chunk's upload has been written to the connection
+ */
+data class UploadProgress(val name: String, val bytesSent: Long, val totalBytes: Long) {
+    val fraction: Float
+        get() = if (totalBytes > 0) (bytesSent.toFloat() / totalBytes).coerceIn(0f, 1f) else 0f
+}
+
+/**
+ * Progress of the uploads in flight, fed by the request bodies as they write each slice, and
+ * the upload throughput measured over the most recent uploads.
+ *
+ * Throughput is bytes written over the time taken to write them, so the connection's flow
+ * control and socket backpressure are part of it. Small bodies mostly land in socket buffers
+ * and would overstate it; they are not sampled.
+ */
+object UploadProgressTracker {
+
+    /**
+     * Bytes written per slice; progress is reported after each one
+     */
+    const val SLICE_BYTES = 64 * 1024
+
+    private const val MIN_SAMPLE_BYTES = 128 * 1024L
+    private const val MAX_SAMPLES = 8
+    private const val SAMPLE_MAX_AGE_MS = 10 * 60 * 1000L // Older measurements may be from another network
+
+    private val _uploads = MutableStateFlow<Map<String, UploadProgress>>(emptyMap())
+
+    /**
+     * Uploads currently being written, by upload name
+     */
+    val uploads: StateFlow<Map<String, UploadProgress>> = _uploads.asStateFlow()
+
+    private class Sample(val bytes: Long, val nanos: Long, val atMs: Long)
+
+    private val samples = ArrayDeque<Sample>(MAX_SAMPLES)
+
+    /**
+     * Progress of the upload called [name], or null while it is not being written
+     */
+    fun progressOf(name: String): Flow<UploadProgress?> =
+        uploads.map { it[name] }.distinctUntilChanged()
+
+    fun update(progress: UploadProgress) {
+        _uploads.update { it + (progress.name to progress) }
+    }
+
+    /**
+     * The upload called [name] finished or failed
+     */
+    fun remove(name: String) {
+        _uploads.update { it - name }
+    }
+
+    /**
+     * A body of [bytes] took [nanos] to write
+     */
+    @Synchronized
+    fun recordTransfer(bytes: Long, nanos: Long) {
+        if (bytes < MIN_SAMPLE_BYTES || nanos <= 0L) return
+        if (samples.size == MAX_SAMPLES) samples.removeFirst()
+        samples.addLast(Sample(bytes, nanos, SystemClock.elapsedRealtime()))
+    }
+
+    /**
+     * Upload throughput over the recent uploads, or null if there are none
+     */
+    @Synchronized
+    fun throughputKbps(): Int? {
+        val cutoff = SystemClock.elapsedRealtime() - SAMPLE_MAX_AGE_MS
+        while (samples.isNotEmpty() && samples.first().atMs < cutoff) samples.removeFirst()
+        if (samples.isEmpty()) return null
+        val bytes = samples.sumOf { it.bytes }
+        val nanos = samples.sumOf { it.nanos }
+        return (bytes * 8 * 1_000_000 / nanos).toInt() // kilobits over seconds
+    }
+}
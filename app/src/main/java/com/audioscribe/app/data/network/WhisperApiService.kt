@@ -3,6 +3,7 @@ package com.audioscribe.app.data.network
 import com.audioscribe.app.data.model.TranscriptionResponse
 import okhttp3.MultipartBody
 import okhttp3.RequestBody
+import okhttp3.ResponseBody
 import okhttp3.MediaType.Companion.toMediaType
 import retrofit2.Response
 import retrofit2.http.*
@@ -23,11 +24,21 @@ interface WhisperApiService {
         @Part("temperature") temperature: RequestBody? = null
     ): Response<TranscriptionResponse>
     
+    /**
+     * Look up a model; a cheap authenticated request to check that the API and key work
+     */
+    @GET("models/{model}")
+    suspend fun getModel(
+        @Header("Authorization") authorization: String,
+        @Path("model") model: String
+    ): Response<ResponseBody>
+    
     companion object {
         const val BASE_URL = "https://api.openai.com/v1/"
         const val DEFAULT_MODEL = "whisper-1"
         const val DEFAULT_RESPONSE_FORMAT = "json"
         const val DEFAULT_LANGUAGE = "en"
+        const val MAX_UPLOAD_BYTES = 25 * 1024 * 1024 // Whisper API file size limit (25MB)
         
         /**
          * Create authorization header value
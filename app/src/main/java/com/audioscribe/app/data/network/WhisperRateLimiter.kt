@@ -0,0 +1,156 @@
+package com.audioscribe.app.data.network
+
+import android.os.SystemClock
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.delay
+import java.security.MessageDigest
+
+/**
+ * Client-side rate limits of one API key for the transcription endpoint
+ */
+data class WhisperRateLimits(
+    val requestsPerMinute: Int,
+    val audioSecondsPerMinute: Int
+) {
+    companion object {
+        val DEFAULT = WhisperRateLimits(requestsPerMinute = 50, audioSecondsPerMinute = 1800)
+    }
+}
+
+/**
+ * Process-wide token buckets in front of [WhisperApiService.transcribeAudio], one pair per API key:
+ * requests per minute and seconds of audio per minute.
+ *
+ * A caller that would exceed either budget is delayed until the tokens are there, instead of
+ * sending a request the server would reject with a 429. Tokens are reserved up front, and the
+ * balance may go negative, so waiting callers are served in arrival order. Each bucket holds at
+ * most [BURST_SECONDS] worth of tokens, so an idle key cannot fire a whole minute's budget at once.
+ * A request that cannot wait, or whose audio length is only known afterwards, is [charge]d
+ * once sent.
+ *
+ * The time spent waiting is returned and averaged separately from request latency.
+ */
+object WhisperRateLimiter {
+
+    private const val TAG = "WhisperRateLimiter"
+    private const val BURST_SECONDS = 10.0
+    private const val WAIT_SMOOTHING = 0.2
+
+    /**
+     * Token bucket that lends: [reserve] always succeeds and says how long to wait
+     */
+    private class TokenBucket(perMinute: Int) {
+        private val refillPerMs = perMinute / 60_000.0
+        private val capacity = maxOf(1.0, perMinute * BURST_SECONDS / 60.0)
+        private var tokens = capacity
+        private var updatedAtMs = SystemClock.elapsedRealtime()
+
+        /**
+         * Take [amount] tokens, possibly borrowing
+         * @return Milliseconds until the balance is back to zero
+         */
+        @Synchronized
+        fun reserve(amount: Double): Long {
+            if (refillPerMs <= 0.0) return 0L // No limit configured
+            refill()
+            tokens -= amount
+            return if (tokens >= 0) 0L else Math.ceil(-tokens / refillPerMs).toLong()
+        }
+
+        /**
+         * Give back tokens from a reservation that was not used
+         */
+        @Synchronized
+        fun refund(amount: Double) {
+            refill()
+            tokens = minOf(capacity, tokens + amount)
+        }
+
+        private fun refill() {
+            val now = SystemClock.elapsedRealtime()
+            tokens = minOf(capacity, tokens + (now - updatedAtMs) * refillPerMs)
+            updatedAtMs = now
+        }
+    }
+
+    private class KeyBuckets(val limits: WhisperRateLimits) {
+        val requests = TokenBucket(limits.requestsPerMinute)
+        val audioSeconds = TokenBucket(limits.audioSecondsPerMinute)
+    }
+
+    private val buckets = HashMap<String, KeyBuckets>()
+
+    /**
+     * Looks up the configured limits of a key the first time it is used; [WhisperRateLimits.DEFAULT] if unset
+     */
+    @Volatile
+    var limitsProvider: ((apiKey: String) -> WhisperRateLimits)? = null
+
+    /**
+     * Average time a request has waited for tokens, in milliseconds
+     */
+    @Volatile
+    var averageWaitMs = 0.0
+        private set
+
+    /**
+     * Apply [limits] to [apiKey] from now on, e.g. after they were changed in Settings
+     */
+    fun configure(apiKey: String, limits: WhisperRateLimits) {
+        synchronized(buckets) {
+            if (buckets[fingerprint(apiKey)]?.limits != limits) {
+                buckets[fingerprint(apiKey)] = KeyBuckets(limits)
+            }
+        }
+    }
+
+    /**
+     * Suspend until [apiKey] may send one request carrying [audioMs] of audio
+     * @param audioMs Audio length, or 0 if it is only known afterwards
+     * @return Milliseconds spent waiting
+     */
+    suspend fun acquire(apiKey: String, audioMs: Long): Long {
+        val key = bucketsFor(apiKey)
+        val audioSeconds = audioMs / 1000.0
+        val waitMs = maxOf(key.requests.reserve(1.0), key.audioSeconds.reserve(audioSeconds))
+        if (waitMs > 0) {
+            Log.d(TAG, "Waiting ${waitMs} ms for rate limit tokens")
+            try {
+                delay(waitMs)
+            } catch (e: CancellationException) {
+                key.requests.refund(1.0)
+                key.audioSeconds.refund(audioSeconds)
+                throw e
+            }
+        }
+        averageWaitMs += (waitMs - averageWaitMs) * WAIT_SMOOTHING
+        return waitMs
+    }
+
+    /**
+     * Count a request of [apiKey] carrying [audioMs] of audio that was sent without waiting,
+     * e.g. a live stream; later requests wait for it instead
+     */
+    fun charge(apiKey: String, audioMs: Long) {
+        val key = bucketsFor(apiKey)
+        key.requests.reserve(1.0)
+        if (audioMs > 0) key.audioSeconds.reserve(audioMs / 1000.0)
+    }
+
+    /**
+     * Key under which limits are kept, so the API key itself is not held as a map key or pref name
+     */
+    fun fingerprint(apiKey: String): String {
+        val digest = MessageDigest.getInstance("SHA-256").digest(apiKey.toByteArray())
+        return digest.take(8).joinToString("") { "%02x".format(it) }
+    }
+
+    private fun bucketsFor(apiKey: String): KeyBuckets {
+        val id = fingerprint(apiKey)
+        synchronized(buckets) { buckets[id]?.let { return it } }
+        // Read outside the lock; the provider may hit encrypted preferences
+        val limits = limitsProvider?.invoke(apiKey) ?: WhisperRateLimits.DEFAULT
+        return synchronized(buckets) { buckets.getOrPut(id) { KeyBuckets(limits) } }
+    }
+}
@@ -1,13 +1,17 @@
 package com.audioscribe.app.data.repository
 
 import android.content.Context
+import android.os.Build
 import android.util.Log
+import com.audioscribe.app.audio.CaptureMetricsSnapshot
 import com.audioscribe.app.data.database.AudioscribeDatabase
 import com.audioscribe.app.data.database.entity.TranscriptionSession
 import com.audioscribe.app.data.database.entity.TranscriptChunk
 import com.audioscribe.app.data.database.entity.SessionStatus
 import com.audioscribe.app.data.database.entity.ChunkStatus
+import com.audioscribe.app.data.database.entity.CaptureMetricsRecord
 import com.audioscribe.app.data.database.dao.SessionStatistics
+import com.audioscribe.app.utils.TranscriptOverlapMerger
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.first
 import java.util.Date
@@ -20,6 +24,7 @@ class SessionRepository(context: Context) {
     private val database = AudioscribeDatabase.getInstance(context)
     private val sessionDao = database.sessionDao()
     private val chunkDao = database.chunkDao()
+    private val captureMetricsDao = database.captureMetricsDao()
     
     companion object {
         private const val TAG = "SessionRepository"
@@ -65,14 +70,18 @@ class SessionRepository(context: Context) {
     }
     
     /**
-     * Add a chunk to a session (compatible with TranscriptChunk entity)
+     * Add a chunk to a session (compatible with TranscriptChunk entity). Idempotent: storing the
+     * same chunk index again, e.g. after a retried transcription, updates the earlier row.
      */
     suspend fun addChunkToSession(chunk: TranscriptChunk) {
-        val chunkId = chunkDao.insertChunk(chunk)
+        val chunkId = chunkDao.upsertChunk(chunk)
         
         // Update session chunk count
         updateSessionChunkCounts(chunk.sessionId)
         
+        // Trim boundary duplicates against whichever neighbours have already arrived
+        mergeOverlaps(chunk.copy(id = chunkId))
+        
         Log.d(TAG, "Added chunk to session ${chunk.sessionId}")
     }
     
@@ -105,6 +114,64 @@ class SessionRepository(context: Context) {
         Log.d(TAG, "Marked session $sessionId as failed")
     }
     
+    /**
+     * Record a chunk that voice activity detection skipped as silence
+     */
+    suspend fun recordSkippedChunk(sessionId: Long, durationMs: Long) {
+        sessionDao.addSkippedSilence(sessionId, durationMs)
+        Log.d(TAG, "Skipped ${durationMs}ms of silence in session $sessionId")
+    }
+    
+    /**
+     * Record how long a session took to deliver its first captured audio
+     */
+    suspend fun recordTimeToFirstSample(sessionId: Long, latencyMs: Long) {
+        sessionDao.updateTimeToFirstSample(sessionId, latencyMs)
+        Log.d(TAG, "Session $sessionId time to first sample: ${latencyMs}ms")
+    }
+    
+    /**
+     * Store the latest capture health counters of a session, replacing any earlier ones
+     */
+    suspend fun saveCaptureMetrics(sessionId: Long, snapshot: CaptureMetricsSnapshot) {
+        captureMetricsDao.upsertMetrics(
+            CaptureMetricsRecord(
+                sessionId = sessionId,
+                device = "${Build.MANUFACTURER} ${Build.MODEL}",
+                sdkInt = Build.VERSION.SDK_INT,
+                durationMs = snapshot.durationMs,
+                framesRead = snapshot.framesRead,
+                expectedFrames = snapshot.expectedFrames,
+                droppedFrames = snapshot.droppedFrames,
+                gapCount = snapshot.gapCount,
+                gapMs = snapshot.gapMs,
+                readErrorCount = snapshot.readErrorCount,
+                readLatencyP50Us = snapshot.readLatencyP50Us,
+                readLatencyP95Us = snapshot.readLatencyP95Us,
+                readLatencyP99Us = snapshot.readLatencyP99Us,
+                readLatencyMaxUs = snapshot.readLatencyMaxUs,
+                rotationCount = snapshot.rotationCount,
+                rotationAvgMs = snapshot.rotationAvgMs,
+                rotationMaxMs = snapshot.rotationMaxMs,
+                bytesWritten = snapshot.bytesWritten
+            )
+        )
+    }
+    
+    /**
+     * Get the capture health metrics of a session (null until capture has reported)
+     */
+    fun getCaptureMetrics(sessionId: Long): Flow<CaptureMetricsRecord?> {
+        return captureMetricsDao.getMetricsForSession(sessionId)
+    }
+    
+    /**
+     * Get the capture metrics of every session that lost audio, worst first
+     */
+    suspend fun getSessionsWithAudioLoss(): List<CaptureMetricsRecord> {
+        return captureMetricsDao.getSessionsWithAudioLoss()
+    }
+    
     /**
      * Get a session by ID
      */
@@ -244,6 +311,34 @@ class SessionRepository(context: Context) {
     
     // Helper methods
     
+    /**
+     * Incrementally de-duplicate overlapping text around a newly completed chunk.
+     * Only the chunk itself and its successor are touched, so reads never have to re-merge
+     * the whole session. Chunks can complete out of order, hence both directions.
+     * A successor that was already merged is trimmed again, since it can only have been
+     * merged against an earlier transcript of this chunk.
+     */
+    private suspend fun mergeOverlaps(chunk: TranscriptChunk) {
+        try {
+            if (chunk.status != ChunkStatus.COMPLETED) return
+            if (chunk.overlapMs > 0 && chunk.chunkIndex > 0) {
+                val previous = chunkDao.getChunkByIndex(chunk.sessionId, chunk.chunkIndex - 1)
+                if (previous != null && previous.status == ChunkStatus.COMPLETED) {
+                    val trimmed = TranscriptOverlapMerger.trimOverlap(previous.text, chunk.text, chunk.overlapMs)
+                    chunkDao.updateDedupedText(chunk.id, trimmed)
+                }
+            }
+            val next = chunkDao.getChunkByIndex(chunk.sessionId, chunk.chunkIndex + 1)
+            if (next != null && next.status == ChunkStatus.COMPLETED && next.overlapMs > 0) {
+                val trimmed = TranscriptOverlapMerger.trimOverlap(chunk.text, next.text, next.overlapMs)
+                chunkDao.updateDedupedText(next.id, trimmed)
+            }
+        } catch (e: Exception) {
+            // The untrimmed text is still stored; a failed merge only leaves a duplicate seam
+            Log.e(TAG, "Failed to merge overlap for chunk ${chunk.chunkIndex} of session ${chunk.sessionId}", e)
+        }
+    }
+    
     /**
      * Update chunk counts for a session
      */
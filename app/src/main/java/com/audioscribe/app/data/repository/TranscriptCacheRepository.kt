@@ -0,0 +1,81 @@
+package com.audioscribe.app.data.repository
+
+import android.content.Context
+import android.util.Log
+import com.audioscribe.app.data.database.AudioscribeDatabase
+import com.audioscribe.app.data.database.entity.TranscriptCacheEntry
+import com.audioscribe.app.data.network.WhisperApiService
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Repository for transcripts cached by audio hash. Every transcription path checks it before
+ * uploading and fills it after a successful call.
+ */
+class TranscriptCacheRepository(context: Context) {
+
+    private val cacheDao = AudioscribeDatabase.getInstance(context).transcriptCacheDao()
+
+    companion object {
+        private const val TAG = "TranscriptCacheRepo"
+
+        private val hits = AtomicLong(0)
+        private val misses = AtomicLong(0)
+
+        /**
+         * Lookups answered from the cache in this process
+         */
+        val hitCount: Long get() = hits.get()
+
+        /**
+         * Lookups that had to go to the API in this process
+         */
+        val missCount: Long get() = misses.get()
+    }
+
+    /**
+     * Transcript of the audio with [audioHash], if it was transcribed with the current model
+     * and the same [language] hint
+     */
+    suspend fun lookup(audioHash: String, language: String?): String? {
+        val entry = try {
+            cacheDao.getEntry(audioHash)
+        } catch (e: Exception) {
+            Log.e(TAG, "Transcript cache lookup failed", e)
+            null
+        }
+        val usable = entry?.takeIf { it.model == WhisperApiService.DEFAULT_MODEL && it.language == language }
+        if (usable != null) {
+            hits.incrementAndGet()
+            Log.i(TAG, "Cache hit for audio ${audioHash.take(12)}")
+        } else {
+            misses.incrementAndGet()
+        }
+        return usable?.text
+    }
+
+    /**
+     * Remember [text] as the transcript of the audio with [audioHash]
+     */
+    suspend fun store(audioHash: String, language: String?, text: String) {
+        try {
+            cacheDao.upsertEntry(
+                TranscriptCacheEntry(
+                    audioHash = audioHash,
+                    text = text,
+                    model = WhisperApiService.DEFAULT_MODEL,
+                    language = language
+                )
+            )
+        } catch (e: Exception) {
+            // A missing entry only costs a repeat upload
+            Log.e(TAG, "Failed to cache transcript", e)
+        }
+    }
+
+    /**
+     * Delete entries older than [maxAgeMs]
+     * @return Number of entries deleted
+     */
+    suspend fun prune(maxAgeMs: Long): Int =
+        cacheDao.deleteEntriesBefore(System.currentTimeMillis() - maxAgeMs)
+}
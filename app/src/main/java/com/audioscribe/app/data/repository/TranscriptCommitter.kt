@@ -0,0 +1,152 @@
+package com.audioscribe.app.data.repository
+
+import android.content.Context
+import android.util.Log
+import com.audioscribe.app.data.database.entity.TranscriptChunk
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.util.TreeMap
+import java.util.TreeSet
+
+/**
+ * Reorder buffer in front of transcript_chunks: transcripts of a session are inserted in
+ * chunkIndex order, whatever order their uploads finish in.
+ *
+ * Every chunk is [expect]ed when it is handed to a transcription path. A finished transcript
+ * is held while an earlier chunk of its session is still outstanding. Each [commit] or [skip]
+ * (a chunk that will produce no transcript) releases, in order, everything below the lowest
+ * outstanding chunk. A transcript held longer than [MAX_HOLD_MS] is released anyway, so a chunk
+ * stuck in retries cannot freeze the live transcript.
+ * Expectations live in memory; after a restart the queue worker re-registers what is queued.
+ * A transcript whose insert fails is not dropped: the caller's own chunk is expected again and
+ * [commit] throws, so the caller can keep its work item; others stay held for the next release.
+ * Held transcripts exist only in memory, so callers must keep their work item (audio and queue
+ * entry) until the transcript is actually inserted; [commit]'s onStored callback says when.
+ */
+class TranscriptCommitter private constructor(context: Context) {
+
+    companion object {
+        private const val TAG = "TranscriptCommitter"
+        private const val MAX_HOLD_MS = 10 * 60 * 1000L
+
+        @Volatile
+        private var INSTANCE: TranscriptCommitter? = null
+
+        fun getInstance(context: Context): TranscriptCommitter {
+            return INSTANCE ?: synchronized(this) {
+                INSTANCE ?: TranscriptCommitter(context.applicationContext).also { INSTANCE = it }
+            }
+        }
+    }
+
+    private class Held(val chunk: TranscriptChunk, val heldAtMs: Long, val onStored: (suspend () -> Unit)?)
+
+    private val sessionRepository = SessionRepository(context)
+
+    // State guarded by lock; insertMutex keeps released transcripts in order across callers
+    private val lock = Any()
+    private val insertMutex = Mutex()
+    private val outstanding = HashMap<Long, TreeSet<Int>>()
+    private val held = HashMap<Long, TreeMap<Int, Held>>()
+
+    /**
+     * Number of transcripts held back for an earlier chunk
+     */
+    val heldCount: Int
+        get() = synchronized(lock) { held.values.sumOf { it.size } }
+
+    /**
+     * How long the oldest held transcript has been waiting, in milliseconds; 0 if none
+     */
+    val commitLagMs: Long
+        get() = synchronized(lock) {
+            val oldest = held.values.flatMap { it.values }.minOfOrNull { it.heldAtMs } ?: return 0L
+            System.currentTimeMillis() - oldest
+        }
+
+    /**
+     * Chunk [chunkOrder] of [sessionId] will be committed or skipped later
+     */
+    fun expect(sessionId: Long?, chunkOrder: Int?) {
+        if (sessionId == null || chunkOrder == null) return
+        synchronized(lock) {
+            outstanding.getOrPut(sessionId) { TreeSet() }.add(chunkOrder)
+        }
+    }
+
+    /**
+     * Store [chunk] once every earlier chunk of its session has been settled. [onStored] runs
+     * right after the insert, which may be during a later [commit] or [skip] by another caller.
+     * @return true if [chunk] was stored now, false if it is held for an earlier chunk
+     * @throws Exception if [chunk] was released but could not be stored; it is outstanding again
+     */
+    suspend fun commit(chunk: TranscriptChunk, onStored: (suspend () -> Unit)? = null): Boolean {
+        return settle(chunk.sessionId, chunk.chunkIndex, Held(chunk, System.currentTimeMillis(), onStored))
+    }
+
+    /**
+     * Chunk [chunkOrder] of [sessionId] will not produce a transcript
+     */
+    suspend fun skip(sessionId: Long?, chunkOrder: Int?) {
+        if (sessionId == null || chunkOrder == null) return
+        settle(sessionId, chunkOrder, null)
+    }
+
+    /**
+     * @return true if [entry] was stored
+     */
+    private suspend fun settle(sessionId: Long, chunkOrder: Int, entry: Held?): Boolean {
+        return insertMutex.withLock {
+            val ready = synchronized(lock) {
+                val pending = outstanding[sessionId]
+                pending?.remove(chunkOrder)
+                if (pending?.isEmpty() == true) outstanding.remove(sessionId)
+                val waiting = held.getOrPut(sessionId) { TreeMap() }
+                if (entry != null) waiting[chunkOrder] = entry
+
+                val lowestOutstanding = outstanding[sessionId]?.first() ?: Int.MAX_VALUE
+                val overdue = waiting.values.any { System.currentTimeMillis() - it.heldAtMs > MAX_HOLD_MS }
+                val releasable = if (overdue) waiting else waiting.headMap(lowestOutstanding)
+                if (overdue) Log.w(TAG, "Releasing session $sessionId transcripts out of order; chunk $lowestOutstanding is overdue")
+                val released = releasable.values.toList()
+                releasable.clear()
+                if (waiting.isEmpty()) held.remove(sessionId)
+                released
+            }
+            var ownFailure: Exception? = null
+            for (released in ready) {
+                val transcript = released.chunk
+                try {
+                    sessionRepository.addChunkToSession(transcript)
+                } catch (e: Exception) {
+                    Log.e(TAG, "Failed to store chunk ${transcript.chunkIndex} of session $sessionId", e)
+                    synchronized(lock) {
+                        if (released === entry) {
+                            // The caller keeps the work item and commits again
+                            outstanding.getOrPut(sessionId) { TreeSet() }.add(chunkOrder)
+                        } else {
+                            held.getOrPut(sessionId) { TreeMap() }[transcript.chunkIndex] =
+                                Held(transcript, System.currentTimeMillis(), released.onStored)
+                        }
+                    }
+                    if (released === entry) ownFailure = e
+                    continue
+                }
+                try {
+                    released.onStored?.invoke()
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Log.e(TAG, "Error finishing stored chunk ${transcript.chunkIndex} of session $sessionId", e)
+                }
+            }
+            ownFailure?.let { throw it }
+            val stored = entry != null && ready.any { it === entry }
+            if (entry != null && !stored) {
+                Log.d(TAG, "Holding chunk $chunkOrder of session $sessionId until earlier chunks finish")
+            }
+            stored
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.audioscribe.app.data.repository
+
+import android.content.Context
+import android.util.Log
+import com.audioscribe.app.data.database.AudioscribeDatabase
+import com.audioscribe.app.data.database.entity.QueuedChunk
+import com.audioscribe.app.data.database.entity.QueueStatus
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Repository for the persistent queue of chunks waiting for transcription
+ */
+class TranscriptionQueueRepository(context: Context) {
+
+    private val queueDao = AudioscribeDatabase.getInstance(context).queuedChunkDao()
+
+    companion object {
+        private const val TAG = "TranscriptionQueueRepo"
+    }
+
+    /**
+     * Add a chunk to the queue
+     * @return The ID of the queue entry
+     */
+    suspend fun enqueue(chunk: QueuedChunk): Long {
+        val id = queueDao.insertChunk(chunk)
+        Log.d(TAG, "Queued ${chunk.audioFilePath} as $id (session ${chunk.sessionId}, order ${chunk.chunkOrder})")
+        return id
+    }
+
+    /**
+     * Take the oldest chunk that is due and mark it in progress. Only one caller may claim at a time.
+     */
+    suspend fun claimNext(): QueuedChunk? {
+        val chunk = queueDao.getReadyChunks(System.currentTimeMillis(), 1).firstOrNull() ?: return null
+        queueDao.updateStatus(chunk.id, QueueStatus.IN_PROGRESS)
+        return chunk.copy(status = QueueStatus.IN_PROGRESS)
+    }
+
+    /**
+     * Earliest time a queued chunk becomes due, or null if nothing is queued
+     */
+    suspend fun getNextAttemptTime(): Long? = queueDao.getNextAttemptTime()
+
+    suspend fun getPendingCount(): Int = queueDao.getPendingCount()
+
+    suspend fun getPendingChunks(): List<QueuedChunk> = queueDao.getPendingChunks()
+
+    /**
+     * The chunk was transcribed and stored; it leaves the queue
+     */
+    suspend fun complete(id: Long) {
+        queueDao.deleteChunk(id)
+    }
+
+    /**
+     * Try the chunk again after [delayMs]
+     * @param countAttempt false if the attempt never reached the API (e.g. constraints not met)
+     */
+    suspend fun retryLater(chunk: QueuedChunk, delayMs: Long, error: String?, countAttempt: Boolean = true) {
+        val attempts = if (countAttempt) chunk.attemptCount + 1 else chunk.attemptCount
+        queueDao.scheduleRetry(chunk.id, attempts, System.currentTimeMillis() + delayMs, error)
+    }
+
+    /**
+     * Put a chunk whose attempt was interrupted straight back in the queue
+     */
+    suspend fun requeue(chunk: QueuedChunk) {
+        queueDao.scheduleRetry(chunk.id, chunk.attemptCount, chunk.nextAttemptAt, chunk.lastError)
+    }
+
+    suspend fun fail(id: Long, error: String) {
+        queueDao.markFailed(id, error)
+    }
+
+    /**
+     * Return chunks a killed worker left in progress to the queue
+     */
+    suspend fun recoverInterrupted(): Int = queueDao.resetInProgress()
+
+    /**
+     * Delete failed entries older than [maxAgeMs]
+     */
+    suspend fun pruneFailed(maxAgeMs: Long): Int =
+        queueDao.deleteFailedChunks(System.currentTimeMillis() - maxAgeMs)
+
+    /**
+     * Status of a queue entry; null once it has been transcribed
+     */
+    fun observeStatus(id: Long): Flow<QueueStatus?> = queueDao.observeStatus(id)
+}
@@ -1,24 +1,61 @@
 package com.audioscribe.app.data.repository
 
+import android.os.SystemClock
 import android.util.Log
+import com.audioscribe.app.audio.CaptureFormat
+import com.audioscribe.app.audio.ChunkEncoding
+import com.audioscribe.app.data.network.AdaptiveConcurrencyLimiter
+import com.audioscribe.app.data.network.ByteBufferRequestBody
+import com.audioscribe.app.data.network.CircuitOpenException
+import com.audioscribe.app.data.network.FileChannelRequestBody
+import com.audioscribe.app.data.network.StreamingAudioRequestBody
 import com.audioscribe.app.data.network.NetworkClient
+import com.audioscribe.app.data.network.RequestHedger
+import com.audioscribe.app.data.network.TranscriptionCircuitBreaker
+import com.audioscribe.app.data.network.TranscriptionApiException
+import com.audioscribe.app.data.network.UploadProgressTracker
 import com.audioscribe.app.data.network.WhisperApiService
+import com.audioscribe.app.data.network.WhisperRateLimiter
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.selects.select
+import kotlinx.coroutines.supervisorScope
 import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeoutOrNull
 import okhttp3.MediaType.Companion.toMediaType
 import okhttp3.MultipartBody
 import okhttp3.RequestBody
+import retrofit2.Response
 import java.io.File
+import java.io.IOException
+import java.net.SocketTimeoutException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
 
 /**
- * Repository for handling audio transcription operations
+ * Repository for handling audio transcription operations.
+ * Requests from every instance share one [AdaptiveConcurrencyLimiter] and the per-key
+ * [WhisperRateLimiter], so uploads from the queue worker and the recording service together
+ * stay within the API's rate limit. While the [TranscriptionCircuitBreaker] is open, requests
+ * fail at once without uploading anything. Slow requests may be hedged, see [RequestHedger].
  */
 class TranscriptionRepository {
     
-    private val whisperApiService = NetworkClient.createWhisperApiService()
+    private val whisperApiService = NetworkClient.whisperApiService
     
     companion object {
         private const val TAG = "TranscriptionRepository"
+        
+        private val concurrencyLimiter = AdaptiveConcurrencyLimiter()
+        private const val WAV_BYTE_RATE_OFFSET = 28
+        private const val HEDGE_SUFFIX = " (hedge)"
+        
+        /**
+         * Number of requests currently allowed at once by the shared limiter
+         */
+        val concurrencyLimit: Int get() = concurrencyLimiter.limit
     }
     
     /**
@@ -26,31 +63,19 @@ class TranscriptionRepository {
      * 
      * @param audioFile The audio file to transcribe
      * @param language Optional language code (default: "en")
+     * @param audioDurationMs Length of the audio, if known; read from the file otherwise
      * @return Result containing transcription text or error
      */
     suspend fun transcribeAudio(
         audioFile: File,
         apiKey: String,
-        language: String? = null
+        language: String? = null,
+        audioDurationMs: Long? = null
     ): Result<String> = withContext(Dispatchers.IO) {
         try {
             Log.d(TAG, "Starting transcription for file: ${audioFile.name}, size: ${audioFile.length()} bytes")
             
-            // Check apiKey
-            if (apiKey.isBlank()) {
-                return@withContext Result.failure(Exception("OpenAI API key not configured. Please set it in Settings."))
-            }
-            
-            // Validate API key format (OpenAI keys start with "sk-" and are typically 51 chars)
-            if (!apiKey.startsWith("sk-")) {
-                Log.w(TAG, "API key doesn't start with 'sk-', this might be incorrect")
-                return@withContext Result.failure(Exception("Invalid API key format. OpenAI API keys should start with 'sk-'"))
-            }
-            
-            if (apiKey.length < 20) {
-                Log.w(TAG, "API key seems too short: ${apiKey.length} characters")
-                return@withContext Result.failure(Exception("API key seems too short. Please check your API key."))
-            }
+            validateApiKey(apiKey)?.let { return@withContext Result.failure(it) }
             
             // Validate file
             if (!audioFile.exists() || audioFile.length() == 0L) {
@@ -58,55 +83,60 @@ class TranscriptionRepository {
             }
             
             // Check file size (Whisper API has 25MB limit)
-            val maxSizeBytes = 25 * 1024 * 1024 // 25MB
-            if (audioFile.length() > maxSizeBytes) {
+            if (audioFile.length() > WhisperApiService.MAX_UPLOAD_BYTES) {
                 return@withContext Result.failure(Exception("Audio file too large. Maximum size is 25MB"))
             }
             
-            // Create multipart request
-            val requestFile = RequestBody.create(
-                "audio/wav".toMediaType(),
-                audioFile
-            )
-            val filePart = MultipartBody.Part.createFormData("file", audioFile.name, requestFile)
+            // Create multipart request; the chunk format is identified by its extension
+            val mimeType = ChunkEncoding.forFile(audioFile)?.mimeType ?: ChunkEncoding.WAV.mimeType
+            val requestFile = FileChannelRequestBody(audioFile, mimeType.toMediaType())
+            val durationMs = audioDurationMs ?: CaptureFormat.estimateDurationMs(audioFile)
+            try {
+                sendTranscription(requestFile, audioFile.name, apiKey, language, durationMs) { name ->
+                    FileChannelRequestBody(audioFile, mimeType.toMediaType(), name)
+                }
+            } finally {
+                UploadProgressTracker.remove(audioFile.name)
+            }
             
-            // Create form data parts
-            val modelPart = WhisperApiService.createRequestBody(WhisperApiService.DEFAULT_MODEL)
-            val languagePart = if (language != null) WhisperApiService.createRequestBody(language) else null
-            val responseFormatPart = WhisperApiService.createRequestBody(WhisperApiService.DEFAULT_RESPONSE_FORMAT)
+        } catch (e: Exception) {
+            Log.e(TAG, "Transcription failed", e)
+            Result.failure(e)
+        }
+    }
+    
+    /**
+     * Transcribe a WAV chunk held in memory, streaming it into the request without a file
+     * 
+     * @param audio The complete WAV file, from its position to its limit
+     * @param fileName Name reported to the API for the upload
+     * @return Result containing transcription text or error
+     */
+    suspend fun transcribeAudio(
+        audio: ByteBuffer,
+        fileName: String,
+        apiKey: String,
+        language: String? = null
+    ): Result<String> = withContext(Dispatchers.IO) {
+        try {
+            Log.d(TAG, "Starting transcription for in-memory chunk: $fileName, size: ${audio.remaining()} bytes")
             
-            // Make API call
-            val authHeader = WhisperApiService.createAuthHeader(apiKey)
-            val response = whisperApiService.transcribeAudio(
-                authorization = authHeader,
-                file = filePart,
-                model = modelPart,
-                language = languagePart,
-                responseFormat = responseFormatPart
-            )
+            validateApiKey(apiKey)?.let { return@withContext Result.failure(it) }
             
-            if (response.isSuccessful) {
-                val transcriptionResponse = response.body()
-                if (transcriptionResponse != null && transcriptionResponse.text.isNotEmpty()) {
-                    Log.d(TAG, "Transcription successful: ${transcriptionResponse.text.take(100)}...")
-                    Result.success(transcriptionResponse.text)
-                } else {
-                    Result.failure(Exception("Empty transcription response"))
+            if (!audio.hasRemaining()) {
+                return@withContext Result.failure(Exception("Audio chunk is empty"))
+            }
+            if (audio.remaining() > WhisperApiService.MAX_UPLOAD_BYTES) {
+                return@withContext Result.failure(Exception("Audio file too large. Maximum size is 25MB"))
+            }
+            
+            val requestBody = ByteBufferRequestBody(audio, ChunkEncoding.WAV.mimeType.toMediaType(), fileName)
+            try {
+                sendTranscription(requestBody, fileName, apiKey, language, wavDurationMs(audio)) { name ->
+                    ByteBufferRequestBody(audio, ChunkEncoding.WAV.mimeType.toMediaType(), name)
                 }
-            } else {
-                // Get detailed error information
-                val errorBody = response.errorBody()?.string() ?: "No error details"
-                val errorMessage = "API Error: ${response.code()} - ${response.message()}"
-                val detailedError = "$errorMessage\nDetails: $errorBody"
-                
-                Log.e(TAG, "API request failed:")
-                Log.e(TAG, "  Status: ${response.code()} ${response.message()}")
-                Log.e(TAG, "  Error body: $errorBody")
-                Log.e(TAG, "  File: ${audioFile.name} (${audioFile.length()} bytes)")
-                Log.e(TAG, "  API key length: ${apiKey.length} chars")
-                Log.e(TAG, "  API key prefix: ${if (apiKey.length >= 7) apiKey.take(7) + "..." else "too short"}")
-                
-                Result.failure(Exception(detailedError))
+            } finally {
+                UploadProgressTracker.remove(fileName)
             }
             
         } catch (e: Exception) {
@@ -114,4 +144,271 @@ class TranscriptionRepository {
             Result.failure(e)
         }
     }
+    
+    /**
+     * Transcribe a WAV stream while it is still being recorded. The request is sent as the
+     * stream is written and completes once [audio] is closed.
+     * 
+     * @param audio Body fed by the recorder
+     * @param fileName Name reported to the API for the upload
+     * @return Result containing transcription text or error
+     */
+    suspend fun transcribeAudio(
+        audio: StreamingAudioRequestBody,
+        fileName: String,
+        apiKey: String,
+        language: String? = null
+    ): Result<String> = withContext(Dispatchers.IO) {
+        try {
+            Log.d(TAG, "Starting streaming transcription for chunk: $fileName")
+            
+            validateApiKey(apiKey)?.let {
+                audio.abort()
+                return@withContext Result.failure(it)
+            }
+            
+            // Not gated: the recorder cannot wait for a slot, and a live request lasts as long as its chunk
+            val result = sendTranscription(audio, fileName, apiKey, language, audioMs = 0L, gated = false)
+            if (result.exceptionOrNull() is CircuitOpenException) {
+                audio.abort()
+            } else {
+                WhisperRateLimiter.charge(apiKey, audio.audioDurationMs)
+            }
+            result
+            
+        } catch (e: Exception) {
+            Log.e(TAG, "Streaming transcription failed", e)
+            audio.abort()
+            Result.failure(e)
+        }
+    }
+    
+    /**
+     * Half-open probe: a small authenticated request that tells whether the API and key work
+     */
+    private suspend fun probeApi(apiKey: String): Boolean {
+        val response = whisperApiService.getModel(
+            WhisperApiService.createAuthHeader(apiKey),
+            WhisperApiService.DEFAULT_MODEL
+        )
+        response.body()?.close()
+        response.errorBody()?.close()
+        Log.d(TAG, "Probe returned ${response.code()}")
+        return response.isSuccessful
+    }
+    
+    /**
+     * @return Why [apiKey] cannot be used, or null if it looks valid
+     */
+    private fun validateApiKey(apiKey: String): Exception? {
+        // Check apiKey
+        if (apiKey.isBlank()) {
+            return Exception("OpenAI API key not configured. Please set it in Settings.")
+        }
+        
+        // Validate API key format (OpenAI keys start with "sk-" and are typically 51 chars)
+        if (!apiKey.startsWith("sk-")) {
+            Log.w(TAG, "API key doesn't start with 'sk-', this might be incorrect")
+            return Exception("Invalid API key format. OpenAI API keys should start with 'sk-'")
+        }
+        
+        if (apiKey.length < 20) {
+            Log.w(TAG, "API key seems too short: ${apiKey.length} characters")
+            return Exception("API key seems too short. Please check your API key.")
+        }
+        return null
+    }
+    
+    /**
+     * Duration of the WAV file in [audio], from the byte rate in its header
+     */
+    private fun wavDurationMs(audio: ByteBuffer): Long {
+        val bytes = audio.remaining() - CaptureFormat.WAV_HEADER_BYTES
+        if (bytes <= 0) return 0L
+        val byteRate = audio.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(audio.position() + WAV_BYTE_RATE_OFFSET)
+        return if (byteRate > 0) bytes * 1000L / byteRate else 0L
+    }
+    
+    /**
+     * Run [call] with [audio]. If a [hedgeCopy] can be made and the call has not returned within
+     * the hedge delay for its payload size, run a second call with a copy, which reports its
+     * upload progress under a name of its own. The first call to answer is used and the other
+     * cancelled; a call that fails outright leaves the race to the other one.
+     * The copy needs a concurrency slot of its own. If none is free right away, or the hedge
+     * budget is spent, the original call carries on alone.
+     */
+    private suspend fun <T> requestWithHedging(
+        audio: RequestBody,
+        fileName: String,
+        hedgeCopy: ((String) -> RequestBody)?,
+        onHedge: () -> Unit,
+        call: suspend (RequestBody) -> Response<T>
+    ): Response<T> = supervisorScope {
+        val bytes = audio.contentLength()
+        val primaryStartedAtMs = SystemClock.elapsedRealtime()
+        val primary = async { attempt { call(audio) } }
+        val delayMs = if (hedgeCopy != null) RequestHedger.hedgeDelayMs(bytes) else null
+        val early = if (delayMs != null) withTimeoutOrNull(delayMs) { primary.await() } else primary.await()
+        val hedgeStartedAtMs = if (early == null) concurrencyLimiter.tryAcquire() else null
+        if (hedgeCopy == null || hedgeStartedAtMs == null || !RequestHedger.tryStartHedge()) {
+            if (hedgeStartedAtMs != null) concurrencyLimiter.release()
+            if (early == null) Log.d(TAG, "$fileName is slow but cannot be hedged now")
+            val response = (early ?: primary.await()).getOrThrow()
+            if (hedgeCopy != null && response.isSuccessful) {
+                RequestHedger.recordLatency(bytes, SystemClock.elapsedRealtime() - primaryStartedAtMs)
+            }
+            return@supervisorScope response
+        }
+        
+        Log.i(TAG, "No response for $fileName after $delayMs ms, sending a hedged copy")
+        onHedge()
+        val hedgeName = fileName + HEDGE_SUFFIX
+        val hedge = async {
+            try {
+                attempt { call(hedgeCopy(hedgeName)) }
+            } finally {
+                concurrencyLimiter.release()
+                UploadProgressTracker.remove(hedgeName)
+            }
+        }
+        val first = select<Deferred<Result<Response<T>>>> {
+            primary.onAwait { primary }
+            hedge.onAwait { hedge }
+        }
+        val other = if (first === primary) hedge else primary
+        val winner = if (first.await().isSuccess) first else other
+        if (winner === first) other.cancel()
+        val response = winner.await().getOrThrow()
+        
+        val hedgeWon = winner === hedge
+        RequestHedger.onHedgeSettled(hedgeWon)
+        Log.i(TAG, "Hedged request for $fileName answered by the ${if (hedgeWon) "copy" else "original"}")
+        if (response.isSuccessful) {
+            val startedAtMs = if (hedgeWon) hedgeStartedAtMs else primaryStartedAtMs
+            RequestHedger.recordLatency(bytes, SystemClock.elapsedRealtime() - startedAtMs)
+        }
+        response
+    }
+    
+    /**
+     * Outcome of [block] as a Result; cancellation is not an outcome and is rethrown
+     */
+    private inline fun <T> attempt(block: () -> T): Result<T> {
+        return try {
+            Result.success(block())
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Result.failure(e)
+        }
+    }
+    
+    /**
+     * Upload [audio] as the multipart file part and parse the response.
+     * A [gated] request first waits for rate-limit tokens covering [audioMs] of audio, then for
+     * a slot from the shared concurrency limiter. Every request reports its outcome and
+     * rate-limit headers to the latter.
+     * With a [hedgeCopy], which makes another body for the same audio, a slow request may be
+     * hedged.
+     */
+    private suspend fun sendTranscription(
+        audio: RequestBody,
+        fileName: String,
+        apiKey: String,
+        language: String?,
+        audioMs: Long,
+        gated: Boolean = true,
+        hedgeCopy: ((String) -> RequestBody)? = null
+    ): Result<String> {
+        if (!TranscriptionCircuitBreaker.allowRequest { probeApi(apiKey) }) {
+            Log.d(TAG, "Circuit open, not sending $fileName")
+            return Result.failure(CircuitOpenException(TranscriptionCircuitBreaker.remainingOpenMs()))
+        }
+        
+        // Create form data parts
+        val modelPart = WhisperApiService.createRequestBody(WhisperApiService.DEFAULT_MODEL)
+        val languagePart = if (language != null) WhisperApiService.createRequestBody(language) else null
+        val responseFormatPart = WhisperApiService.createRequestBody(WhisperApiService.DEFAULT_RESPONSE_FORMAT)
+        
+        // Make API call
+        val authHeader = WhisperApiService.createAuthHeader(apiKey)
+        // Waiting for tokens and for a slot are reported apart from the request itself
+        val tokenWaitMs = if (gated) WhisperRateLimiter.acquire(apiKey, audioMs) else 0L
+        val slotRequestedAtMs = SystemClock.elapsedRealtime()
+        val startedAtMs = if (gated) concurrencyLimiter.acquire() else slotRequestedAtMs
+        val response = try {
+            requestWithHedging(audio, fileName, hedgeCopy.takeIf { gated }, onHedge = {
+                // The copy is billed and counted by the API like any request
+                WhisperRateLimiter.charge(apiKey, audioMs)
+            }) { body ->
+                whisperApiService.transcribeAudio(
+                    authorization = authHeader,
+                    file = MultipartBody.Part.createFormData("file", fileName, body),
+                    model = modelPart,
+                    language = languagePart,
+                    responseFormat = responseFormatPart
+                )
+            }
+        } catch (e: IOException) {
+            if (e is SocketTimeoutException) {
+                concurrencyLimiter.onOverload(startedAtMs, rateLimited = false, retryAfterMs = null)
+            }
+            // A live stream also fails when the recorder gives up on it, which says nothing about the API
+            if (gated) TranscriptionCircuitBreaker.onFailure(e.message ?: e::class.simpleName)
+            throw e
+        } finally {
+            if (gated) concurrencyLimiter.release()
+        }
+        
+        Log.d(TAG, "Request for $fileName: ${tokenWaitMs} ms rate limit wait, " +
+            "${startedAtMs - slotRequestedAtMs} ms concurrency wait, ${SystemClock.elapsedRealtime() - startedAtMs} ms request")
+        concurrencyLimiter.onRateLimitHeaders(response.headers())
+        when (response.code()) {
+            401, 403 -> TranscriptionCircuitBreaker.onFailure("API Error: ${response.code()}", authentication = true)
+            in 500..599 -> TranscriptionCircuitBreaker.onFailure("API Error: ${response.code()}")
+            429 -> Unit
+            else -> TranscriptionCircuitBreaker.onSuccess()
+        }
+        if (response.isSuccessful) {
+            if (gated) concurrencyLimiter.onSuccess(startedAtMs, audio.contentLength())
+        } else if (response.code() == 429 || response.code() >= 500) {
+            concurrencyLimiter.onOverload(
+                startedAtMs,
+                rateLimited = response.code() == 429,
+                retryAfterMs = AdaptiveConcurrencyLimiter.retryAfterMs(response.headers())
+            )
+        }
+        
+        return if (response.isSuccessful) {
+            val transcriptionResponse = response.body()
+            if (transcriptionResponse != null && transcriptionResponse.text.isNotEmpty()) {
+                Log.d(TAG, "Transcription successful: ${transcriptionResponse.text.take(100)}...")
+                Result.success(transcriptionResponse.text)
+            } else {
+                Result.failure(Exception("Empty transcription response"))
+            }
+        } else {
+            // Get detailed error information
+            val errorBody = response.errorBody()?.string() ?: "No error details"
+            val errorMessage = "API Error: ${response.code()} - ${response.message()}"
+            val detailedError = "$errorMessage\nDetails: $errorBody"
+            
+            Log.e(TAG, "API request failed:")
+            Log.e(TAG, "  Status: ${response.code()} ${response.message()}")
+            Log.e(TAG, "  Error body: $errorBody")
+            Log.e(TAG, "  File: $fileName (${audio.contentLength()} bytes)")
+            Log.e(TAG, "  API key length: ${apiKey.length} chars")
+            Log.e(TAG, "  API key prefix: ${if (apiKey.length >= 7) apiKey.take(7) + "..." else "too short"}")
+            
+            Result.failure(
+                TranscriptionApiException(
+                    code = response.code(),
+                    message = detailedError,
+                    retryAfterMs = AdaptiveConcurrencyLimiter.retryAfterMs(response.headers()),
+                    // OpenAI reports an exhausted quota as a 429 too
+                    quotaExhausted = response.code() == 429 && errorBody.contains("insufficient_quota")
+                )
+            )
+        }
+    }
 }
@@ -14,36 +14,80 @@ import android.media.AudioRecord
 import android.media.MediaRecorder
 import android.media.projection.MediaProjection
 import android.media.projection.MediaProjectionManager
+import android.net.ConnectivityManager
+import android.net.NetworkCapabilities
 import android.os.Build
 import android.os.Handler
 import android.os.IBinder
 import android.os.Looper
+import android.os.SystemClock
 import android.util.Log
 import android.widget.Toast
 import androidx.annotation.RequiresApi
 import androidx.core.app.NotificationCompat
 import androidx.lifecycle.LifecycleService
 import com.audioscribe.app.R
+import com.audioscribe.app.audio.AudioCaptureThread
+import com.audioscribe.app.audio.CaptureFormat
+import com.audioscribe.app.audio.CaptureMetrics
+import com.audioscribe.app.audio.ChunkBoundaryPlanner
+import com.audioscribe.app.audio.ChunkBufferPool
+import com.audioscribe.app.audio.ChunkDigest
+import com.audioscribe.app.audio.ChunkEncoding
+import com.audioscribe.app.audio.ChunkSink
+import com.audioscribe.app.audio.ChunkSizingPolicy
+import com.audioscribe.app.audio.ChunkWindow
+import com.audioscribe.app.audio.CopyRateMeter
+import com.audioscribe.app.audio.DualSourceMixer
+import com.audioscribe.app.audio.PcmResampler
+import com.audioscribe.app.audio.PcmRingBuffer
+import com.audioscribe.app.audio.PcmTail
+import com.audioscribe.app.audio.JitterSnapshot
+import com.audioscribe.app.audio.ReadJitterHistogram
+import com.audioscribe.app.audio.VoiceActivityDetector
+import com.audioscribe.app.audio.RingBufferStats
+import com.audioscribe.app.audio.SpooledChunk
+import com.audioscribe.app.audio.SpooledWavChunkWriter
 import com.audioscribe.app.data.repository.TranscriptionRepository
 import com.audioscribe.app.utils.ApiKeyStore
 import com.audioscribe.app.ui.MainActivity
 import com.audioscribe.app.worker.TranscriptionWorker
-import com.audioscribe.app.utils.WorkManagerConfig
+import androidx.work.WorkManager
+import com.audioscribe.app.utils.TranscriptionSettingsStore
 import com.audioscribe.app.data.repository.SessionRepository
 import com.audioscribe.app.data.database.entity.TranscriptionSession
 import com.audioscribe.app.data.database.entity.SessionStatus
 import com.audioscribe.app.data.database.entity.TranscriptChunk
+import com.audioscribe.app.data.database.entity.ChunkStatus
+import com.audioscribe.app.data.database.entity.QueuedChunk
+import com.audioscribe.app.data.database.entity.QueueStatus
+import com.audioscribe.app.data.repository.TranscriptionQueueRepository
+import com.audioscribe.app.data.repository.TranscriptCommitter
+import com.audioscribe.app.data.repository.TranscriptCacheRepository
+import com.audioscribe.app.data.network.NetworkClient
+import com.audioscribe.app.data.network.TranscriptionCircuitBreaker
+import com.audioscribe.app.data.network.UploadProgressTracker
 import java.util.Date
-import androidx.work.OneTimeWorkRequestBuilder
-import androidx.work.WorkManager
+import java.util.concurrent.atomic.AtomicInteger
+import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.async
 import kotlinx.coroutines.delay
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.drop
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.selects.select
 import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeoutOrNull
 import java.io.File
-import java.io.FileOutputStream
 import java.io.IOException
 
 /**
@@ -56,14 +100,37 @@ class AudioCaptureService : LifecycleService() {
     companion object {
         private const val TAG = "AudioCaptureService"
         private const val NOTIFICATION_ID = 1
+        private const val UPLOAD_PROGRESS_REFRESH_MS = 1000L
         private const val CHANNEL_ID = "audio_capture_channel"
         private const val CHANNEL_NAME = "Audio Capture"
         
-        // Audio configuration constants
-        private const val SAMPLE_RATE = 44100
+        // Audio configuration constants (capture side; chunks are written in CaptureFormat's output format)
+        private const val SAMPLE_RATE = CaptureFormat.CAPTURE_SAMPLE_RATE
         private const val CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_STEREO
         private const val AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT
-		private const val CHUNK_SECONDS = 30 // Fixed-length chunk duration (demo-friendly)
+        
+        // Capture -> writer ring buffer
+        private const val RING_BUFFER_SECONDS = 6 // Headroom for slow chunk rotations
+        private const val WRITER_BLOCK_BYTES = 16 * 1024
+        private const val CAPTURE_THREAD_JOIN_MS = 1000L
+        private const val COPY_REPORT_INTERVAL_MS = 60_000L // Also how often capture metrics are persisted
+        private const val SESSION_START_TIMEOUT_MS = 5_000L // Must stay below RING_BUFFER_SECONDS
+        
+        // Chunks with less detected speech than this are dropped instead of transcribed
+        private const val MIN_SPEECH_RATIO = 0.05f
+        
+        // Audio from the end of each chunk repeated at the start of the next when overlap is on
+        private const val CHUNK_OVERLAP_MS = 1500
+        
+        // Stereo output is folded to mono for voice activity detection in blocks of this many frames
+        private const val VAD_DOWNMIX_SAMPLES = 4096
+        
+        // In-memory chunks waiting for or in a streaming upload; beyond either limit chunks go to disk
+        private const val SPOOL_POOL_BYTES = 32L * 1024 * 1024
+        private const val SPOOL_QUEUE_CAPACITY = 2
+        
+        // How far a live chunk upload may fall behind the recording before it is given up
+        private const val LIVE_UPLOAD_MAX_LAG_SECONDS = 10
         
         // Intent extras
         const val EXTRA_RESULT_CODE = "EXTRA_RESULT_CODE"
@@ -77,29 +144,107 @@ class AudioCaptureService : LifecycleService() {
         // Actions
         const val ACTION_START_CAPTURE = "ACTION_START_CAPTURE"
         const val ACTION_STOP_CAPTURE = "ACTION_STOP_CAPTURE"
+        const val ACTION_PAUSE_CAPTURE = "ACTION_PAUSE_CAPTURE"
+        const val ACTION_RESUME_CAPTURE = "ACTION_RESUME_CAPTURE"
+        
+        @Volatile
+        private var activeRing: PcmRingBuffer? = null
+        
+        /**
+         * Overrun counters and high-water mark of the running capture ring, or null when idle
+         */
+        fun getCaptureBufferStats(): RingBufferStats? = activeRing?.stats()
+        
+        @Volatile
+        private var activeCopyMeter: CopyRateMeter? = null
+        
+        /**
+         * Bytes copied per second by the capture hot path over the last report interval, or null when idle
+         */
+        fun getCopiedBytesPerSecond(): Long? = activeCopyMeter?.lastRateBytesPerSecond
+        
+        @Volatile
+        private var activeJitter: ReadJitterHistogram? = null
+        
+        /**
+         * Spread of the intervals between AudioRecord reads on the capture thread, or null when idle
+         */
+        fun getReadJitter(): JitterSnapshot? = activeJitter?.snapshot()
+        
+        @Volatile
+        private var activeCaptureThread: AudioCaptureThread? = null
+        
+        /**
+         * Whether the running recording is paused (false when idle)
+         */
+        fun isCapturePaused(): Boolean = activeCaptureThread?.isPaused == true
     }
     
+    @Volatile
     private var mediaProjection: MediaProjection? = null
+    @Volatile
     private var audioRecord: AudioRecord? = null
+    @Volatile
+    private var micAudioRecord: AudioRecord? = null // Second source in dual-source mode
+    @Volatile
     private var isRecording = false
     private var recordingJob: Job? = null
+    private var startJob: Job? = null
+    private var stopJob: Job? = null
+    private var captureThread: AudioCaptureThread? = null
+    private var micCaptureThread: AudioCaptureThread? = null
+    private var isMicrophoneMode = false
+    
+    // Milliseconds from the start request to the first captured sample; -1 until it arrives
+    @Volatile
+    private var timeToFirstSampleMs = -1L
     private val serviceScope = CoroutineScope(Dispatchers.IO + Job())
-    private var inFlightTranscriptions = 0
+    // Chunks handed to a transcription path and not yet settled; changed from several threads
+    private val inFlightTranscriptions = AtomicInteger(0)
     
     private var outputFile: File? = null
     private val transcriptionRepository = TranscriptionRepository()
+    private val chunkBufferPool = ChunkBufferPool(SPOOL_POOL_BYTES)
+    private val uploadStageDelegate = lazy {
+        ChunkUploadStage(serviceScope, SPOOL_QUEUE_CAPACITY, ::transcribeSpooledChunk, spooledUploadListener)
+    }
+    private val uploadStage by uploadStageDelegate
     private val sessionRepository by lazy { SessionRepository(this) }
+    private val transcriptionQueue by lazy { TranscriptionQueueRepository(this) }
+    private val transcriptCommitter by lazy { TranscriptCommitter.getInstance(this) }
+    private val transcriptCache by lazy { TranscriptCacheRepository(this) }
     
     // Session management
     private var currentSessionId: Long? = null
     private var sessionStartTime: Date? = null
     private var chunkCounter = 0
     
+    // Refreshes the recording notification when the transcription API becomes unavailable or recovers
+    private var circuitWatch: Job? = null
+    // Refreshes the notification with upload progress
+    private var uploadProgressWatch: Job? = null
+    
     override fun onCreate() {
         super.onCreate()
         createNotificationChannel()
         // CRITICAL: Start foreground immediately to prevent ForegroundServiceDidNotStartInTimeException
         startForeground(NOTIFICATION_ID, createNotification(isRecording = false, isMicrophoneMode = false))
+        circuitWatch = serviceScope.launch {
+            TranscriptionCircuitBreaker.status.map { it.state }.distinctUntilChanged().drop(1).collect {
+                if (captureThread != null) showRecordingNotification()
+            }
+        }
+        uploadProgressWatch = serviceScope.launch {
+            UploadProgressTracker.uploads.drop(1).collect {
+                if (captureThread != null) {
+                    showRecordingNotification()
+                } else if (inFlightTranscriptions.get() > 0) {
+                    updateNotificationForTranscription(isProcessing = true)
+                }
+                // Progress arrives per slice; the flow conflates while this waits
+                delay(UPLOAD_PROGRESS_REFRESH_MS)
+            }
+        }
         Log.d(TAG, "AudioCaptureService created")
     }
     
@@ -111,18 +256,18 @@ class AudioCaptureService : LifecycleService() {
                 val resultCode = intent.getIntExtra(EXTRA_RESULT_CODE, 0)
                 val resultData = intent.getParcelableExtra<Intent>(EXTRA_RESULT_DATA)
                 
-                if (resultCode != 0 && resultData != null) {
-                    // Try system audio capture first
-                    startAudioCapture(resultCode, resultData)
-                } else {
-                    // Fallback to microphone recording
-                    Log.i(TAG, "No MediaProjection data provided, using microphone recording")
-                    startMicrophoneRecording()
-                }
+                // Returns immediately; setup runs on serviceScope
+                startCaptureSession(resultCode, resultData)
             }
             ACTION_STOP_CAPTURE -> {
                 stopAudioCapture()
             }
+            ACTION_PAUSE_CAPTURE -> {
+                setCapturePaused(true)
+            }
+            ACTION_RESUME_CAPTURE -> {
+                setCapturePaused(false)
+            }
             else -> {
                 Log.w(TAG, "Unknown action: ${intent?.action}")
             }
@@ -131,19 +276,123 @@ class AudioCaptureService : LifecycleService() {
         return START_STICKY
     }
     
-    private fun startAudioCapture(resultCode: Int, resultData: Intent) {
-        if (isRecording) {
+    /**
+     * Start a recording session without blocking the caller. The session row is inserted while
+     * the AudioRecord is set up, capture begins as soon as the record is ready, and the writer
+     * tags chunks with the session id once the insert returns (audio waits in the ring meanwhile).
+     */
+    private fun startCaptureSession(resultCode: Int, resultData: Intent?) {
+        if (isRecording || startJob?.isActive == true) {
             Log.w(TAG, "Already recording")
             return
         }
         
+        val requestedAtMs = SystemClock.elapsedRealtime()
+        startJob = serviceScope.launch {
+            // Not a child of this job: a cancelled start still needs the id to clean up
+            val sessionId = serviceScope.async { createSessionRecord() }
+            // Connect to the API host while the record is set up, so the first chunk uploads on a hot socket
+            if (hasValidatedNetwork()) NetworkClient.prewarm()
+            var record: AudioRecord? = null
+            try {
+                isMicrophoneMode = false
+                if (resultCode != 0 && resultData != null) {
+                    // Try system audio capture first
+                    record = createPlaybackCaptureRecord(resultCode, resultData)
+                } else {
+                    Log.i(TAG, "No MediaProjection data provided, using microphone recording")
+                }
+                if (record == null) {
+                    record = createMicrophoneRecord()
+                    isMicrophoneMode = true
+                } else if (TranscriptionSettingsStore.isDualSourceEnabled(this@AudioCaptureService)) {
+                    // Both sides of a call: the microphone runs next to playback capture
+                    micAudioRecord = createMicrophoneRecord()
+                }
+                if (record == null) {
+                    // Nothing to record from; don't leave an empty session behind
+                    sessionId.await()?.let { sessionRepository.deleteSession(it) }
+                    return@launch
+                }
+                
+                ensureActive()
+                audioRecord = record
+                showRecordingNotification()
+                
+                // The capture thread starts the record and owns it from here on
+                isRecording = true
+                startCapturePipeline(sessionId, requestedAtMs)
+                
+                if (isMicrophoneMode) {
+                    Log.i(TAG, "Microphone recording started successfully")
+                    showErrorToast("Using microphone instead of system audio")
+                } else {
+                    Log.i(TAG, "Audio capture started successfully")
+                }
+            } catch (e: CancellationException) {
+                // Stopped before capture began
+                if (!isRecording) {
+                    record?.release()
+                    audioRecord = null
+                    micAudioRecord?.release()
+                    micAudioRecord = null
+                    mediaProjection?.stop()
+                    mediaProjection = null
+                    withContext(NonCancellable) {
+                        sessionId.await()?.let { sessionRepository.deleteSession(it) }
+                    }
+                }
+                throw e
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to start recording", e)
+                if (!isRecording) {
+                    record?.release()
+                    audioRecord = null
+                    micAudioRecord?.release()
+                    micAudioRecord = null
+                    mediaProjection?.stop()
+                    mediaProjection = null
+                    sessionId.await()?.let { sessionRepository.deleteSession(it) }
+                }
+                showErrorToast("Recording failed: ${e.message}")
+            }
+        }
+    }
+    
+    /**
+     * Insert the session row for a new recording
+     * @return The session ID, or null if the insert failed
+     */
+    private suspend fun createSessionRecord(): Long? {
+        val startTime = Date()
+        sessionStartTime = startTime
+        return try {
+            val session = TranscriptionSession(
+                startTime = startTime,
+                endTime = null,
+                title = "Session ${System.currentTimeMillis()}",
+                status = SessionStatus.IN_PROGRESS
+            )
+            sessionRepository.startNewSession(session).also {
+                Log.d(TAG, "Created session in database with ID: $it")
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to create session in database", e)
+            null
+        }
+    }
+    
+    /**
+     * Build an AudioRecord that captures other apps' playback
+     * @return The initialized record, or null if the caller should fall back to the microphone
+     */
+    private fun createPlaybackCaptureRecord(resultCode: Int, resultData: Intent): AudioRecord? {
         try {
             // Check API level
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
                 Log.e(TAG, "AudioPlaybackCapture requires Android 10+ (API 29+), current: ${Build.VERSION.SDK_INT}")
                 Log.i(TAG, "Falling back to microphone recording")
-                startMicrophoneRecording()
-                return
+                return null
             }
             
             Log.d(TAG, "Starting audio capture on API ${Build.VERSION.SDK_INT}")
@@ -155,8 +404,7 @@ class AudioCaptureService : LifecycleService() {
             if (mediaProjection == null) {
                 Log.e(TAG, "Failed to create MediaProjection")
                 Log.i(TAG, "Falling back to microphone recording")
-                startMicrophoneRecording()
-                return
+                return null
             }
             
             // Create output file
@@ -177,8 +425,7 @@ class AudioCaptureService : LifecycleService() {
             if (bufferSize == AudioRecord.ERROR || bufferSize == AudioRecord.ERROR_BAD_VALUE) {
                 Log.e(TAG, "Invalid buffer size: $bufferSize")
                 Log.i(TAG, "Falling back to microphone recording")
-                startMicrophoneRecording()
-                return
+                return null
             }
             
             // Create AudioRecord with playback capture
@@ -190,95 +437,61 @@ class AudioCaptureService : LifecycleService() {
             
             Log.d(TAG, "Creating AudioRecord with buffer size: ${bufferSize * 2}")
             
-            audioRecord = AudioRecord.Builder()
+            val record = AudioRecord.Builder()
                 .setAudioFormat(audioFormat)
                 .setBufferSizeInBytes(bufferSize * 2) // Double buffer for safety
                 .setAudioPlaybackCaptureConfig(config)
                 .build()
             
-            val recordState = audioRecord?.state
+            val recordState = record.state
             Log.d(TAG, "AudioRecord state: $recordState")
             
             if (recordState != AudioRecord.STATE_INITIALIZED) {
                 Log.e(TAG, "AudioRecord initialization failed. State: $recordState")
                 Log.e(TAG, "Expected: ${AudioRecord.STATE_INITIALIZED}")
                 Log.i(TAG, "Falling back to microphone recording")
-                startMicrophoneRecording()
-                return
-            }
-            
-            // Update notification to show recording status
-            val intent = Intent(this, MainActivity::class.java)
-            val pendingIntent = PendingIntent.getActivity(
-                this, 0, intent, 
-                PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
-            )
-            
-            val notification = NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle("Audio Capture")
-                .setContentText("Recording system audio...")
-                .setSmallIcon(R.drawable.ic_notification)
-                .setOngoing(true)
-                .setContentIntent(pendingIntent)
-                .build()
-            
-            val notificationManager = getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
-            notificationManager.notify(NOTIFICATION_ID, notification)
-            
-			// Create session in database
-			sessionStartTime = Date()
-			// Create session asynchronously but ensure it's ready before recording
-			serviceScope.launch {
-				try {
-					val session = TranscriptionSession(
-						startTime = sessionStartTime!!,
-						endTime = null,
-						title = "Session ${System.currentTimeMillis()}",
-						status = SessionStatus.IN_PROGRESS
-					)
-					currentSessionId = sessionRepository.startNewSession(session)
-					chunkCounter = 0
-					Log.d(TAG, "Created session in database with ID: $currentSessionId")
-					Log.d(TAG, "Session creation completed, chunkCounter initialized to: $chunkCounter")
-				} catch (e: Exception) {
-					Log.e(TAG, "Failed to create session in database", e)
-				}
-			}
-			
-			// Wait for session creation to complete (simple polling)
-			var attempts = 0
-			while (currentSessionId == null && attempts < 50) { // Wait up to 5 seconds
-				Thread.sleep(100)
-				attempts++
-			}
-			if (currentSessionId == null) {
-				Log.w(TAG, "Session creation timeout, proceeding without session")
-			}
-            
-            // Start recording
-            audioRecord?.startRecording()
-            isRecording = true
-            
-            // Start recording coroutine
-            recordingJob = serviceScope.launch {
-                recordAudio()
+                record.release()
+                return null
             }
-            
-            Log.i(TAG, "Audio capture started successfully")
+            return record
             
         } catch (e: SecurityException) {
             Log.e(TAG, "Security exception - MediaProjection permission denied or AudioPlaybackCapture not supported", e)
             Log.i(TAG, "Falling back to microphone recording")
-            startMicrophoneRecording()
+            return null
         } catch (e: Exception) {
             Log.e(TAG, "Failed to start audio capture", e)
             Log.i(TAG, "Falling back to microphone recording")
-            startMicrophoneRecording()
+            return null
         }
     }
     
+    /**
+     * Pause or resume the running recording. The AudioRecord and MediaProjection stay live; the
+     * capture thread just discards audio while paused, and the writer closes the current chunk
+     * at the pause so the session and its chunk numbering carry on when recording resumes.
+     */
+    private fun setCapturePaused(paused: Boolean) {
+        val thread = captureThread
+        if (!isRecording || thread == null) {
+            Log.w(TAG, "Not recording; ignoring ${if (paused) "pause" else "resume"}")
+            return
+        }
+        if (thread.isPaused == paused) return
+        micCaptureThread?.setPaused(paused)
+        thread.setPaused(paused)
+        showRecordingNotification()
+        Log.i(TAG, if (paused) "Capture paused" else "Capture resumed")
+    }
+    
     private fun stopAudioCapture() {
         if (!isRecording) {
+            if (startJob?.isActive == true) {
+                // Stop arrived while the session was still starting
+                startJob?.cancel()
+                startJob?.invokeOnCompletion { maybeStopService() }
+                return
+            }
             Log.w(TAG, "Not recording")
             return
         }
@@ -286,46 +499,65 @@ class AudioCaptureService : LifecycleService() {
         // Signal the recording loop to exit and let it finalize the last chunk
         isRecording = false
         
-        try {
-            audioRecord?.stop()
-            audioRecord?.release()
-            audioRecord = null
-            
-            mediaProjection?.stop()
-            mediaProjection = null
+        // The capture threads stop and release their records themselves once they leave read();
+        // waiting for that, and the rest of the teardown, happens off the main thread
+        val capture = captureThread
+        val micCapture = micCaptureThread
+        val projection = mediaProjection
+        val sessionId = currentSessionId
+        captureThread = null
+        micCaptureThread = null
+        mediaProjection = null
+        capture?.requestStop()
+        micCapture?.requestStop()
+        
+        stopJob = serviceScope.launch {
+            try {
+                capture?.join(CAPTURE_THREAD_JOIN_MS)
+                micCapture?.join(CAPTURE_THREAD_JOIN_MS)
+                projection?.stop()
+            } catch (e: Exception) {
+                Log.e(TAG, "Error stopping audio capture", e)
+            }
             
             // Update session end time
-            currentSessionId?.let { sessionId ->
-                serviceScope.launch {
-                    try {
-                        val session = sessionRepository.getSession(sessionId)
-                        if (session != null) {
-                            val updatedSession = session.copy(
-                                endTime = Date(),
-                                status = SessionStatus.COMPLETED
-                            )
-                            sessionRepository.updateSession(updatedSession)
-                            Log.d(TAG, "Updated session $sessionId as completed")
-                        }
-                    } catch (e: Exception) {
-                        Log.e(TAG, "Failed to update session end time", e)
+            sessionId?.let {
+                try {
+                    val session = sessionRepository.getSession(it)
+                    if (session != null) {
+                        val updatedSession = session.copy(
+                            endTime = Date(),
+                            status = SessionStatus.COMPLETED
+                        )
+                        sessionRepository.updateSession(updatedSession)
+                        Log.d(TAG, "Updated session $it as completed")
                     }
+                } catch (e: Exception) {
+                    Log.e(TAG, "Failed to update session end time", e)
                 }
             }
             
             Log.i(TAG, "Audio capture stopped (awaiting chunk finalization/transcription if any)")
-            
-        } catch (e: Exception) {
-            Log.e(TAG, "Error stopping audio capture", e)
         }
         
-        // When the recording job completes and no transcriptions are in flight, stop the service
+        // When the teardown and recording job complete and no transcriptions are in flight, stop the service
+        stopJob?.invokeOnCompletion { maybeStopService() }
         recordingJob?.invokeOnCompletion { maybeStopService() }
         maybeStopService()
     }
 
+    /**
+     * One in-flight transcription finished, was handed on or was dropped
+     */
+    private fun transcriptionSettled() {
+        val remaining = inFlightTranscriptions.decrementAndGet()
+        if (remaining < 0) {
+            Log.e(TAG, "In-flight transcription count went negative ($remaining); a chunk was settled twice")
+        }
+    }
+    
     private fun maybeStopService() {
-        if (!isRecording && (recordingJob?.isActive != true) && inFlightTranscriptions == 0) {
+        if (!isRecording && recordingJob?.isActive != true && stopJob?.isActive != true && inFlightTranscriptions.get() == 0) {
             try {
                 stopForeground(true)
                 stopSelf()
@@ -333,28 +565,184 @@ class AudioCaptureService : LifecycleService() {
         }
     }
     
-	private suspend fun recordAudio() = withContext(Dispatchers.IO) {
-		val audioRecord = this@AudioCaptureService.audioRecord ?: return@withContext
+    /**
+     * Start the two-stage capture pipeline: a dedicated audio-priority thread that owns the
+     * AudioRecord and only moves PCM into a preallocated ring, and a writer coroutine that
+     * drains the ring to chunk files and handles rotation. Neither rotation work nor anything
+     * else on the IO dispatcher can stall AudioRecord reads.
+     */
+    private fun startCapturePipeline(sessionId: Deferred<Long?>, requestedAtMs: Long) {
+        val record = audioRecord ?: return
+        audioRecord = null
+        val ring = PcmRingBuffer(
+            CaptureFormat.CAPTURE_BYTES_PER_SECOND * RING_BUFFER_SECONDS,
+            frameBytes = CaptureFormat.CAPTURE_CHANNELS * CaptureFormat.BYTES_PER_SAMPLE,
+            blockBytes = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT)
+        )
+        val copyMeter = CopyRateMeter()
+        val jitter = ReadJitterHistogram(ring.blockBytes * 1_000_000_000L / CaptureFormat.CAPTURE_BYTES_PER_SECOND)
+        val metrics = CaptureMetrics(
+            sampleRate = SAMPLE_RATE,
+            frameBytes = CaptureFormat.CAPTURE_CHANNELS * CaptureFormat.BYTES_PER_SAMPLE,
+            gapThresholdNanos = record.bufferSizeInFrames * 1_000_000_000L / SAMPLE_RATE
+        )
+        activeRing = ring
+        activeCopyMeter = copyMeter
+        activeJitter = jitter
+        
+        timeToFirstSampleMs = -1L
+        val thread = AudioCaptureThread(record, ring, copyMeter, jitter, metrics) {
+            timeToFirstSampleMs = SystemClock.elapsedRealtime() - requestedAtMs
+        }
+        captureThread = thread
+        activeCaptureThread = thread
+        
+        // Dual-source mode: the microphone gets its own thread and ring, mixed in by the writer
+        val micRecord = micAudioRecord
+        micAudioRecord = null
+        val micRing = micRecord?.let {
+            PcmRingBuffer(
+                CaptureFormat.CAPTURE_BYTES_PER_SECOND * RING_BUFFER_SECONDS,
+                frameBytes = CaptureFormat.CAPTURE_CHANNELS * CaptureFormat.BYTES_PER_SAMPLE,
+                blockBytes = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT)
+            )
+        }
+        val micThread = if (micRecord != null && micRing != null) {
+            val micMetrics = CaptureMetrics(
+                sampleRate = SAMPLE_RATE,
+                frameBytes = CaptureFormat.CAPTURE_CHANNELS * CaptureFormat.BYTES_PER_SAMPLE,
+                gapThresholdNanos = micRecord.bufferSizeInFrames * 1_000_000_000L / SAMPLE_RATE
+            )
+            val micJitter = ReadJitterHistogram(micRing.blockBytes * 1_000_000_000L / CaptureFormat.CAPTURE_BYTES_PER_SECOND)
+            AudioCaptureThread(micRecord, micRing, copyMeter, micJitter, micMetrics) { }
+        } else {
+            null
+        }
+        micCaptureThread = micThread
+        
+        thread.start()
+        micThread?.start()
+        
+        recordingJob = serviceScope.launch {
+            recordAudio(ring, thread, copyMeter, sessionId, micRing, micThread)
+        }
+    }
+    
+	/**
+	 * Writer stage: drains the ring, downmixes/resamples to 16 kHz mono and feeds the chunk
+	 * sink (WAV or a reused MediaCodec encoder), rotating chunk files as it goes.
+	 * Sleeps on the capture thread's block signal and keeps running until that signal is
+	 * closed and the ring is empty.
+	 */
+	private suspend fun recordAudio(
+		ring: PcmRingBuffer,
+		captureThread: AudioCaptureThread,
+		copyMeter: CopyRateMeter,
+		sessionId: Deferred<Long?>,
+		micRing: PcmRingBuffer? = null,
+		micThread: AudioCaptureThread? = null
+	) = withContext(Dispatchers.IO) {
+		val resampler = PcmResampler(
+			inputRate = CaptureFormat.CAPTURE_SAMPLE_RATE,
+			inputChannels = CaptureFormat.CAPTURE_CHANNELS,
+			outputRate = CaptureFormat.OUTPUT_SAMPLE_RATE
+		)
+		val monoSamples = ShortArray(resampler.maxOutputSamples(WRITER_BLOCK_BYTES))
+		
+		// Dual-source mode: the microphone is resampled separately and mixed sample for sample
+		val mixer = if (micRing != null && micThread != null) {
+			DualSourceMixer(
+				CaptureFormat.OUTPUT_SAMPLE_RATE,
+				separateChannels = TranscriptionSettingsStore.isSeparateSourceChannelsEnabled(this@AudioCaptureService)
+			)
+		} else {
+			null
+		}
+		val micResampler = mixer?.let {
+			PcmResampler(
+				inputRate = CaptureFormat.CAPTURE_SAMPLE_RATE,
+				inputChannels = CaptureFormat.CAPTURE_CHANNELS,
+				outputRate = CaptureFormat.OUTPUT_SAMPLE_RATE
+			)
+		}
+		val micSamples = ShortArray(if (mixer != null) monoSamples.size else 0)
+		val mixedSamples = ShortArray(if (mixer != null) monoSamples.size * mixer.outputChannels else 0)
+		
+		// Chunks carry one channel, or two when the sources are kept apart; rates below are interleaved samples
+		val outputChannels = mixer?.outputChannels ?: CaptureFormat.OUTPUT_CHANNELS
+		val outputRate = CaptureFormat.OUTPUT_SAMPLE_RATE * outputChannels
+		val outputBytesPerSecond = outputRate * CaptureFormat.BYTES_PER_SAMPLE
 		
-		val bufferSize = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT)
-		val audioBuffer = ByteArray(bufferSize)
-		val bytesPerSecond = SAMPLE_RATE * 2 * 2 // sampleRate * channels(2) * bytesPerSample(2)
-		val maxChunkBytes = bytesPerSecond * CHUNK_SECONDS
+		// WAV chunks are kept in memory and streamed to the API; the speed-up needs them on disk
+		val encoding = TranscriptionSettingsStore.getChunkEncoding(this@AudioCaptureService)
+		val sink = if (encoding == ChunkEncoding.WAV && TranscriptionSettingsStore.getSpeedFactor(this@AudioCaptureService) <= 1.0f) {
+			SpooledWavChunkWriter(CaptureFormat.OUTPUT_SAMPLE_RATE, outputChannels, chunkBufferPool)
+		} else {
+			ChunkSink.create(encoding, CaptureFormat.OUTPUT_SAMPLE_RATE, outputChannels)
+		}
+		// Identifies each chunk's audio for the transcript cache, hashed as it is written
+		val chunkDigest = ChunkDigest(CaptureFormat.OUTPUT_SAMPLE_RATE, outputChannels)
+		val vad = VoiceActivityDetector(CaptureFormat.OUTPUT_SAMPLE_RATE)
+		// Multichannel output is folded to mono for the VAD, whose zero-crossing test needs a single channel
+		val vadScratch = ShortArray(if (outputChannels > 1) VAD_DOWNMIX_SAMPLES else 0)
+		val skipSilence = TranscriptionSettingsStore.isSkipSilenceEnabled(this@AudioCaptureService)
+		
+		fun downmixToVad(samples: ShortArray, offset: Int, count: Int) {
+			var pos = offset
+			val end = offset + count
+			while (pos < end) {
+				val frames = minOf((end - pos) / outputChannels, vadScratch.size)
+				if (frames == 0) break
+				for (i in 0 until frames) {
+					val p = pos + i * outputChannels
+					var sum = 0
+					for (c in 0 until outputChannels) {
+						sum += samples[p + c]
+					}
+					vadScratch[i] = (sum / outputChannels).toShort()
+				}
+				vad.process(vadScratch, 0, frames)
+				pos += frames * outputChannels
+			}
+		}
 		
 		var currentFile: File? = null
-		var fos: FileOutputStream? = null
-		var chunkBytesWritten = 0
-		var chunkStartMillis: Long = 0L
+		var chunkBytesWritten = 0 // PCM bytes fed to the sink, independent of the encoded size
 		
-		fun openNewChunk() {
+		// Low-latency mode: each chunk is uploaded while it is being recorded
+		val streamWhileRecording = TranscriptionSettingsStore.isStreamWhileRecordingEnabled(this@AudioCaptureService)
+		var liveUpload: LiveChunkUpload? = null
+		
+		// Optional overlap: the tail of each chunk is replayed into the next one
+		val overlapTail = if (TranscriptionSettingsStore.isChunkOverlapEnabled(this@AudioCaptureService)) {
+			PcmTail(outputRate * CHUNK_OVERLAP_MS / 1000)
+		} else {
+			null
+		}
+		val overlapScratch = ShortArray(overlapTail?.capacity ?: 0)
+		var chunkOverlapBytes = 0
+		var previousChunkTranscribed = false
+		
+		// Pauses handled so far, and paused time not yet attributed to a transcribed chunk
+		var handledPauses = 0
+		var awaitingResume = false
+		var pauseBeforeMs = 0L
+		
+		fun openNewChunk(window: ChunkWindow) {
 			try {
-				// Always create a fresh file per chunk
-				createOutputFile()
+				// Always create a fresh file per chunk, preallocated for the longest chunk the window allows
+				createOutputFile(sink.encoding.extension)
 				currentFile = this@AudioCaptureService.outputFile
-				fos = FileOutputStream(currentFile!!)
-				writeWavHeader(fos!!, 0)
+				val expectedBytes = window.maxSeconds.toLong() * outputBytesPerSecond +
+					overlapScratch.size * CaptureFormat.BYTES_PER_SAMPLE
+				sink.open(currentFile!!, expectedBytes)
+				chunkDigest.reset()
+				if (streamWhileRecording) {
+					liveUpload = openLiveUpload(currentFile!!, outputChannels, outputBytesPerSecond)
+				}
 				chunkBytesWritten = 0
-				chunkStartMillis = System.currentTimeMillis()
+				chunkOverlapBytes = 0
+				vad.resetCounts()
 				Log.d(TAG, "Opened new chunk: ${currentFile?.name}")
 			} catch (e: Exception) {
 				Log.e(TAG, "Failed to open new chunk", e)
@@ -362,66 +750,269 @@ class AudioCaptureService : LifecycleService() {
 			}
 		}
 		
+		fun replayOverlap() {
+			val tail = overlapTail ?: return
+			val samples = tail.copyTo(overlapScratch)
+			if (samples == 0) return
+			// Not fed to the VAD: repeated audio must not keep an otherwise silent chunk alive
+			sink.write(overlapScratch, 0, samples)
+			chunkDigest.update(overlapScratch, 0, samples)
+			liveUpload?.write(overlapScratch, 0, samples)
+			copyMeter.add(samples * CaptureFormat.BYTES_PER_SAMPLE)
+			chunkBytesWritten += samples * CaptureFormat.BYTES_PER_SAMPLE
+			chunkOverlapBytes = samples * CaptureFormat.BYTES_PER_SAMPLE
+		}
+		
 		fun closeAndProcessCurrentChunk() {
+			val live = liveUpload
+			liveUpload = null
 			try {
-				fos?.close()
 				val file = currentFile
+				currentFile = null
 				if (file != null) {
-					if (chunkBytesWritten > 0) {
-						updateWavHeader(file, chunkBytesWritten)
-						Log.i(TAG, "Chunk saved: ${file.absolutePath}, size: $chunkBytesWritten bytes")
-						startTranscription(file)
+					val fileSize = sink.finish()
+					val spooled = (sink as? SpooledWavChunkWriter)?.takeSpooled()
+					val audioHash = chunkDigest.finish()
+					captureThread.metrics.addBytesWritten(fileSize)
+					val durationMs = chunkBytesWritten * 1000L / outputBytesPerSecond
+					val overlapMs = chunkOverlapBytes * 1000L / outputBytesPerSecond
+					val newAudioBytes = chunkBytesWritten - chunkOverlapBytes
+					val speechRatio = vad.speechRatio()
+					val transcribe = newAudioBytes > 0 && !(skipSilence && speechRatio < MIN_SPEECH_RATIO)
+					if (newAudioBytes > 0 && !transcribe) {
+						// Nothing worth transcribing: don't upload, don't bill, don't store a hallucination
+						live?.cancel()
+						spooled?.release()
+						file.delete()
+						Log.i(TAG, "Skipped silent chunk ${file.name} (speech ratio ${"%.3f".format(speechRatio)})")
+						recordSkippedChunk(durationMs - overlapMs)
+					} else if (transcribe) {
+						Log.i(TAG, "Chunk ${if (spooled != null) "spooled" else "saved"}: ${file.absolutePath}, size: $fileSize bytes ($chunkBytesWritten PCM bytes, speech ${"%.2f".format(speechRatio)})")
+						// Overlap text can only be merged against a chunk that was actually transcribed
+						val chunkOverlapMs = if (previousChunkTranscribed) overlapMs else 0L
+						if (live != null && !live.isAbandoned) {
+							finishLiveTranscription(live, file, spooled, durationMs, chunkOverlapMs, pauseBeforeMs, audioHash)
+						} else if (spooled != null) {
+							live?.cancel()
+							startStreamingTranscription(spooled, durationMs, chunkOverlapMs, pauseBeforeMs, audioHash = audioHash)
+						} else {
+							live?.cancel()
+							startTranscription(file, durationMs, chunkOverlapMs, pauseBeforeMs, audioHash = audioHash)
+						}
+						pauseBeforeMs = 0L
 					} else {
 						// Empty chunk (e.g., stopped immediately). Clean up the placeholder file.
+						live?.cancel()
+						spooled?.release()
 						if (file.exists()) file.delete()
 						Log.d(TAG, "Deleted empty chunk: ${file.absolutePath}")
 					}
+					previousChunkTranscribed = transcribe
+				} else {
+					live?.cancel()
 				}
 			} catch (e: Exception) {
 				Log.e(TAG, "Error closing/processing chunk", e)
 			}
 		}
 		
+		// Boundaries are placed at pauses; the planner hands back exactly what goes into each chunk
+		val sizing = ChunkSizingPolicy(
+			TranscriptionSettingsStore.getChunkWindowPreset(this@AudioCaptureService),
+			sink.encoding.bytesPerSecond(outputChannels),
+			uplinkKbps = this@AudioCaptureService::currentUplinkKbps
+		)
+		val planner = ChunkBoundaryPlanner(outputRate, sizing, object : ChunkBoundaryPlanner.Listener {
+			override fun onSamples(samples: ShortArray, offset: Int, count: Int) {
+				if (outputChannels == 1) {
+					vad.process(samples, offset, count)
+				} else {
+					downmixToVad(samples, offset, count)
+				}
+				sink.write(samples, offset, count)
+				chunkDigest.update(samples, offset, count)
+				liveUpload?.write(samples, offset, count)
+				copyMeter.add(count * CaptureFormat.BYTES_PER_SAMPLE)
+				overlapTail?.append(samples, offset, count)
+				chunkBytesWritten += count * CaptureFormat.BYTES_PER_SAMPLE
+			}
+			
+			override fun onBoundary(next: ChunkWindow) {
+				// Rotate file; the capture thread keeps filling the ring meanwhile
+				val rotationStart = SystemClock.elapsedRealtimeNanos()
+				closeAndProcessCurrentChunk()
+				openNewChunk(next)
+				replayOverlap()
+				captureThread.metrics.recordRotation(SystemClock.elapsedRealtimeNanos() - rotationStart)
+			}
+		})
+		
+		// Ring regions are resampled in place; the consumer is created once, not per block
+		var monoCount = 0
+		val ringConsumer = PcmRingBuffer.PcmConsumer { buffer, offset, length ->
+			monoCount += resampler.process(buffer, offset, length, monoSamples, monoCount)
+		}
+		var micCount = 0
+		val micConsumer = PcmRingBuffer.PcmConsumer { buffer, offset, length ->
+			micCount += micResampler!!.process(buffer, offset, length, micSamples, micCount)
+		}
+		var lastCopyReportMs = System.currentTimeMillis()
+		
+		// Which capture threads may still announce blocks
+		var systemOpen = true
+		var micOpen = micThread != null
+		var sourcesAligned = mixer == null
+		
+		fun offerMixed(drainAll: Boolean) {
+			val m = mixer ?: return
+			while (true) {
+				val n = if (drainAll) m.drain(mixedSamples) else m.read(mixedSamples)
+				if (n == 0) return
+				planner.offer(mixedSamples, 0, n)
+			}
+		}
+		
+		/**
+		 * Suspend until a capture thread announces audio
+		 * @return true once every source has ended and its ring is empty
+		 */
+		suspend fun awaitBlocks(): Boolean {
+			val micChannel = micThread?.blocksAvailable
+			when {
+				systemOpen && micOpen && micChannel != null -> select<Unit> {
+					captureThread.blocksAvailable.onReceiveCatching { if (it.isClosed) systemOpen = false }
+					micChannel.onReceiveCatching { if (it.isClosed) micOpen = false }
+				}
+				systemOpen -> if (captureThread.blocksAvailable.receiveCatching().isClosed) systemOpen = false
+				micOpen && micChannel != null -> if (micChannel.receiveCatching().isClosed) micOpen = false
+			}
+			return !systemOpen && !micOpen && ring.available() == 0 && (micRing?.available() ?: 0) == 0
+		}
+		
 		try {
+			// Capture is already filling the ring; chunks are tagged once the session row exists
+			currentSessionId = withTimeoutOrNull(SESSION_START_TIMEOUT_MS) { sessionId.await() }
+			chunkCounter = 0
+			if (currentSessionId == null) {
+				Log.w(TAG, "Session creation timeout, proceeding without session")
+			}
+			var firstSampleRecorded = false
+			
 			// Initialize first chunk
 			if (this@AudioCaptureService.outputFile == null) {
 				createOutputFile()
 			}
-			openNewChunk()
+			openNewChunk(planner.currentWindow)
 			
-			while (isRecording) {
-				val bytesRead = audioRecord.read(audioBuffer, 0, audioBuffer.size)
-				if (bytesRead > 0) {
-					fos?.write(audioBuffer, 0, bytesRead)
-					chunkBytesWritten += bytesRead
-					val elapsedMs = System.currentTimeMillis() - chunkStartMillis
-					if (chunkBytesWritten >= maxChunkBytes || elapsedMs >= CHUNK_SECONDS * 1000) {
-						// Rotate file
-						closeAndProcessCurrentChunk()
-						openNewChunk()
+			while (true) {
+				// Read before draining: a new pause count guarantees the pre-pause audio is visible
+				val pauses = captureThread.pauseCount
+				monoCount = 0
+				val bytesRead = ring.drain(ringConsumer, WRITER_BLOCK_BYTES)
+				var micBytesRead = 0
+				if (mixer != null && micRing != null) {
+					micCount = 0
+					micBytesRead = micRing.drain(micConsumer, WRITER_BLOCK_BYTES)
+					if (bytesRead > 0) mixer.write(DualSourceMixer.SYSTEM, monoSamples, 0, monoCount)
+					if (micBytesRead > 0) mixer.write(DualSourceMixer.MIC, micSamples, 0, micCount)
+				}
+				if (bytesRead == 0 && micBytesRead == 0) {
+					if (pauses != handledPauses) {
+						// Everything before the pause is written: end the chunk there. Audio after
+						// the pause does not continue it, so nothing is replayed as overlap either.
+						handledPauses = pauses
+						awaitingResume = true
+						offerMixed(drainAll = true)
+						mixer?.clear()
+						overlapTail?.clear()
+						planner.cutNow()
+						continue
 					}
-				} else if (bytesRead == AudioRecord.ERROR_INVALID_OPERATION) {
-					Log.e(TAG, "AudioRecord read error: ERROR_INVALID_OPERATION")
-					break
-				} else if (bytesRead == AudioRecord.ERROR_BAD_VALUE) {
-					Log.e(TAG, "AudioRecord read error: ERROR_BAD_VALUE")
-					break
+					// Suspend until the next block; once capture has ended, finish what is left
+					if (awaitBlocks()) break
+					continue
+				}
+				if (awaitingResume) {
+					awaitingResume = false
+					pauseBeforeMs += captureThread.lastPauseDurationMs
+				}
+				if (mixer == null) {
+					planner.offer(monoSamples, 0, monoCount)
+				} else {
+					if (!sourcesAligned && micThread != null) {
+						// Line the sources up by when each delivered its first audio
+						val systemStart = captureThread.firstSampleAtMs
+						val micStart = micThread.firstSampleAtMs
+						if (systemStart >= 0 && micStart >= 0) {
+							sourcesAligned = true
+							val leadSamples = ((micStart - systemStart) * CaptureFormat.OUTPUT_SAMPLE_RATE / 1000).toInt()
+							if (leadSamples > 0) mixer.skipLeading(DualSourceMixer.SYSTEM, leadSamples)
+							if (leadSamples < 0) mixer.skipLeading(DualSourceMixer.MIC, -leadSamples)
+						}
+					}
+					offerMixed(drainAll = false)
+				}
+				
+				if (!firstSampleRecorded && timeToFirstSampleMs >= 0) {
+					firstSampleRecorded = true
+					recordTimeToFirstSample(timeToFirstSampleMs)
+				}
+				
+				val now = System.currentTimeMillis()
+				if (now - lastCopyReportMs >= COPY_REPORT_INTERVAL_MS) {
+					lastCopyReportMs = now
+					val sources = if (mixer != null) 2 else 1
+					val expected = CaptureFormat.CAPTURE_BYTES_PER_SECOND * sources + outputBytesPerSecond
+					Log.i(TAG, "Hot path copied ${copyMeter.sample()} B/s (expected ~$expected B/s)")
+					saveCaptureMetrics(captureThread.metrics, ring)
 				}
 			}
 			
-			// Finalize any remaining bytes in the last chunk
+			// Finalize any remaining bytes (including held-back lookahead) in the last chunk
+			offerMixed(drainAll = true)
+			planner.flush()
 			closeAndProcessCurrentChunk()
-		} catch (e: IOException) {
+		} catch (e: Exception) {
+			// IOException from the WAV writer, CodecException/IllegalStateException from MediaCodec
 			Log.e(TAG, "Error writing audio data", e)
 		} finally {
-			try { fos?.close() } catch (_: Exception) {}
+			// A chunk cut short by an error is not streamed to the end
+			liveUpload?.cancel()
+			try { sink.release() } catch (_: Exception) {}
+			Log.i(TAG, "Capture buffer: ${ring.stats()}, ${copyMeter.total()} bytes copied in total")
+			Log.i(TAG, captureThread.jitter.snapshot().toString())
+			saveCaptureMetrics(captureThread.metrics, ring)
+			if (mixer != null && micRing != null && micThread != null) {
+				Log.i(TAG, "Microphone: ${micRing.stats()}, ${micThread.metrics.snapshot(micRing.stats().overrunBytes, SystemClock.elapsedRealtimeNanos())}")
+				Log.i(TAG, "Mixer dropped ${mixer.droppedSamples} samples for alignment/drift, padded ${mixer.paddedSamples} for stalls")
+			}
+			if (activeRing === ring) activeRing = null
+			if (activeCopyMeter === copyMeter) activeCopyMeter = null
+			if (activeJitter === captureThread.jitter) activeJitter = null
+			if (activeCaptureThread === captureThread) activeCaptureThread = null
 		}
 	}
     
-    private fun createOutputFile() {
+    /**
+     * Uplink bandwidth: the throughput measured on recent uploads, otherwise the active
+     * network's estimate, or null if neither is known
+     */
+    private fun currentUplinkKbps(): Int? {
+        UploadProgressTracker.throughputKbps()?.let { return it }
+        return try {
+            val connectivityManager = getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+            val network = connectivityManager.activeNetwork ?: return null
+            connectivityManager.getNetworkCapabilities(network)?.linkUpstreamBandwidthKbps
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not read network capabilities: ${e.message}")
+            null
+        }
+    }
+    
+    private fun createOutputFile(extension: String = ChunkEncoding.WAV.extension) {
         try {
             val timestamp = System.currentTimeMillis()
-            val fileName = "audioscribe_$timestamp.wav"
+            val fileName = "audioscribe_$timestamp.$extension"
             val outputDir = getExternalFilesDir(null) ?: filesDir
             
             // Ensure directory exists
@@ -447,112 +1038,13 @@ class AudioCaptureService : LifecycleService() {
         }
     }
     
-    private fun writeWavHeader(fos: FileOutputStream, dataSize: Int) {
-        val header = ByteArray(44)
-        val totalSize = dataSize + 36
-        val byteRate = SAMPLE_RATE * 2 * 2 // SampleRate * NumChannels * BitsPerSample/8
-        
-        // RIFF header
-        header[0] = 'R'.code.toByte()
-        header[1] = 'I'.code.toByte()
-        header[2] = 'F'.code.toByte()
-        header[3] = 'F'.code.toByte()
-        
-        // File size
-        header[4] = (totalSize and 0xff).toByte()
-        header[5] = ((totalSize shr 8) and 0xff).toByte()
-        header[6] = ((totalSize shr 16) and 0xff).toByte()
-        header[7] = ((totalSize shr 24) and 0xff).toByte()
-        
-        // WAVE header
-        header[8] = 'W'.code.toByte()
-        header[9] = 'A'.code.toByte()
-        header[10] = 'V'.code.toByte()
-        header[11] = 'E'.code.toByte()
-        
-        // fmt subchunk
-        header[12] = 'f'.code.toByte()
-        header[13] = 'm'.code.toByte()
-        header[14] = 't'.code.toByte()
-        header[15] = ' '.code.toByte()
-        
-        // Subchunk1Size (16 for PCM)
-        header[16] = 16
-        header[17] = 0
-        header[18] = 0
-        header[19] = 0
-        
-        // AudioFormat (1 for PCM)
-        header[20] = 1
-        header[21] = 0
-        
-        // NumChannels (2 for stereo)
-        header[22] = 2
-        header[23] = 0
-        
-        // SampleRate
-        header[24] = (SAMPLE_RATE and 0xff).toByte()
-        header[25] = ((SAMPLE_RATE shr 8) and 0xff).toByte()
-        header[26] = ((SAMPLE_RATE shr 16) and 0xff).toByte()
-        header[27] = ((SAMPLE_RATE shr 24) and 0xff).toByte()
-        
-        // ByteRate
-        header[28] = (byteRate and 0xff).toByte()
-        header[29] = ((byteRate shr 8) and 0xff).toByte()
-        header[30] = ((byteRate shr 16) and 0xff).toByte()
-        header[31] = ((byteRate shr 24) and 0xff).toByte()
-        
-        // BlockAlign
-        header[32] = 4 // NumChannels * BitsPerSample/8
-        header[33] = 0
-        
-        // BitsPerSample
-        header[34] = 16
-        header[35] = 0
-        
-        // data subchunk
-        header[36] = 'd'.code.toByte()
-        header[37] = 'a'.code.toByte()
-        header[38] = 't'.code.toByte()
-        header[39] = 'a'.code.toByte()
-        
-        // Subchunk2Size (data size)
-        header[40] = (dataSize and 0xff).toByte()
-        header[41] = ((dataSize shr 8) and 0xff).toByte()
-        header[42] = ((dataSize shr 16) and 0xff).toByte()
-        header[43] = ((dataSize shr 24) and 0xff).toByte()
-        
-        fos.write(header)
-    }
-    
-    private fun updateWavHeader(file: File, dataSize: Int) {
-        try {
-            val raf = java.io.RandomAccessFile(file, "rw")
-            val totalSize = dataSize + 36
-            
-            // Update file size at offset 4
-            raf.seek(4)
-            raf.write(totalSize and 0xff)
-            raf.write((totalSize shr 8) and 0xff)
-            raf.write((totalSize shr 16) and 0xff)
-            raf.write((totalSize shr 24) and 0xff)
-            
-            // Update data size at offset 40
-            raf.seek(40)
-            raf.write(dataSize and 0xff)
-            raf.write((dataSize shr 8) and 0xff)
-            raf.write((dataSize shr 16) and 0xff)
-            raf.write((dataSize shr 24) and 0xff)
-            
-            raf.close()
-        } catch (e: IOException) {
-            Log.e(TAG, "Error updating WAV header", e)
-        }
-    }
-    
     override fun onBind(intent: Intent): IBinder? = null
     
-    private fun startMicrophoneRecording() {
+    /**
+     * Build an AudioRecord on the microphone, used when playback capture is unavailable
+     * @return The initialized record, or null if the microphone cannot be opened either
+     */
+    private fun createMicrophoneRecord(): AudioRecord? {
         try {
             Log.i(TAG, "Starting microphone recording as fallback")
             
@@ -564,7 +1056,7 @@ class AudioCaptureService : LifecycleService() {
             if (bufferSize == AudioRecord.ERROR || bufferSize == AudioRecord.ERROR_BAD_VALUE) {
                 Log.e(TAG, "Invalid buffer size for microphone: $bufferSize")
                 showErrorToast("Failed to initialize microphone recording")
-                return
+                return null
             }
             
             // Create AudioRecord for microphone
@@ -574,87 +1066,70 @@ class AudioCaptureService : LifecycleService() {
                 .setChannelMask(CHANNEL_CONFIG)
                 .build()
             
-            audioRecord = AudioRecord.Builder()
+            val record = AudioRecord.Builder()
                 .setAudioSource(MediaRecorder.AudioSource.MIC)
                 .setAudioFormat(audioFormat)
                 .setBufferSizeInBytes(bufferSize * 2)
                 .build()
             
-            val recordState = audioRecord?.state
+            val recordState = record.state
             Log.d(TAG, "Microphone AudioRecord state: $recordState")
             
             if (recordState != AudioRecord.STATE_INITIALIZED) {
                 Log.e(TAG, "Microphone AudioRecord initialization failed. State: $recordState")
                 showErrorToast("Failed to initialize microphone")
-                return
-            }
-            
-            // Update notification to show microphone recording
-            val intent = Intent(this, MainActivity::class.java)
-            val pendingIntent = PendingIntent.getActivity(
-                this, 0, intent, 
-                PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
-            )
-            
-            val notification = NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle("Audio Capture")
-                .setContentText("Recording from microphone...")
-                .setSmallIcon(R.drawable.ic_notification)
-                .setOngoing(true)
-                .setContentIntent(pendingIntent)
-                .build()
-            
-            val notificationManager = getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
-            notificationManager.notify(NOTIFICATION_ID, notification)
-            
-			// Create session in database
-			sessionStartTime = Date()
-			// Create session asynchronously but ensure it's ready before recording
-			serviceScope.launch {
-				try {
-					val session = TranscriptionSession(
-						startTime = sessionStartTime!!,
-						endTime = null,
-						title = "Session ${System.currentTimeMillis()}",
-						status = SessionStatus.IN_PROGRESS
-					)
-					currentSessionId = sessionRepository.startNewSession(session)
-					chunkCounter = 0
-					Log.d(TAG, "Created microphone session in database with ID: $currentSessionId")
-					Log.d(TAG, "Microphone session creation completed, chunkCounter initialized to: $chunkCounter")
-				} catch (e: Exception) {
-					Log.e(TAG, "Failed to create microphone session in database", e)
-				}
-			}
-			
-			// Wait for session creation to complete (simple polling)
-			var attempts = 0
-			while (currentSessionId == null && attempts < 50) { // Wait up to 5 seconds
-				Thread.sleep(100)
-				attempts++
-			}
-			if (currentSessionId == null) {
-				Log.w(TAG, "Microphone session creation timeout, proceeding without session")
-			}
-            
-            // Start recording
-            audioRecord?.startRecording()
-            isRecording = true
-            
-            // Start recording coroutine
-            recordingJob = serviceScope.launch {
-                recordAudio()
+                record.release()
+                return null
             }
-            
-            Log.i(TAG, "Microphone recording started successfully")
-            showErrorToast("Using microphone instead of system audio")
+            return record
             
         } catch (e: Exception) {
             Log.e(TAG, "Failed to start microphone recording", e)
             showErrorToast("Recording failed: ${e.message}")
+            return null
         }
     }
-
+    
+    /**
+     * Show the ongoing recording notification for the active source
+     */
+    private fun showRecordingNotification() {
+        val intent = Intent(this, MainActivity::class.java)
+        val pendingIntent = PendingIntent.getActivity(
+            this, 0, intent, 
+            PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+        )
+        
+        val paused = captureThread?.isPaused == true
+        val toggleIntent = Intent(this, AudioCaptureService::class.java).apply {
+            action = if (paused) ACTION_RESUME_CAPTURE else ACTION_PAUSE_CAPTURE
+        }
+        val togglePendingIntent = PendingIntent.getService(
+            this, 2, toggleIntent,
+            PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+        )
+        
+        val contentText = when {
+            paused -> "Paused"
+            isMicrophoneMode -> "Recording from microphone..."
+            micCaptureThread != null -> "Recording system audio and microphone..."
+            else -> "Recording system audio..."
+        }
+        // Recording continues during an outage; chunks wait in the queue
+        val apiUnavailable = TranscriptionCircuitBreaker.status.value.state != TranscriptionCircuitBreaker.State.CLOSED
+        val notification = NotificationCompat.Builder(this, CHANNEL_ID)
+            .setContentTitle("Audio Capture")
+            .setContentText(contentText)
+            .setSubText(if (apiUnavailable) "Transcription API unavailable, chunks queued" else uploadProgressText())
+            .setSmallIcon(R.drawable.ic_notification)
+            .setOngoing(true)
+            .setContentIntent(pendingIntent)
+            .addAction(R.drawable.ic_notification, if (paused) "Resume" else "Pause", togglePendingIntent)
+            .build()
+        
+        val notificationManager = getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+        notificationManager.notify(NOTIFICATION_ID, notification)
+    }
     private fun showErrorToast(message: String) {
         // Post to main thread to show toast
         Handler(Looper.getMainLooper()).post {
@@ -665,6 +1140,10 @@ class AudioCaptureService : LifecycleService() {
     override fun onDestroy() {
         super.onDestroy()
         stopAudioCapture()
+        circuitWatch?.cancel()
+        uploadProgressWatch?.cancel()
+        // Chunks still in memory would die with the process; WorkManager outlives it
+        if (uploadStageDelegate.isInitialized()) uploadStage.shutdown()
         Log.d(TAG, "AudioCaptureService destroyed")
     }
     
@@ -720,103 +1199,339 @@ class AudioCaptureService : LifecycleService() {
     }
     
     /**
-     * Start transcription process for the recorded audio file using WorkManager
+     * Upload an in-memory chunk straight from its buffer. The chunk is spilled to disk and goes
+     * through WorkManager instead when there is no validated network or the upload queue is full.
+     */
+    private fun startStreamingTranscription(
+        chunk: SpooledChunk,
+        durationMs: Long,
+        overlapMs: Long,
+        pauseBeforeMs: Long,
+        chunkOrder: Int? = null,
+        audioHash: String? = null
+    ) {
+        val upload = SpooledUpload(chunk, chunkOrder ?: nextChunkOrder(), durationMs, overlapMs, pauseBeforeMs, audioHash)
+        if (ApiKeyStore.getApiKey(this).isBlank()) {
+            chunk.release()
+            skipChunk(upload.chunkOrder)
+            sendTranscriptionBroadcast(error = "OpenAI API key not configured. Set it in Settings.")
+            return
+        }
+        if (hasValidatedNetwork()) {
+            // Counted before the hand-over so the service cannot stop while the chunk is queued
+            inFlightTranscriptions.incrementAndGet()
+            updateNotificationForTranscription(isProcessing = true)
+            if (uploadStage.offer(upload)) {
+                Log.d(TAG, "Streaming chunk ${upload.chunkOrder} (${chunk.sizeBytes} bytes) from memory")
+                return
+            }
+            transcriptionSettled()
+            Log.i(TAG, "Upload queue full, spilling chunk ${upload.chunkOrder} to disk")
+        }
+        val file = chunk.spill()
+        if (file != null) {
+            startTranscription(file, durationMs, overlapMs, pauseBeforeMs, upload.chunkOrder, audioHash)
+        } else {
+            skipChunk(upload.chunkOrder)
+            sendTranscriptionBroadcast(error = "Failed to save audio chunk")
+        }
+    }
+    
+    /**
+     * Assign the next chunk its position and reserve that position in the ordered commit
+     */
+    private fun nextChunkOrder(): Int {
+        val order = chunkCounter++
+        transcriptCommitter.expect(currentSessionId, order)
+        return order
+    }
+    
+    /**
+     * Chunk [order] will not be transcribed; later transcripts need not wait for it
+     */
+    private fun skipChunk(order: Int) {
+        val sessionId = currentSessionId
+        serviceScope.launch { transcriptCommitter.skip(sessionId, order) }
+    }
+    
+    private suspend fun transcribeSpooledChunk(upload: SpooledUpload): Result<String> {
+        val hash = upload.audioHash
+        hash?.let { transcriptCache.lookup(it, null) }?.let { return Result.success(it) }
+        val apiKey = ApiKeyStore.getApiKey(this)
+        return transcriptionRepository.transcribeAudio(upload.chunk.data(), upload.chunk.file.name, apiKey).onSuccess { text ->
+            if (hash != null) transcriptCache.store(hash, null, text)
+        }
+    }
+    
+    private val spooledUploadListener = object : ChunkUploadStage.Listener {
+        override suspend fun onTranscribed(upload: SpooledUpload, text: String) {
+            Log.i(TAG, "Streamed chunk ${upload.chunkOrder} transcribed")
+            onTranscribedInService(
+                TranscriptChunk(
+                    sessionId = 0L,
+                    chunkIndex = upload.chunkOrder,
+                    text = text,
+                    overlapMs = upload.overlapMs,
+                    pauseBeforeMs = upload.pauseBeforeMs,
+                    durationMs = upload.durationMs,
+                    audioFileSizeBytes = upload.chunk.sizeBytes,
+                    originalFileName = upload.chunk.file.name,
+                    status = ChunkStatus.COMPLETED,
+                    transcriptionCompletedAt = Date()
+                )
+            )
+        }
+        
+        override suspend fun onHandOff(upload: SpooledUpload, file: File) {
+            withContext(Dispatchers.Main) {
+                // Enqueued first, so the in-flight count never drops to zero in between
+                startTranscription(file, upload.durationMs, upload.overlapMs, upload.pauseBeforeMs, upload.chunkOrder, upload.audioHash)
+                transcriptionSettled()
+                maybeStopService()
+            }
+        }
+        
+        override suspend fun onLost(upload: SpooledUpload) {
+            transcriptCommitter.skip(currentSessionId, upload.chunkOrder)
+            sendTranscriptionBroadcast(error = "Failed to save audio chunk")
+            withContext(Dispatchers.Main) {
+                transcriptionSettled()
+                updateNotificationForTranscription(isProcessing = false, hasResult = false)
+                maybeStopService()
+            }
+        }
+    }
+    
+    /**
+     * Commit a chunk transcribed by the service itself rather than by TranscriptionWorker, and
+     * report it the way the worker would
+     * @param chunk Row to insert; its session id is filled in here
      */
-    private fun startTranscription(audioFile: File) {
+    private suspend fun onTranscribedInService(chunk: TranscriptChunk) {
+        currentSessionId?.let { sessionId ->
+            transcriptCommitter.commit(chunk.copy(sessionId = sessionId))
+        }
+        sendTranscriptionBroadcast(text = chunk.text)
+        withContext(Dispatchers.Main) {
+            transcriptionSettled()
+            updateNotificationForTranscription(isProcessing = false, hasResult = true)
+            maybeStopService()
+        }
+    }
+    
+    /**
+     * Open the request that streams [file]'s chunk while it is recorded
+     * @return null if there is no validated network or API key; the chunk is then uploaded when it ends
+     */
+    private fun openLiveUpload(file: File, channels: Int, bytesPerSecond: Int): LiveChunkUpload? {
+        val apiKey = ApiKeyStore.getApiKey(this)
+        if (apiKey.isBlank() || !hasValidatedNetwork()) return null
+        return LiveChunkUpload(
+            scope = serviceScope,
+            fileName = file.nameWithoutExtension + "." + ChunkEncoding.WAV.extension,
+            sampleRate = CaptureFormat.OUTPUT_SAMPLE_RATE,
+            channels = channels,
+            maxBufferedBytes = LIVE_UPLOAD_MAX_LAG_SECONDS.toLong() * bytesPerSecond
+        ) { body, name -> transcriptionRepository.transcribeAudio(body, name, apiKey) }
+    }
+    
+    /**
+     * Close a chunk's live upload and wait for its text off the writer. If the stream failed,
+     * the finished chunk is transcribed the regular way under the same chunk order. The stream
+     * starts before the chunk's hash is known, so it cannot be answered from the cache; its
+     * result is cached for any later upload of the same audio.
+     */
+    private fun finishLiveTranscription(
+        live: LiveChunkUpload,
+        file: File,
+        spooled: SpooledChunk?,
+        durationMs: Long,
+        overlapMs: Long,
+        pauseBeforeMs: Long,
+        audioHash: String
+    ) {
+        val chunkOrder = nextChunkOrder()
+        inFlightTranscriptions.incrementAndGet()
+        updateNotificationForTranscription(isProcessing = true)
+        serviceScope.launch {
+            live.finish().onSuccess { text ->
+                Log.i(TAG, "Live chunk $chunkOrder transcribed")
+                transcriptCache.store(audioHash, null, text)
+                val sizeBytes = spooled?.sizeBytes ?: file.length()
+                spooled?.release()
+                file.delete()
+                onTranscribedInService(
+                    TranscriptChunk(
+                        sessionId = 0L,
+                        chunkIndex = chunkOrder,
+                        text = text,
+                        overlapMs = overlapMs,
+                        pauseBeforeMs = pauseBeforeMs,
+                        durationMs = durationMs,
+                        audioFileSizeBytes = sizeBytes,
+                        originalFileName = file.name,
+                        status = ChunkStatus.COMPLETED,
+                        transcriptionCompletedAt = Date()
+                    )
+                )
+            }.onFailure { error ->
+                Log.w(TAG, "Live upload of chunk $chunkOrder failed, uploading it again: ${error.message}")
+                withContext(Dispatchers.Main) {
+                    if (spooled != null) {
+                        startStreamingTranscription(spooled, durationMs, overlapMs, pauseBeforeMs, chunkOrder, audioHash)
+                    } else {
+                        startTranscription(file, durationMs, overlapMs, pauseBeforeMs, chunkOrder, audioHash)
+                    }
+                    transcriptionSettled()
+                    maybeStopService()
+                }
+            }
+        }
+    }
+    
+    private fun hasValidatedNetwork(): Boolean {
+        return try {
+            val connectivityManager = getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+            val network = connectivityManager.activeNetwork ?: return false
+            val capabilities = connectivityManager.getNetworkCapabilities(network) ?: return false
+            capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not read network capabilities: ${e.message}")
+            false
+        }
+    }
+    
+    /**
+     * Queue the recorded audio file for transcription by the long-running TranscriptionWorker
+     */
+    private fun startTranscription(
+        audioFile: File,
+        durationMs: Long,
+        overlapMs: Long = 0L,
+        pauseBeforeMs: Long = 0L,
+        chunkOrder: Int? = null,
+        audioHash: String? = null
+    ) {
+        val order = chunkOrder ?: nextChunkOrder()
         try {
-            Log.d(TAG, "Enqueuing transcription work for file: ${audioFile.name}")
+            Log.d(TAG, "Queueing transcription for file: ${audioFile.name}")
             
             // Update notification to show transcription in progress
             updateNotificationForTranscription(isProcessing = true)
             
-            // Check if API key is configured before enqueuing work
+            // Check if API key is configured before queueing
             val apiKey = ApiKeyStore.getApiKey(this@AudioCaptureService)
             if (apiKey.isBlank()) {
+                skipChunk(order)
                 updateNotificationForTranscription(isProcessing = false, hasResult = false)
                 sendTranscriptionBroadcast(error = "OpenAI API key not configured. Set it in Settings.")
                 return
             }
             
-            // Get constraints from configuration
-            val constraints = WorkManagerConfig.getTranscriptionConstraints(this)
-            
-            // Create input data for the worker, including session information
-            val inputData = TranscriptionWorker.createInputData(
-                audioFilePath = audioFile.absolutePath,
+            // Queue entry for the long-running worker, including session information
+            val queued = QueuedChunk(
                 sessionId = currentSessionId,
-                chunkOrder = chunkCounter++
+                chunkOrder = order,
+                audioFilePath = audioFile.absolutePath,
+                durationMs = durationMs,
+                overlapMs = overlapMs,
+                pauseBeforeMs = pauseBeforeMs,
+                audioHash = audioHash
                 // language omitted for auto-detection
             )
             
-            Log.d(TAG, "Creating transcription worker with sessionId: $currentSessionId, chunkOrder: ${chunkCounter - 1}")
-            
-            // Create and enqueue the work request
-            val transcriptionWork = OneTimeWorkRequestBuilder<TranscriptionWorker>()
-                .setInputData(inputData)
-                .setConstraints(constraints)
-                .setBackoffCriteria(
-                    WorkManagerConfig.getBackoffPolicy(),
-                    WorkManagerConfig.getInitialBackoffDelaySeconds(),
-                    WorkManagerConfig.getBackoffTimeUnit()
-                )
-                .build()
+            Log.d(TAG, "Queueing chunk with sessionId: $currentSessionId, chunkOrder: $order")
             
             // Track in-flight transcriptions for service lifecycle management
-            inFlightTranscriptions++
-            
-            // Enqueue the work
-            WorkManager.getInstance(this).enqueue(transcriptionWork)
+            inFlightTranscriptions.incrementAndGet()
             
-            // Track work completion using coroutines instead of LiveData observers
-            // This avoids lifecycle issues with Service context
-            CoroutineScope(Dispatchers.Main).launch {
+            serviceScope.launch {
+                var queueId: Long? = null
                 try {
-                    // Poll for work completion
-                    val workManager = WorkManager.getInstance(this@AudioCaptureService)
-                    var workInfo = workManager.getWorkInfoById(transcriptionWork.id).get()
+                    queueId = TranscriptionWorker.enqueue(this@AudioCaptureService, queued)
                     
-                    while (workInfo != null && !workInfo.state.isFinished) {
-                        delay(500) // Check every 500ms
-                        workInfo = workManager.getWorkInfoById(transcriptionWork.id).get()
-                    }
-                    
-                    // Work completed (success or failure)
-                    inFlightTranscriptions = (inFlightTranscriptions - 1).coerceAtLeast(0)
-                    
-                    Log.d(TAG, "Transcription work completed with state: ${workInfo?.state}")
+                    // The entry disappears once transcribed, or is marked failed for good. A run
+                    // can also end with it still queued (e.g. no API key); the next run picks it
+                    // up, but the service stops waiting for it
+                    val runs = WorkManager.getInstance(this@AudioCaptureService)
+                        .getWorkInfosForUniqueWorkFlow(TranscriptionWorker.UNIQUE_WORK_NAME)
+                    val status = combine(transcriptionQueue.observeStatus(queueId), runs) { status, infos ->
+                        status to (status == null || status == QueueStatus.FAILED || infos.all { it.state.isFinished })
+                    }.first { (_, settled) -> settled }.first
                     
-                    // The worker handles broadcasting results, but we update notification here
-                    when (workInfo?.state) {
-                        androidx.work.WorkInfo.State.SUCCEEDED -> {
-                            updateNotificationForTranscription(isProcessing = false, hasResult = true)
-                        }
-                        androidx.work.WorkInfo.State.FAILED -> {
-                            updateNotificationForTranscription(isProcessing = false, hasResult = false)
-                        }
-                        else -> {
-                            // Other states (CANCELLED, etc.)
-                            updateNotificationForTranscription(isProcessing = false, hasResult = false)
-                        }
+                    Log.d(TAG, "Queued chunk $order settled with status: ${status ?: "COMPLETED"}")
+                    withContext(Dispatchers.Main) {
+                        transcriptionSettled()
+                        // The worker handles broadcasting results, but we update notification here
+                        updateNotificationForTranscription(isProcessing = false, hasResult = status == null)
+                        maybeStopService()
                     }
-                    
-                    maybeStopService()
+                } catch (e: CancellationException) {
+                    throw e
                 } catch (e: Exception) {
-                    Log.e(TAG, "Error monitoring transcription work", e)
-                    inFlightTranscriptions = (inFlightTranscriptions - 1).coerceAtLeast(0)
-                    updateNotificationForTranscription(isProcessing = false, hasResult = false)
-                    maybeStopService()
+                    Log.e(TAG, "Error monitoring queued transcription", e)
+                    if (queueId == null) transcriptCommitter.skip(queued.sessionId, order)
+                    withContext(Dispatchers.Main) {
+                        transcriptionSettled()
+                        updateNotificationForTranscription(isProcessing = false, hasResult = false)
+                        maybeStopService()
+                    }
                 }
             }
             
-            Log.i(TAG, "Transcription work enqueued successfully for file: ${audioFile.name}")
-            
         } catch (e: Exception) {
-            Log.e(TAG, "Error enqueuing transcription work", e)
+            Log.e(TAG, "Error queueing transcription", e)
+            skipChunk(order)
             updateNotificationForTranscription(isProcessing = false, hasResult = false)
             sendTranscriptionBroadcast(error = e.message ?: "Failed to start transcription")
         }
     }
     
+    /**
+     * Persist how long the session took from start request to first captured audio
+     */
+    private fun recordTimeToFirstSample(latencyMs: Long) {
+        Log.i(TAG, "Time to first sample: ${latencyMs}ms")
+        val sessionId = currentSessionId ?: return
+        serviceScope.launch {
+            try {
+                sessionRepository.recordTimeToFirstSample(sessionId, latencyMs)
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to record time to first sample", e)
+            }
+        }
+    }
+    
+    /**
+     * Persist the current capture health counters for the running session
+     */
+    private fun saveCaptureMetrics(metrics: CaptureMetrics, ring: PcmRingBuffer) {
+        val snapshot = metrics.snapshot(ring.stats().overrunBytes, SystemClock.elapsedRealtimeNanos())
+        Log.i(TAG, snapshot.toString())
+        val sessionId = currentSessionId ?: return
+        serviceScope.launch {
+            try {
+                sessionRepository.saveCaptureMetrics(sessionId, snapshot)
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to save capture metrics", e)
+            }
+        }
+    }
+    
+    /**
+     * Add a silent chunk to the current session's skipped-audio counters
+     */
+    private fun recordSkippedChunk(durationMs: Long) {
+        val sessionId = currentSessionId ?: return
+        serviceScope.launch {
+            try {
+                sessionRepository.recordSkippedChunk(sessionId, durationMs)
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to record skipped chunk", e)
+            }
+        }
+    }
+    
     /**
      * Update notification to show transcription status
      */
@@ -829,9 +1544,13 @@ class AudioCaptureService : LifecycleService() {
             PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
         )
         
+        val uploads = UploadProgressTracker.uploads.value.values
         val contentText = when {
+            isProcessing && uploads.isNotEmpty() -> uploadProgressText() ?: "Uploading audio..."
             isProcessing -> "Transcribing audio..."
             hasResult -> "Transcription completed - Tap to view"
+            TranscriptionCircuitBreaker.status.value.state != TranscriptionCircuitBreaker.State.CLOSED ->
+                "Transcription API unavailable - chunks queued"
             else -> "Transcription failed"
         }
         
@@ -842,12 +1561,32 @@ class AudioCaptureService : LifecycleService() {
             .setContentIntent(pendingIntent)
             .setOngoing(false) // Allow dismissal after transcription
             .setSilent(true)
+            .apply {
+                if (isProcessing && uploads.isNotEmpty()) {
+                    val percent = (uploads.sumOf { it.bytesSent } * 100 / uploads.sumOf { it.totalBytes }.coerceAtLeast(1)).toInt()
+                    setProgress(100, percent, false)
+                }
+            }
             .build()
         
         val notificationManager = getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
         notificationManager.notify(NOTIFICATION_ID, notification)
     }
     
+    /**
+     * Bytes written of the chunks uploading now and the measured throughput, or null if
+     * nothing is uploading
+     */
+    private fun uploadProgressText(): String? {
+        val uploads = UploadProgressTracker.uploads.value.values
+        if (uploads.isEmpty()) return null
+        val sentMb = uploads.sumOf { it.bytesSent } / 1_000_000.0
+        val totalMb = uploads.sumOf { it.totalBytes } / 1_000_000.0
+        val chunks = if (uploads.size == 1) "1 chunk" else "${uploads.size} chunks"
+        val rate = UploadProgressTracker.throughputKbps()?.let { ", $it kbps" } ?: ""
+        return "Uploading $chunks: %.1f of %.1f MB$rate".format(sentMb, totalMb)
+    }
+    
     /**
      * Show transcription result to user
      */
@@ -0,0 +1,134 @@
+package com.audioscribe.app.service
+
+import android.util.Log
+import com.audioscribe.app.audio.SpooledChunk
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.File
+
+/**
+ * A chunk kept in memory, together with what the transcript row needs to know about it
+ */
+class SpooledUpload(
+    val chunk: SpooledChunk,
+    val chunkOrder: Int,
+    val durationMs: Long,
+    val overlapMs: Long,
+    val pauseBeforeMs: Long,
+    val audioHash: String? = null
+)
+
+/**
+ * Fast path for chunks that never touch disk: uploads [SpooledUpload]s one at a time, straight
+ * from their buffers, while the service is alive.
+ *
+ * The queue is small. When it is full, [offer] refuses the chunk and the caller spills it to
+ * disk for WorkManager instead. A chunk whose upload fails is spilled and handed off the same
+ * way, and so is everything still queued or uploading when the stage is shut down. A chunk
+ * whose transcript cannot be stored is handed off too, so the worker stores it later, reading
+ * the transcript from the cache. The worker then applies its usual retry rules.
+ */
+class ChunkUploadStage(
+    scope: CoroutineScope,
+    capacity: Int,
+    private val transcribe: suspend (SpooledUpload) -> Result<String>,
+    private val listener: Listener
+) {
+
+    interface Listener {
+        /**
+         * [upload] was transcribed; its buffer is released after this returns. If it throws, the
+         * chunk is handed off instead.
+         */
+        suspend fun onTranscribed(upload: SpooledUpload, text: String)
+
+        /**
+         * [upload] was written to [file] and must be transcribed from there
+         */
+        suspend fun onHandOff(upload: SpooledUpload, file: File)
+
+        /**
+         * [upload] could neither be transcribed nor written to disk
+         */
+        suspend fun onLost(upload: SpooledUpload)
+    }
+
+    companion object {
+        private const val TAG = "ChunkUploadStage"
+    }
+
+    private val queue = Channel<SpooledUpload>(capacity)
+
+    private val job = scope.launch {
+        try {
+            for (upload in queue) {
+                process(upload)
+            }
+        } finally {
+            withContext(NonCancellable) {
+                // Shut down early: nothing left in memory may be lost
+                while (true) {
+                    val upload = queue.tryReceive().getOrNull() ?: break
+                    handOff(upload)
+                }
+            }
+        }
+    }
+
+    /**
+     * Queue [upload] for streaming
+     * @return false if the queue is full or shut down; the caller still owns the chunk
+     */
+    fun offer(upload: SpooledUpload): Boolean = queue.trySend(upload).isSuccess
+
+    /**
+     * Stop streaming and hand every chunk still in memory to WorkManager
+     */
+    fun shutdown() {
+        queue.close()
+        job.cancel()
+    }
+
+    private suspend fun process(upload: SpooledUpload) {
+        val result = try {
+            transcribe(upload)
+        } catch (e: CancellationException) {
+            withContext(NonCancellable) { handOff(upload) }
+            throw e
+        } catch (e: Exception) {
+            Result.failure(e)
+        }
+        result.onSuccess { text ->
+            try {
+                listener.onTranscribed(upload, text)
+                upload.chunk.release()
+            } catch (e: CancellationException) {
+                withContext(NonCancellable) { handOff(upload) }
+                throw e
+            } catch (e: Exception) {
+                Log.e(TAG, "Error storing transcription of ${upload.chunk.file.name}, handing off to WorkManager", e)
+                handOff(upload)
+            }
+        }.onFailure { error ->
+            Log.w(TAG, "Streaming upload of ${upload.chunk.file.name} failed, handing off to WorkManager: ${error.message}")
+            handOff(upload)
+        }
+    }
+
+    private suspend fun handOff(upload: SpooledUpload) {
+        try {
+            val file = upload.chunk.spill()
+            if (file != null) {
+                listener.onHandOff(upload, file)
+            } else {
+                listener.onLost(upload)
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Error handing off ${upload.chunk.file.name}", e)
+        }
+    }
+}
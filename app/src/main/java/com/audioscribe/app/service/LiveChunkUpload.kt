@@ -0,0 +1,81 @@
+package com.audioscribe.app.service
+
+import com.audioscribe.app.audio.CaptureFormat
+import com.audioscribe.app.audio.ChunkEncoding
+import com.audioscribe.app.audio.WavChunkWriter
+import com.audioscribe.app.data.network.StreamingAudioRequestBody
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+import okhttp3.MediaType.Companion.toMediaType
+
+/**
+ * Transcription request for the chunk currently being recorded, opened when the chunk starts.
+ *
+ * Samples are sent as a WAV stream while they are written, so by the time the chunk ends most
+ * of it is already uploaded and only the tail and the API's processing remain. The header's
+ * size fields cannot be known in advance and are set to the maximum; decoders read such a
+ * stream to its end. The chunk's regular sink still gets every sample, so the chunk can be
+ * transcribed the normal way if the stream is [abandoned][isAbandoned].
+ */
+class LiveChunkUpload(
+    scope: CoroutineScope,
+    fileName: String,
+    sampleRate: Int,
+    channels: Int,
+    maxBufferedBytes: Long,
+    transcribe: suspend (StreamingAudioRequestBody, String) -> Result<String>
+) {
+
+    companion object {
+        private const val STREAMING_DATA_SIZE = Int.MAX_VALUE - 36
+    }
+
+    private val body = StreamingAudioRequestBody(
+        ChunkEncoding.WAV.mimeType.toMediaType(),
+        maxBufferedBytes,
+        bytesPerSecond = sampleRate * channels * CaptureFormat.BYTES_PER_SAMPLE
+    )
+
+    /**
+     * Whether the stream was given up because the network fell behind
+     */
+    var isAbandoned = false
+        private set
+
+    private val result: Deferred<Result<String>> = scope.async {
+        transcribe(body, fileName)
+    }
+
+    init {
+        val header = WavChunkWriter.buildHeader(sampleRate, channels, STREAMING_DATA_SIZE)
+        if (!body.write(header, 0, header.size)) isAbandoned = true
+    }
+
+    /**
+     * Send [count] interleaved samples from [offset]; does nothing once the stream is abandoned
+     */
+    fun write(samples: ShortArray, offset: Int, count: Int) {
+        if (!isAbandoned && !body.writeSamples(samples, offset, count)) isAbandoned = true
+    }
+
+    /**
+     * End the stream and wait for its transcription
+     */
+    suspend fun finish(): Result<String> {
+        body.close()
+        return try {
+            result.await()
+        } catch (e: Exception) {
+            Result.failure(e)
+        }
+    }
+
+    /**
+     * Abort the request, e.g. because the chunk is not going to be transcribed
+     */
+    fun cancel() {
+        body.abort()
+        result.cancel()
+    }
+}
@@ -29,14 +29,20 @@ import androidx.compose.material.icons.filled.Settings
 import androidx.compose.material.icons.filled.History
 import androidx.compose.material.icons.filled.Mic
 import androidx.compose.material.icons.filled.Pause
+import androidx.compose.material.icons.filled.PlayArrow
 import androidx.compose.material.icons.filled.Stop
 import androidx.compose.foundation.rememberScrollState
 import androidx.compose.foundation.verticalScroll
 import androidx.compose.foundation.text.selection.SelectionContainer
 import android.content.ClipboardManager
 import android.content.ClipData
+import com.audioscribe.app.audio.JitterSnapshot
+import com.audioscribe.app.audio.ReadJitterHistogram
+import com.audioscribe.app.data.network.UploadProgressTracker
 import com.audioscribe.app.service.AudioCaptureService
 import com.audioscribe.app.ui.theme.AudioscribeTheme
+import com.audioscribe.app.worker.TranscriptionQueueMetrics
+import com.audioscribe.app.worker.TranscriptionWorker
 import com.audioscribe.app.utils.ApiKeyStore
 import com.audioscribe.app.utils.PermissionManager
 import com.audioscribe.app.data.repository.SessionRepository
@@ -63,6 +69,7 @@ class MainActivity : ComponentActivity() {
     }
     
     private var isRecording by mutableStateOf(false)
+    private var isPaused by mutableStateOf(false)
     private var hasPermissions by mutableStateOf(false)
     private var transcriptionResult by mutableStateOf("")
     private var isProcessing by mutableStateOf(false)
@@ -113,12 +120,14 @@ class MainActivity : ComponentActivity() {
                 AudioscribeScreen(
                     hasPermissions = hasPermissions,
                     isRecording = isRecording,
+                    isPaused = isPaused,
                     isProcessing = isProcessing,
                     transcriptionResult = transcriptionResult,
                     sessionRepository = sessionRepository,
                     onRequestPermissions = { requestPermissions() },
                     onStartRecording = { startRecording() },
                     onStopRecording = { stopRecording() },
+                    onTogglePause = { togglePause() },
                     onClearResults = { clearResults() },
                     requestMicPermission = {
                         val missing = PermissionManager.getMissingPermissions(this)
@@ -156,6 +165,7 @@ class MainActivity : ComponentActivity() {
             isRecording = serviceRunning
             Log.i(TAG, "Synced recording state: isRecording = $isRecording")
         }
+        isPaused = serviceRunning && AudioCaptureService.isCapturePaused()
     }
     
     @Suppress("DEPRECATION")
@@ -201,6 +211,7 @@ class MainActivity : ComponentActivity() {
         }
         startService(intent)
         isRecording = false
+        isPaused = false
         
         // Check if API key is configured
         if (!ApiKeyStore.isConfigured(this)) {
@@ -215,6 +226,15 @@ class MainActivity : ComponentActivity() {
         }
     }
     
+    private fun togglePause() {
+        // Keeps the AudioRecord and MediaProjection alive; no new consent or session on resume
+        val intent = Intent(this, AudioCaptureService::class.java).apply {
+            action = if (isPaused) AudioCaptureService.ACTION_RESUME_CAPTURE else AudioCaptureService.ACTION_PAUSE_CAPTURE
+        }
+        startService(intent)
+        isPaused = !isPaused
+    }
+    
     private fun clearResults() {
         transcriptionResult = ""
         isProcessing = false
@@ -305,12 +325,14 @@ class MainActivity : ComponentActivity() {
 fun AudioscribeScreen(
     hasPermissions: Boolean,
     isRecording: Boolean,
+    isPaused: Boolean,
     isProcessing: Boolean,
     transcriptionResult: String,
     sessionRepository: SessionRepository,
     onRequestPermissions: () -> Unit,
     onStartRecording: () -> Unit,
     onStopRecording: () -> Unit,
+    onTogglePause: () -> Unit,
     onClearResults: () -> Unit,
     requestMicPermission: () -> Unit,
     resolveIssue: (PreflightIssue) -> Unit
@@ -329,7 +351,7 @@ fun AudioscribeScreen(
     
     val combinedTranscriptFromDB by remember(chunks) {
         derivedStateOf {
-            if (chunks.isNotEmpty()) chunks.joinToString(" ") { it.text } else ""
+            if (chunks.isNotEmpty()) chunks.joinToString(" ") { it.dedupedText ?: it.text } else ""
         }
     }
     val displayTranscript = if (combinedTranscriptFromDB.isNotEmpty()) combinedTranscriptFromDB else transcriptionResult
@@ -337,16 +359,27 @@ fun AudioscribeScreen(
     var showSheet by remember { mutableStateOf(false) }
     var issues by remember { mutableStateOf<List<PreflightIssue>>(emptyList()) }
     var elapsed by remember { mutableStateOf(0L) }
+    var readJitter by remember { mutableStateOf<JitterSnapshot?>(null) }
+    var uploadMetrics by remember { mutableStateOf<TranscriptionQueueMetrics?>(null) }
+    val uploads by UploadProgressTracker.uploads.collectAsStateWithLifecycle()
 
-    // Tick timer while recording
+    // Reset the timer for each recording
     LaunchedEffect(isRecording) {
+        if (isRecording) elapsed = 0L
+    }
+
+    // Tick timer while recording; it holds while paused
+    LaunchedEffect(isRecording, isPaused) {
         if (isRecording) {
-            elapsed = 0L
-            while (isRecording) {
+            while (true) {
                 delay(1000)
-                elapsed += 1
+                if (!isPaused) elapsed += 1
+                readJitter = AudioCaptureService.getReadJitter()
+                uploadMetrics = TranscriptionWorker.getQueueMetrics(context)
             }
         }
+        readJitter = null
+        uploadMetrics = null
     }
 
     fun runPreflight() {
@@ -404,14 +437,35 @@ fun AudioscribeScreen(
                         horizontalArrangement = Arrangement.SpaceBetween,
                         verticalAlignment = Alignment.CenterVertically
                     ) {
-                        Text(
-                            text = String.format("%02d:%02d", (elapsed / 60), (elapsed % 60)),
-                            style = MaterialTheme.typography.titleMedium
-                        )
+                        Column {
+                            Text(
+                                text = String.format("%02d:%02d", (elapsed / 60), (elapsed % 60)) + if (isPaused) "  Paused" else "",
+                                style = MaterialTheme.typography.titleMedium
+                            )
+                            readJitter?.takeIf { it.total > 0 }?.let { jitter ->
+                                // Capture thread health: p99 spread between AudioRecord reads
+                                val p99 = jitter.percentileUpperMs(99.0)
+                                Text(
+                                    text = if (p99 != null) "Read jitter p99 < $p99 ms" else "Read jitter p99 >= ${ReadJitterHistogram.BUCKET_UPPER_MS.last()} ms",
+                                    style = MaterialTheme.typography.labelSmall,
+                                    color = MaterialTheme.colorScheme.onSurfaceVariant
+                                )
+                            }
+                            uploadMetrics?.takeIf { it.queueDepth + it.inFlight + it.heldResults > 0 }?.let { metrics ->
+                                Text(
+                                    text = "Uploads: ${metrics.inFlight} in flight, ${metrics.queueDepth} queued, ${metrics.heldResults} held",
+                                    style = MaterialTheme.typography.labelSmall,
+                                    color = MaterialTheme.colorScheme.onSurfaceVariant
+                                )
+                            }
+                        }
                         Row(horizontalArrangement = Arrangement.spacedBy(8.dp)) {
-                            // Pause placeholder (not implemented)
-                            IconButton(onClick = { /* TODO: implement pause */ }) {
-                                Icon(Icons.Default.Pause, contentDescription = "Pause", tint = MaterialTheme.colorScheme.onSurface)
+                            IconButton(onClick = onTogglePause) {
+                                if (isPaused) {
+                                    Icon(Icons.Default.PlayArrow, contentDescription = "Resume", tint = MaterialTheme.colorScheme.onSurface)
+                                } else {
+                                    Icon(Icons.Default.Pause, contentDescription = "Pause", tint = MaterialTheme.colorScheme.onSurface)
+                                }
                             }
                             FilledTonalButton(onClick = onStopRecording) {
                                 Icon(Icons.Default.Stop, contentDescription = null)
@@ -475,7 +529,24 @@ fun AudioscribeScreen(
                             }) { Text("View session →") }
                         }
                         Spacer(modifier = Modifier.height(8.dp))
-                        if (isProcessing) {
+                        if (isProcessing && uploads.isNotEmpty()) {
+                            // Bytes actually written to the connection, across the chunks uploading now
+                            val sent = uploads.values.sumOf { it.bytesSent }
+                            val total = uploads.values.sumOf { it.totalBytes }
+                            Row(verticalAlignment = Alignment.CenterVertically) {
+                                CircularProgressIndicator(
+                                    progress = { if (total > 0) sent.toFloat() / total else 0f },
+                                    modifier = Modifier.size(16.dp),
+                                    strokeWidth = 2.dp
+                                )
+                                Spacer(modifier = Modifier.width(8.dp))
+                                Text(
+                                    text = "Uploading %.1f of %.1f MB".format(sent / 1_000_000.0, total / 1_000_000.0),
+                                    style = MaterialTheme.typography.bodyMedium,
+                                    color = MaterialTheme.colorScheme.onSurfaceVariant
+                                )
+                            }
+                        } else if (isProcessing) {
                             Row(verticalAlignment = Alignment.CenterVertically) {
                                 CircularProgressIndicator(
                                     modifier = Modifier.size(16.dp),
@@ -578,12 +649,14 @@ fun AudioscribeScreenPreview() {
         AudioscribeScreen(
             hasPermissions = true,
             isRecording = false,
+            isPaused = false,
             isProcessing = false,
             transcriptionResult = "",
             sessionRepository = SessionRepository(LocalContext.current), // Pass a dummy for preview
             onRequestPermissions = {},
             onStartRecording = {},
             onStopRecording = {},
+            onTogglePause = {},
             onClearResults = {},
             requestMicPermission = {},
             resolveIssue = {}
@@ -598,12 +671,14 @@ fun AudioscribeScreenWithResultsPreview() {
         AudioscribeScreen(
             hasPermissions = true,
             isRecording = false,
+            isPaused = false,
             isProcessing = false,
             transcriptionResult = "Chunk 1 text...\n\n— 12:34:56 —\nChunk 2 text...",
             sessionRepository = SessionRepository(LocalContext.current), // Pass a dummy for preview
             onRequestPermissions = {},
             onStartRecording = {},
             onStopRecording = {},
+            onTogglePause = {},
             onClearResults = {},
             requestMicPermission = {},
             resolveIssue = {}
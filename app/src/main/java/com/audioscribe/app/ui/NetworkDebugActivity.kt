@@ -0,0 +1,167 @@
+package com.audioscribe.app.ui
+
+import android.content.Intent
+import android.os.Bundle
+import androidx.activity.ComponentActivity
+import androidx.activity.compose.setContent
+import androidx.compose.foundation.layout.*
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.items
+import androidx.compose.material.icons.Icons
+import androidx.compose.material.icons.filled.ArrowBack
+import androidx.compose.material.icons.filled.Delete
+import androidx.compose.material.icons.filled.Share
+import androidx.compose.material3.*
+import androidx.compose.runtime.*
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.unit.dp
+import com.audioscribe.app.data.network.NetworkCallLog
+import com.audioscribe.app.data.network.NetworkCallRecord
+import com.audioscribe.app.data.network.NetworkClient
+import com.audioscribe.app.data.network.RequestHedger
+import com.audioscribe.app.ui.theme.AudioscribeTheme
+import kotlinx.coroutines.delay
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+
+/**
+ * Recent API calls with per-phase timings and byte counts, read from [NetworkCallLog]
+ */
+class NetworkDebugActivity : ComponentActivity() {
+
+	override fun onCreate(savedInstanceState: Bundle?) {
+		super.onCreate(savedInstanceState)
+		setContent {
+			AudioscribeTheme {
+				NetworkDebugScreen(onBack = { finish() })
+			}
+		}
+	}
+}
+
+@OptIn(ExperimentalMaterial3Api::class)
+@Composable
+private fun NetworkDebugScreen(onBack: () -> Unit) {
+	val context = LocalContext.current
+	var calls by remember { mutableStateOf(NetworkCallLog.snapshot()) }
+	var connections by remember { mutableStateOf(NetworkClient.connectionStats()) }
+	var hedges by remember { mutableStateOf(RequestHedger.stats()) }
+
+	// Calls are recorded off the main thread; poll while the screen is shown
+	LaunchedEffect(Unit) {
+		while (true) {
+			calls = NetworkCallLog.snapshot()
+			connections = NetworkClient.connectionStats()
+			hedges = RequestHedger.stats()
+			delay(1000)
+		}
+	}
+
+	Scaffold(
+		topBar = {
+			TopAppBar(
+				title = { Text("Network Log") },
+				navigationIcon = {
+					IconButton(onClick = onBack) {
+						Icon(imageVector = Icons.Filled.ArrowBack, contentDescription = "Back", tint = MaterialTheme.colorScheme.onSurface)
+					}
+				},
+				actions = {
+					IconButton(onClick = {
+						val share = Intent(Intent.ACTION_SEND).apply {
+							type = "text/plain"
+							putExtra(Intent.EXTRA_SUBJECT, "Audioscribe network log")
+							putExtra(Intent.EXTRA_TEXT, NetworkCallLog.exportCsv())
+						}
+						context.startActivity(Intent.createChooser(share, "Export network log"))
+					}) {
+						Icon(imageVector = Icons.Filled.Share, contentDescription = "Export", tint = MaterialTheme.colorScheme.onSurface)
+					}
+					IconButton(onClick = {
+						NetworkCallLog.clear()
+						calls = emptyList()
+					}) {
+						Icon(imageVector = Icons.Filled.Delete, contentDescription = "Clear", tint = MaterialTheme.colorScheme.onSurface)
+					}
+				}
+			)
+		}
+	) { inner ->
+		Column(
+			modifier = Modifier
+				.fillMaxSize()
+				.padding(inner)
+				.padding(16.dp),
+			verticalArrangement = Arrangement.spacedBy(12.dp)
+		) {
+			Text(
+				"Connections: $connections",
+				style = MaterialTheme.typography.bodySmall,
+				color = MaterialTheme.colorScheme.onSurfaceVariant
+			)
+			Text(
+				"Hedging: $hedges",
+				style = MaterialTheme.typography.bodySmall,
+				color = MaterialTheme.colorScheme.onSurfaceVariant
+			)
+			HorizontalDivider()
+			if (calls.isEmpty()) {
+				Text("No calls recorded yet", style = MaterialTheme.typography.bodyMedium, color = MaterialTheme.colorScheme.onSurfaceVariant)
+			} else {
+				LazyColumn(verticalArrangement = Arrangement.spacedBy(8.dp)) {
+					items(calls) { call ->
+						NetworkCallRow(call)
+					}
+				}
+			}
+		}
+	}
+}
+
+@Composable
+private fun NetworkCallRow(call: NetworkCallRecord) {
+	val time = remember(call.startedAtMs) {
+		SimpleDateFormat("HH:mm:ss", Locale.getDefault()).format(Date(call.startedAtMs))
+	}
+	val outcome = call.statusCode?.toString() ?: "failed"
+	Card(
+		modifier = Modifier.fillMaxWidth(),
+		colors = CardDefaults.cardColors(containerColor = MaterialTheme.colorScheme.surface)
+	) {
+		Column(modifier = Modifier.padding(12.dp), verticalArrangement = Arrangement.spacedBy(4.dp)) {
+			Text(
+				"$time  ${call.method} ${call.path}  $outcome  ${call.totalMs} ms",
+				style = MaterialTheme.typography.titleSmall,
+				color = if (call.error != null || (call.statusCode ?: 0) >= 400) MaterialTheme.colorScheme.error else MaterialTheme.colorScheme.onSurface
+			)
+			val phases = listOfNotNull(
+				call.dnsMs?.let { "DNS $it" },
+				call.connectMs?.let { "connect $it" },
+				call.tlsMs?.let { "TLS $it" },
+				call.requestBodyMs?.let { "send $it" },
+				call.ttfbMs?.let { "TTFB $it" },
+				call.responseMs?.let { "receive $it" }
+			).joinToString(" · ")
+			if (phases.isNotEmpty()) {
+				Text("$phases ms", style = MaterialTheme.typography.bodySmall)
+			}
+			Text(
+				"${formatBytes(call.bytesSent)} sent · ${formatBytes(call.bytesReceived)} received · " +
+					"${if (call.reusedConnection) "reused" else "new"} connection${call.protocol?.let { " ($it)" } ?: ""}",
+				style = MaterialTheme.typography.bodySmall,
+				color = MaterialTheme.colorScheme.onSurfaceVariant
+			)
+			call.error?.let {
+				Text(it, style = MaterialTheme.typography.bodySmall, color = MaterialTheme.colorScheme.error)
+			}
+		}
+	}
+}
+
+private fun formatBytes(bytes: Long): String = when {
+	bytes >= 1_000_000 -> "%.1f MB".format(bytes / 1_000_000.0)
+	bytes >= 1_000 -> "%.1f kB".format(bytes / 1_000.0)
+	else -> "$bytes B"
+}
@@ -27,6 +27,7 @@ import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.text.input.TextFieldValue
 import androidx.compose.ui.unit.dp
 import androidx.lifecycle.compose.collectAsStateWithLifecycle
+import com.audioscribe.app.data.database.entity.CaptureMetricsRecord
 import com.audioscribe.app.data.database.entity.TranscriptionSession
 import com.audioscribe.app.data.database.entity.SessionStatus
 import com.audioscribe.app.data.repository.SessionRepository
@@ -90,10 +91,16 @@ private fun SessionDetailScreen(
     // Reactively collect chunks and build transcript text
     val chunksFlow = remember { sessionRepository.getChunksForSession(sessionId) }
     val chunks by chunksFlow.collectAsStateWithLifecycle(initialValue = emptyList())
+    val captureMetricsFlow = remember { sessionRepository.getCaptureMetrics(sessionId) }
+    val captureMetrics by captureMetricsFlow.collectAsStateWithLifecycle(initialValue = null)
     val transcriptText = remember(chunks) {
-        chunks.filter { it.text.isNotBlank() }
+        chunks.filter { (it.dedupedText ?: it.text).isNotBlank() }
             .sortedBy { it.chunkIndex }
-            .joinToString(separator = "\n\n") { it.text }
+            .joinToString(separator = "\n\n") { chunk ->
+                val text = chunk.dedupedText ?: chunk.text
+                // Mark where the recording was paused
+                if (chunk.pauseBeforeMs > 0) "[Paused ${formatDuration(chunk.pauseBeforeMs)}]\n\n$text" else text
+            }
     }
     
     // Delete session function
@@ -205,6 +212,7 @@ private fun SessionDetailScreen(
                 SessionDetailContent(
                     session = session!!,
                     transcriptText = transcriptText,
+                    captureMetrics = captureMetrics,
                     modifier = Modifier.padding(innerPadding)
                 )
             }
@@ -234,6 +242,7 @@ private fun SessionDetailScreen(
 private fun SessionDetailContent(
     session: TranscriptionSession,
     transcriptText: String,
+    captureMetrics: CaptureMetricsRecord?,
     modifier: Modifier = Modifier
 ) {
     val dateFormat = remember { SimpleDateFormat("MMM dd, yyyy 'at' HH:mm:ss", Locale.getDefault()) }
@@ -336,6 +345,38 @@ private fun SessionDetailContent(
                     )
                 }
                 
+                // Silence skipped by voice activity detection
+                if (session.skippedChunkCount > 0) {
+                    Spacer(modifier = Modifier.height(4.dp))
+                    Row(
+                        modifier = Modifier.fillMaxWidth(),
+                        horizontalArrangement = Arrangement.SpaceBetween
+                    ) {
+                        Text("Silence skipped:", style = MaterialTheme.typography.bodyMedium)
+                        Text(
+                            text = "${formatDuration(session.skippedSilenceMs)} (${session.skippedChunkCount} chunks)",
+                            style = MaterialTheme.typography.bodyMedium,
+                            color = MaterialTheme.colorScheme.onSurfaceVariant
+                        )
+                    }
+                }
+                
+                // Start latency
+                session.timeToFirstSampleMs?.let { latencyMs ->
+                    Spacer(modifier = Modifier.height(4.dp))
+                    Row(
+                        modifier = Modifier.fillMaxWidth(),
+                        horizontalArrangement = Arrangement.SpaceBetween
+                    ) {
+                        Text("Time to first sample:", style = MaterialTheme.typography.bodyMedium)
+                        Text(
+                            text = "${latencyMs} ms",
+                            style = MaterialTheme.typography.bodyMedium,
+                            color = MaterialTheme.colorScheme.onSurfaceVariant
+                        )
+                    }
+                }
+                
                 // Chunk information
                 if (session.chunkCount > 0) {
                     Spacer(modifier = Modifier.height(4.dp))
@@ -354,6 +395,12 @@ private fun SessionDetailContent(
             }
         }
         
+        // Capture health, once the recording has reported it
+        captureMetrics?.let { metrics ->
+            Spacer(modifier = Modifier.height(16.dp))
+            CaptureHealthCard(metrics)
+        }
+        
         Spacer(modifier = Modifier.height(16.dp))
         
         // Transcript content
@@ -391,6 +438,61 @@ private fun SessionDetailContent(
     }
 }
 
+@Composable
+private fun CaptureHealthCard(metrics: CaptureMetricsRecord) {
+    val sampleRate = if (metrics.durationMs > 0) metrics.expectedFrames * 1000 / metrics.durationMs else 0L
+    val missingMs = if (sampleRate > 0) metrics.missingFrames * 1000 / sampleRate else 0L
+    val lossPercent = if (metrics.expectedFrames > 0) metrics.missingFrames * 100.0 / metrics.expectedFrames else 0.0
+    
+    Card(
+        modifier = Modifier.fillMaxWidth()
+    ) {
+        Column(
+            modifier = Modifier
+                .fillMaxWidth()
+                .padding(16.dp)
+        ) {
+            Text(
+                text = "Capture Health",
+                style = MaterialTheme.typography.titleMedium,
+                fontWeight = FontWeight.Bold
+            )
+            
+            Spacer(modifier = Modifier.height(12.dp))
+            
+            MetricRow("Device:", "${metrics.device} (API ${metrics.sdkInt})")
+            MetricRow("Frames read:", "${metrics.framesRead} of ${metrics.expectedFrames} expected")
+            MetricRow("Audio missing:", "${formatDuration(missingMs)} (${"%.2f".format(lossPercent)}%)")
+            MetricRow("Dropped frames:", "${metrics.droppedFrames}")
+            MetricRow("Gaps:", "${metrics.gapCount} (${metrics.gapMs} ms)")
+            MetricRow("Read errors:", "${metrics.readErrorCount}")
+            MetricRow(
+                "Read latency p50/p95/p99:",
+                listOf(metrics.readLatencyP50Us, metrics.readLatencyP95Us, metrics.readLatencyP99Us)
+                    .joinToString("/") { it?.let { us -> "%.2f".format(us / 1000.0) } ?: "-" } + " ms"
+            )
+            MetricRow("Chunk rotations:", "${metrics.rotationCount} (avg ${"%.1f".format(metrics.rotationAvgMs)} ms, max ${"%.1f".format(metrics.rotationMaxMs)} ms)")
+            MetricRow("Bytes written:", "${metrics.bytesWritten / 1024} KB")
+        }
+    }
+}
+
+@Composable
+private fun MetricRow(label: String, value: String) {
+    Spacer(modifier = Modifier.height(4.dp))
+    Row(
+        modifier = Modifier.fillMaxWidth(),
+        horizontalArrangement = Arrangement.SpaceBetween
+    ) {
+        Text(label, style = MaterialTheme.typography.bodyMedium)
+        Text(
+            text = value,
+            style = MaterialTheme.typography.bodyMedium,
+            color = MaterialTheme.colorScheme.onSurfaceVariant
+        )
+    }
+}
+
 @Composable
 private fun LoadingState(modifier: Modifier = Modifier) {
     Column(
@@ -1,5 +1,6 @@
 package com.audioscribe.app.ui
 
+import android.content.Intent
 import android.os.Bundle
 import android.widget.Toast
 import androidx.activity.ComponentActivity
@@ -14,10 +15,15 @@ import androidx.compose.runtime.*
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.text.input.PasswordVisualTransformation
 import androidx.compose.ui.unit.dp
+import com.audioscribe.app.audio.ChunkEncoding
+import com.audioscribe.app.audio.ChunkWindowPreset
+import com.audioscribe.app.data.network.NetworkClient
+import com.audioscribe.app.data.network.TranscriptionCircuitBreaker
 import com.audioscribe.app.ui.theme.AudioscribeTheme
 import com.audioscribe.app.utils.ApiKeyStore
 import com.audioscribe.app.utils.PromptStore
 import com.audioscribe.app.utils.TranscriptionSettingsStore
+import com.audioscribe.app.worker.TranscriptionWorker
 
 class SettingsActivity : ComponentActivity() {
 
@@ -38,6 +44,18 @@ private fun SettingsScreen(onBack: () -> Unit) {
 	var apiKey by remember { mutableStateOf(ApiKeyStore.getApiKey(context)) }
 	var defaultPrompt by remember { mutableStateOf(PromptStore.getDefaultPrompt(context)) }
 	var speed by remember { mutableFloatStateOf(TranscriptionSettingsStore.getSpeedFactor(context)) }
+	var encoding by remember { mutableStateOf(TranscriptionSettingsStore.getChunkEncoding(context)) }
+	var skipSilence by remember { mutableStateOf(TranscriptionSettingsStore.isSkipSilenceEnabled(context)) }
+	var chunkWindow by remember { mutableStateOf(TranscriptionSettingsStore.getChunkWindowPreset(context)) }
+	var maxParallelUploads by remember { mutableStateOf(TranscriptionSettingsStore.getMaxParallelUploads(context)) }
+	var chunkOverlap by remember { mutableStateOf(TranscriptionSettingsStore.isChunkOverlapEnabled(context)) }
+	var streamWhileRecording by remember { mutableStateOf(TranscriptionSettingsStore.isStreamWhileRecordingEnabled(context)) }
+	var dualSource by remember { mutableStateOf(TranscriptionSettingsStore.isDualSourceEnabled(context)) }
+	var separateChannels by remember { mutableStateOf(TranscriptionSettingsStore.isSeparateSourceChannelsEnabled(context)) }
+	var rateLimits by remember { mutableStateOf(TranscriptionSettingsStore.getRateLimits(context, ApiKeyStore.getApiKey(context))) }
+	var hedging by remember { mutableStateOf(TranscriptionSettingsStore.isHedgingEnabled(context)) }
+	var bodyLogging by remember { mutableStateOf(TranscriptionSettingsStore.isBodyLoggingEnabled(context)) }
+	val apiStatus by TranscriptionCircuitBreaker.status.collectAsState()
 
     Scaffold(
         topBar = {
@@ -70,12 +88,31 @@ private fun SettingsScreen(onBack: () -> Unit) {
 			Row(modifier = Modifier.fillMaxWidth(), horizontalArrangement = Arrangement.End) {
 				Button(onClick = {
 					ApiKeyStore.saveApiKey(context, apiKey)
+					rateLimits = TranscriptionSettingsStore.getRateLimits(context, ApiKeyStore.getApiKey(context))
+					// A revoked key may have opened the breaker; try the new one at the next chunk
+					TranscriptionCircuitBreaker.retryNow()
+					// Chunks left queued while no key was set are transcribed now
+					if (apiKey.isNotBlank()) TranscriptionWorker.resume(context)
 					Toast.makeText(context, "API key saved", Toast.LENGTH_SHORT).show()
 				}) {
 					Text("Save API Key")
 				}
 			}
 
+			Text(
+				text = when (apiStatus.state) {
+					TranscriptionCircuitBreaker.State.CLOSED -> "Transcription API: available"
+					TranscriptionCircuitBreaker.State.HALF_OPEN -> "Transcription API: checking..."
+					TranscriptionCircuitBreaker.State.OPEN -> "Transcription API: unavailable, chunks queued (${apiStatus.lastError ?: "unknown error"})"
+				},
+				style = MaterialTheme.typography.bodySmall,
+				color = if (apiStatus.state == TranscriptionCircuitBreaker.State.CLOSED) {
+					MaterialTheme.colorScheme.onSurfaceVariant
+				} else {
+					MaterialTheme.colorScheme.error
+				}
+			)
+
 			HorizontalDivider()
 
 			Text("Default Analysis Prompt", style = MaterialTheme.typography.titleMedium)
@@ -117,6 +154,233 @@ private fun SettingsScreen(onBack: () -> Unit) {
 					)
 				}
 			}
+
+			HorizontalDivider()
+
+			Text("Chunk Format", style = MaterialTheme.typography.titleMedium)
+			Text(
+				"Compressed chunks upload much faster and use less storage. WAV is lossless but about 10x larger.",
+				style = MaterialTheme.typography.bodySmall
+			)
+			Row(horizontalArrangement = Arrangement.spacedBy(8.dp)) {
+				listOf(ChunkEncoding.AAC to "AAC", ChunkEncoding.OPUS to "Opus", ChunkEncoding.WAV to "WAV").forEach { (value, label) ->
+					FilterChip(
+						selected = encoding == value,
+						onClick = { encoding = value; TranscriptionSettingsStore.saveChunkEncoding(context, value) },
+						label = { Text(label) }
+					)
+				}
+			}
+
+			HorizontalDivider()
+
+			Text("Chunk Length", style = MaterialTheme.typography.titleMedium)
+			Text(
+				"Chunks are split at a pause inside this range. Short gives text sooner; longer chunks grow further on fast networks.",
+				style = MaterialTheme.typography.bodySmall
+			)
+			Row(horizontalArrangement = Arrangement.spacedBy(8.dp)) {
+				listOf(
+					ChunkWindowPreset.LOW_LATENCY to "Short",
+					ChunkWindowPreset.BALANCED to "Balanced",
+					ChunkWindowPreset.LONG to "Long"
+				).forEach { (value, label) ->
+					FilterChip(
+						selected = chunkWindow == value,
+						onClick = { chunkWindow = value; TranscriptionSettingsStore.saveChunkWindowPreset(context, value) },
+						label = { Text("$label (${value.minSeconds}-${value.maxSeconds}s)") }
+					)
+				}
+			}
+
+			Row(
+				modifier = Modifier.fillMaxWidth(),
+				horizontalArrangement = Arrangement.SpaceBetween
+			) {
+				Column(modifier = Modifier.weight(1f)) {
+					Text("Stream While Recording", style = MaterialTheme.typography.titleMedium)
+					Text(
+						"Upload each chunk as it is recorded, so its text arrives seconds after it ends. Uses the connection continuously; falls back to uploading finished chunks when the network is slow.",
+						style = MaterialTheme.typography.bodySmall
+					)
+				}
+				Switch(
+					checked = streamWhileRecording,
+					onCheckedChange = { streamWhileRecording = it; TranscriptionSettingsStore.saveStreamWhileRecordingEnabled(context, it) }
+				)
+			}
+
+			Row(
+				modifier = Modifier.fillMaxWidth(),
+				horizontalArrangement = Arrangement.SpaceBetween
+			) {
+				Column(modifier = Modifier.weight(1f)) {
+					Text("Overlap Chunks", style = MaterialTheme.typography.titleMedium)
+					Text(
+						"Each chunk repeats the last moment of the previous one so words at the seams are not lost. Duplicated words are removed from the transcript.",
+						style = MaterialTheme.typography.bodySmall
+					)
+				}
+				Switch(
+					checked = chunkOverlap,
+					onCheckedChange = { chunkOverlap = it; TranscriptionSettingsStore.saveChunkOverlapEnabled(context, it) }
+				)
+			}
+
+			HorizontalDivider()
+
+			Row(
+				modifier = Modifier.fillMaxWidth(),
+				horizontalArrangement = Arrangement.SpaceBetween
+			) {
+				Column(modifier = Modifier.weight(1f)) {
+					Text("Skip Silent Chunks", style = MaterialTheme.typography.titleMedium)
+					Text(
+						"Chunks with almost no detected speech are not uploaded or billed.",
+						style = MaterialTheme.typography.bodySmall
+					)
+				}
+				Switch(
+					checked = skipSilence,
+					onCheckedChange = { skipSilence = it; TranscriptionSettingsStore.saveSkipSilenceEnabled(context, it) }
+				)
+			}
+
+			HorizontalDivider()
+
+			Row(
+				modifier = Modifier.fillMaxWidth(),
+				horizontalArrangement = Arrangement.SpaceBetween
+			) {
+				Column(modifier = Modifier.weight(1f)) {
+					Text("Record Microphone Too", style = MaterialTheme.typography.titleMedium)
+					Text(
+						"Capture your microphone alongside system audio, so calls and meetings include both sides.",
+						style = MaterialTheme.typography.bodySmall
+					)
+				}
+				Switch(
+					checked = dualSource,
+					onCheckedChange = { dualSource = it; TranscriptionSettingsStore.saveDualSourceEnabled(context, it) }
+				)
+			}
+
+			if (dualSource) {
+				Row(
+					modifier = Modifier.fillMaxWidth(),
+					horizontalArrangement = Arrangement.SpaceBetween
+				) {
+					Column(modifier = Modifier.weight(1f)) {
+						Text("Separate Channels", style = MaterialTheme.typography.titleMedium)
+						Text(
+							"Keep the microphone on the left channel and system audio on the right instead of mixing them, so each side can be told apart later. Doubles WAV chunk size.",
+							style = MaterialTheme.typography.bodySmall
+						)
+					}
+					Switch(
+						checked = separateChannels,
+						onCheckedChange = { separateChannels = it; TranscriptionSettingsStore.saveSeparateSourceChannelsEnabled(context, it) }
+					)
+				}
+			}
+
+			HorizontalDivider()
+
+			Text("Parallel Uploads", style = MaterialTheme.typography.titleMedium)
+			Text(
+				"The most queued chunks transcribed at once. Fewer run while the API is rate limiting or slow. More clears a backlog faster; the transcript still fills in order.",
+				style = MaterialTheme.typography.bodySmall
+			)
+			Row(horizontalArrangement = Arrangement.spacedBy(8.dp)) {
+				listOf(1, 2, 3, 4).forEach { value ->
+					FilterChip(
+						selected = maxParallelUploads == value,
+						onClick = { maxParallelUploads = value; TranscriptionSettingsStore.saveMaxParallelUploads(context, value) },
+						label = { Text(value.toString()) }
+					)
+				}
+			}
+
+			Row(
+				modifier = Modifier.fillMaxWidth(),
+				horizontalArrangement = Arrangement.SpaceBetween
+			) {
+				Column(modifier = Modifier.weight(1f)) {
+					Text("Retry Slow Requests Early", style = MaterialTheme.typography.titleMedium)
+					Text(
+						"When a chunk takes longer than usual, send it a second time and use whichever answer arrives first. Limited to about one chunk in ten; each copy is billed.",
+						style = MaterialTheme.typography.bodySmall
+					)
+				}
+				Switch(
+					checked = hedging,
+					onCheckedChange = { hedging = it; TranscriptionSettingsStore.saveHedgingEnabled(context, it) }
+				)
+			}
+
+			HorizontalDivider()
+
+			Text("API Rate Limit", style = MaterialTheme.typography.titleMedium)
+			Text(
+				"Uploads wait instead of exceeding these limits. They apply to the saved API key; match them to your OpenAI account's tier.",
+				style = MaterialTheme.typography.bodySmall
+			)
+			Text("Requests per minute", style = MaterialTheme.typography.labelLarge)
+			Row(horizontalArrangement = Arrangement.spacedBy(8.dp)) {
+				listOf(3, 50, 500).forEach { value ->
+					FilterChip(
+						selected = rateLimits.requestsPerMinute == value,
+						onClick = {
+							rateLimits = rateLimits.copy(requestsPerMinute = value)
+							TranscriptionSettingsStore.saveRateLimits(context, ApiKeyStore.getApiKey(context), rateLimits)
+						},
+						label = { Text(value.toString()) }
+					)
+				}
+			}
+			Text("Audio per minute", style = MaterialTheme.typography.labelLarge)
+			Row(horizontalArrangement = Arrangement.spacedBy(8.dp)) {
+				listOf(600, 1800, 3600).forEach { value ->
+					FilterChip(
+						selected = rateLimits.audioSecondsPerMinute == value,
+						onClick = {
+							rateLimits = rateLimits.copy(audioSecondsPerMinute = value)
+							TranscriptionSettingsStore.saveRateLimits(context, ApiKeyStore.getApiKey(context), rateLimits)
+						},
+						label = { Text("${value / 60} min") }
+					)
+				}
+			}
+
+			HorizontalDivider()
+
+			Text("Network Diagnostics", style = MaterialTheme.typography.titleMedium)
+			Text(
+				"Timings and sizes of recent API calls. Audio and transcripts are never recorded.",
+				style = MaterialTheme.typography.bodySmall
+			)
+			OutlinedButton(onClick = { context.startActivity(Intent(context, NetworkDebugActivity::class.java)) }) {
+				Text("Open Network Log")
+			}
+
+			if (NetworkClient.bodyLoggingAllowed) {
+				Row(
+					modifier = Modifier.fillMaxWidth(),
+					horizontalArrangement = Arrangement.SpaceBetween
+				) {
+					Column(modifier = Modifier.weight(1f)) {
+						Text("Log Request Bodies", style = MaterialTheme.typography.titleMedium)
+						Text(
+							"Debug builds only. Writes full requests and responses, including uploaded audio, to logcat.",
+							style = MaterialTheme.typography.bodySmall
+						)
+					}
+					Switch(
+						checked = bodyLogging,
+						onCheckedChange = { bodyLogging = it; TranscriptionSettingsStore.saveBodyLoggingEnabled(context, it) }
+					)
+				}
+			}
 		}
 	}
 }
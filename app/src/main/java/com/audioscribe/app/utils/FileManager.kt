@@ -2,6 +2,8 @@ package com.audioscribe.app.utils
 
 import android.content.Context
 import android.util.Log
+import com.audioscribe.app.audio.ChunkEncoding
+import com.audioscribe.app.audio.MappedWavChunkWriter
 import java.io.File
 import java.util.concurrent.TimeUnit
 
@@ -18,7 +20,7 @@ object FileManager {
     private const val MAX_FAILED_FILE_AGE_HOURS = 1L // Delete failed files after 1 hour
     
     /**
-     * Delete a WAV file after successful transcription
+     * Delete an audio chunk file after successful transcription
      */
     fun deleteTranscribedFile(audioFile: File): Boolean {
         return try {
@@ -63,7 +65,7 @@ object FileManager {
         
         try {
             audioDir.listFiles()?.forEach { file ->
-                if (file.isFile && file.name.endsWith(".wav")) {
+                if (isAudioChunkFile(file)) {
                     val fileAge = currentTime - file.lastModified()
                     val fileSize = file.length()
                     
@@ -102,6 +104,34 @@ object FileManager {
         return result
     }
     
+    /**
+     * Repair WAV chunks left preallocated by a recording that was killed mid-chunk.
+     * Files modified at or after [olderThan] may still be open in a writer and are left alone,
+     * as are the files in [skipPaths] (chunks already waiting in the transcription queue).
+     * @return Number of files that were repaired
+     */
+    fun recoverInterruptedChunks(context: Context, olderThan: Long, skipPaths: Set<String>): Int {
+        val audioDir = getAudioDirectory(context)
+        var recovered = 0
+        try {
+            audioDir.listFiles()?.forEach { file ->
+                if (isAudioChunkFile(file) &&
+                    ChunkEncoding.forFile(file) == ChunkEncoding.WAV &&
+                    file.lastModified() < olderThan &&
+                    file.absolutePath !in skipPaths
+                ) {
+                    if (MappedWavChunkWriter.recover(file)) recovered++
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Error recovering interrupted chunks", e)
+        }
+        if (recovered > 0) {
+            Log.i(TAG, "Recovered $recovered interrupted chunk(s)")
+        }
+        return recovered
+    }
+    
     /**
      * Get the directory where audio files are stored
      */
@@ -121,7 +151,7 @@ object FileManager {
         
         try {
             audioDir.listFiles()?.forEach { file ->
-                if (file.isFile && file.name.endsWith(".wav")) {
+                if (isAudioChunkFile(file)) {
                     fileCount++
                     totalSize += file.length()
                     
@@ -143,6 +173,13 @@ object FileManager {
         )
     }
     
+    /**
+     * Check if a file is a recorded chunk in any of the formats the capture pipeline writes
+     */
+    fun isAudioChunkFile(file: File): Boolean {
+        return file.isFile && file.extension.lowercase() in ChunkEncoding.extensions
+    }
+    
     /**
      * Check if a file appears to be from a failed transcription
      * This is a heuristic based on file age and naming patterns
@@ -0,0 +1,63 @@
+package com.audioscribe.app.utils
+
+/**
+ * Removes text that two consecutive chunks both transcribed because their audio overlapped.
+ * The end of the previous chunk's text is aligned with the start of the next one using the
+ * longest common run of normalized tokens that is a suffix of the former and a prefix of the
+ * latter, give or take [EDGE_SLACK_TOKENS] words cut off or misheard at either edge. The next
+ * chunk's text is trimmed up to the end of that run, by character offset, so its own line
+ * breaks and spacing survive. Without a convincing match the text is kept as-is, since the
+ * words near a seam may just as well have been dropped as duplicated.
+ */
+object TranscriptOverlapMerger {
+
+    private const val MIN_RUN_TOKENS = 2
+    private const val EDGE_SLACK_TOKENS = 3
+    private const val WORDS_PER_SECOND = 4 // Generous speaking rate used to size the search window
+    private const val MIN_WINDOW_TOKENS = 8
+    private val TOKEN = Regex("\\S+")
+
+    /**
+     * @return [next] with the words it shares with the end of [previous] trimmed from its start
+     */
+    fun trimOverlap(previous: String, next: String, overlapMs: Long): String {
+        if (overlapMs <= 0) return next
+        val nextTokens = TOKEN.findAll(next).toList()
+        if (nextTokens.isEmpty()) return next
+        val prevTokens = TOKEN.findAll(previous).map { it.value }.toList()
+        if (prevTokens.isEmpty()) return next
+
+        // Only the words that could have been spoken inside the overlap are candidates
+        val window = maxOf(MIN_WINDOW_TOKENS, (overlapMs * WORDS_PER_SECOND / 1000).toInt() * 2)
+        val tail = prevTokens.takeLast(window).map(::normalize)
+        val head = nextTokens.take(window).map { normalize(it.value) }
+
+        // Longest common run over tokens; lengths[j] is the run ending at tail[i-1], head[j-1].
+        // A run counts only if it ends near the end of tail and starts near the start of head.
+        var lengths = IntArray(head.size + 1)
+        var row = IntArray(head.size + 1)
+        var bestLength = 0
+        var bestHeadEnd = 0
+        for (i in 1..tail.size) {
+            val endsNearTailEnd = i >= tail.size - EDGE_SLACK_TOKENS
+            for (j in 1..head.size) {
+                row[j] = if (tail[i - 1].isNotEmpty() && tail[i - 1] == head[j - 1]) lengths[j - 1] + 1 else 0
+                val length = row[j]
+                if (endsNearTailEnd && length > bestLength && j - length <= EDGE_SLACK_TOKENS) {
+                    bestLength = length
+                    bestHeadEnd = j
+                }
+            }
+            val swap = lengths
+            lengths = row
+            row = swap
+        }
+
+        if (bestLength < MIN_RUN_TOKENS) return next
+        if (bestHeadEnd >= nextTokens.size) return ""
+        return next.substring(nextTokens[bestHeadEnd].range.first)
+    }
+
+    private fun normalize(token: String): String =
+        token.lowercase().filter { it.isLetterOrDigit() }
+}
@@ -3,11 +3,40 @@ package com.audioscribe.app.utils
 import android.content.Context
 import androidx.security.crypto.EncryptedSharedPreferences
 import androidx.security.crypto.MasterKey
+import com.audioscribe.app.audio.ChunkEncoding
+import com.audioscribe.app.audio.ChunkWindowPreset
+import com.audioscribe.app.data.network.NetworkClient
+import com.audioscribe.app.data.network.RequestHedger
+import com.audioscribe.app.data.network.WhisperRateLimiter
+import com.audioscribe.app.data.network.WhisperRateLimits
 
 object TranscriptionSettingsStore {
 	private const val PREFS_NAME = "secure_prefs"
 	private const val KEY_SPEED_FACTOR = "transcription_speed_factor"
 	private const val DEFAULT_SPEED = 1.0f
+	private const val KEY_CHUNK_ENCODING = "chunk_encoding"
+	private val DEFAULT_ENCODING = ChunkEncoding.AAC
+	private const val KEY_SKIP_SILENCE = "skip_silent_chunks"
+	private const val DEFAULT_SKIP_SILENCE = true
+	private const val KEY_CHUNK_WINDOW = "chunk_window_preset"
+	private val DEFAULT_CHUNK_WINDOW = ChunkWindowPreset.BALANCED
+	private const val KEY_CHUNK_OVERLAP = "chunk_overlap"
+	private const val DEFAULT_CHUNK_OVERLAP = false
+	private const val KEY_DUAL_SOURCE = "dual_source_capture"
+	private const val DEFAULT_DUAL_SOURCE = false
+	private const val KEY_SEPARATE_SOURCE_CHANNELS = "separate_source_channels"
+	private const val DEFAULT_SEPARATE_SOURCE_CHANNELS = false
+	private const val KEY_STREAM_WHILE_RECORDING = "stream_while_recording"
+	private const val DEFAULT_STREAM_WHILE_RECORDING = false
+	private const val KEY_MAX_PARALLEL_UPLOADS = "max_parallel_uploads"
+	private const val DEFAULT_MAX_PARALLEL_UPLOADS = 3
+	private const val KEY_HEDGE_REQUESTS = "hedge_slow_requests"
+	private const val DEFAULT_HEDGE_REQUESTS = false
+	private const val KEY_BODY_LOGGING = "debug_body_logging"
+	private const val DEFAULT_BODY_LOGGING = false
+	// Rate limits are per API key; the key's fingerprint is appended
+	private const val KEY_REQUESTS_PER_MINUTE = "rate_limit_rpm_"
+	private const val KEY_AUDIO_SECONDS_PER_MINUTE = "rate_limit_audio_"
 
 	private fun getPrefs(context: Context) = EncryptedSharedPreferences.create(
 		context,
@@ -26,4 +55,106 @@ object TranscriptionSettingsStore {
 	fun saveSpeedFactor(context: Context, value: Float) {
 		getPrefs(context).edit().putFloat(KEY_SPEED_FACTOR, value).apply()
 	}
+
+	fun getChunkEncoding(context: Context): ChunkEncoding {
+		val name = getPrefs(context).getString(KEY_CHUNK_ENCODING, null)
+		return ChunkEncoding.values().firstOrNull { it.name == name } ?: DEFAULT_ENCODING
+	}
+
+	fun saveChunkEncoding(context: Context, value: ChunkEncoding) {
+		getPrefs(context).edit().putString(KEY_CHUNK_ENCODING, value.name).apply()
+	}
+
+	fun isSkipSilenceEnabled(context: Context): Boolean {
+		return getPrefs(context).getBoolean(KEY_SKIP_SILENCE, DEFAULT_SKIP_SILENCE)
+	}
+
+	fun saveSkipSilenceEnabled(context: Context, value: Boolean) {
+		getPrefs(context).edit().putBoolean(KEY_SKIP_SILENCE, value).apply()
+	}
+
+	fun getChunkWindowPreset(context: Context): ChunkWindowPreset {
+		val name = getPrefs(context).getString(KEY_CHUNK_WINDOW, null)
+		return ChunkWindowPreset.values().firstOrNull { it.name == name } ?: DEFAULT_CHUNK_WINDOW
+	}
+
+	fun saveChunkWindowPreset(context: Context, value: ChunkWindowPreset) {
+		getPrefs(context).edit().putString(KEY_CHUNK_WINDOW, value.name).apply()
+	}
+
+	fun isChunkOverlapEnabled(context: Context): Boolean {
+		return getPrefs(context).getBoolean(KEY_CHUNK_OVERLAP, DEFAULT_CHUNK_OVERLAP)
+	}
+
+	fun saveChunkOverlapEnabled(context: Context, value: Boolean) {
+		getPrefs(context).edit().putBoolean(KEY_CHUNK_OVERLAP, value).apply()
+	}
+
+	fun isDualSourceEnabled(context: Context): Boolean {
+		return getPrefs(context).getBoolean(KEY_DUAL_SOURCE, DEFAULT_DUAL_SOURCE)
+	}
+
+	fun saveDualSourceEnabled(context: Context, value: Boolean) {
+		getPrefs(context).edit().putBoolean(KEY_DUAL_SOURCE, value).apply()
+	}
+
+	fun isSeparateSourceChannelsEnabled(context: Context): Boolean {
+		return getPrefs(context).getBoolean(KEY_SEPARATE_SOURCE_CHANNELS, DEFAULT_SEPARATE_SOURCE_CHANNELS)
+	}
+
+	fun saveSeparateSourceChannelsEnabled(context: Context, value: Boolean) {
+		getPrefs(context).edit().putBoolean(KEY_SEPARATE_SOURCE_CHANNELS, value).apply()
+	}
+
+	fun isStreamWhileRecordingEnabled(context: Context): Boolean {
+		return getPrefs(context).getBoolean(KEY_STREAM_WHILE_RECORDING, DEFAULT_STREAM_WHILE_RECORDING)
+	}
+
+	fun saveStreamWhileRecordingEnabled(context: Context, value: Boolean) {
+		getPrefs(context).edit().putBoolean(KEY_STREAM_WHILE_RECORDING, value).apply()
+	}
+
+	fun getMaxParallelUploads(context: Context): Int {
+		return getPrefs(context).getInt(KEY_MAX_PARALLEL_UPLOADS, DEFAULT_MAX_PARALLEL_UPLOADS)
+	}
+
+	fun saveMaxParallelUploads(context: Context, value: Int) {
+		getPrefs(context).edit().putInt(KEY_MAX_PARALLEL_UPLOADS, value).apply()
+	}
+
+	fun isHedgingEnabled(context: Context): Boolean {
+		return getPrefs(context).getBoolean(KEY_HEDGE_REQUESTS, DEFAULT_HEDGE_REQUESTS)
+	}
+
+	fun saveHedgingEnabled(context: Context, value: Boolean) {
+		getPrefs(context).edit().putBoolean(KEY_HEDGE_REQUESTS, value).apply()
+		RequestHedger.enabled = value
+	}
+
+	fun isBodyLoggingEnabled(context: Context): Boolean {
+		return getPrefs(context).getBoolean(KEY_BODY_LOGGING, DEFAULT_BODY_LOGGING)
+	}
+
+	fun saveBodyLoggingEnabled(context: Context, value: Boolean) {
+		getPrefs(context).edit().putBoolean(KEY_BODY_LOGGING, value).apply()
+		NetworkClient.setBodyLoggingEnabled(value)
+	}
+
+	fun getRateLimits(context: Context, apiKey: String): WhisperRateLimits {
+		val prefs = getPrefs(context)
+		val id = WhisperRateLimiter.fingerprint(apiKey)
+		return WhisperRateLimits(
+			requestsPerMinute = prefs.getInt(KEY_REQUESTS_PER_MINUTE + id, WhisperRateLimits.DEFAULT.requestsPerMinute),
+			audioSecondsPerMinute = prefs.getInt(KEY_AUDIO_SECONDS_PER_MINUTE + id, WhisperRateLimits.DEFAULT.audioSecondsPerMinute)
+		)
+	}
+
+	fun saveRateLimits(context: Context, apiKey: String, value: WhisperRateLimits) {
+		val id = WhisperRateLimiter.fingerprint(apiKey)
+		getPrefs(context).edit()
+			.putInt(KEY_REQUESTS_PER_MINUTE + id, value.requestsPerMinute)
+			.putInt(KEY_AUDIO_SECONDS_PER_MINUTE + id, value.audioSecondsPerMinute)
+			.apply()
+		WhisperRateLimiter.configure(apiKey, value)
+	}
 }
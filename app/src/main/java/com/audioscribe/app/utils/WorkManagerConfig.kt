@@ -31,7 +31,7 @@ object WorkManagerConfig {
     private fun getRequiredNetworkType(context: Context): NetworkType {
         // TODO: Make this configurable in settings
         // For transcription, we need internet but don't necessarily need unmetered
-        // since audio files are relatively small (30-second chunks)
+        // since audio files are relatively small (sub-minute chunks by default)
         return NetworkType.CONNECTED
     }
     
@@ -1,19 +1,43 @@
 package com.audioscribe.app.worker
 
+import android.app.NotificationChannel
+import android.app.NotificationManager
 import android.content.Context
 import android.content.Intent
+import android.content.pm.ServiceInfo
+import android.os.SystemClock
 import android.util.Log
+import androidx.core.app.NotificationCompat
 import androidx.work.CoroutineWorker
+import androidx.work.ForegroundInfo
 import androidx.work.WorkerParameters
 import androidx.work.Data
-import androidx.work.ListenableWorker
+import androidx.work.ExistingWorkPolicy
+import androidx.work.OneTimeWorkRequest
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkInfo
+import androidx.work.WorkManager
+import com.audioscribe.app.R
+import com.audioscribe.app.audio.CaptureFormat
+import com.audioscribe.app.data.network.CircuitOpenException
+import com.audioscribe.app.data.network.HedgeStats
+import com.audioscribe.app.data.network.NetworkClient
+import com.audioscribe.app.data.network.NetworkConnectionStats
+import com.audioscribe.app.data.network.RequestHedger
+import com.audioscribe.app.data.network.TranscriptionApiException
+import com.audioscribe.app.data.network.TranscriptionCircuitBreaker
+import com.audioscribe.app.data.network.WhisperRateLimiter
 import com.audioscribe.app.data.repository.TranscriptionRepository
 import com.audioscribe.app.service.AudioCaptureService
 import com.audioscribe.app.utils.ApiKeyStore
 import com.audioscribe.app.utils.FileManager
-import com.audioscribe.app.data.repository.SessionRepository
 import com.audioscribe.app.data.database.entity.TranscriptChunk
 import com.audioscribe.app.data.database.entity.ChunkStatus
+import com.audioscribe.app.data.database.entity.QueuedChunk
+import com.audioscribe.app.data.repository.TranscriptionQueueRepository
+import com.audioscribe.app.data.repository.TranscriptCommitter
+import com.audioscribe.app.data.repository.TranscriptCacheRepository
+import com.audioscribe.app.utils.WorkManagerConfig
 import java.util.Date
 import java.io.File
 import java.net.SocketTimeoutException
@@ -37,10 +61,39 @@ import androidx.media3.common.util.UnstableApi
 import kotlin.coroutines.resume
 import kotlin.coroutines.resumeWithException
 import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
- * CoroutineWorker for handling transcription tasks in the background.
- * This worker processes audio files and sends transcription results via broadcast.
+ * Long-running CoroutineWorker that drains the persistent transcription queue.
+ *
+ * Chunks are queued in Room with [enqueue], and one unique run of this worker uploads them,
+ * up to the configured number of parallel uploads at a time, with a single repository and HTTP
+ * client kept warm across chunks. Transcripts go through [TranscriptCommitter], so they land in
+ * chunk order however the uploads finish. The API key, speed factor and parallelism are read
+ * once per run. The configured parallelism is a ceiling; the repository's shared limiter
+ * decides how many uploads actually run, from 429s, 5xx and latency. Failed attempts are
+ * rescheduled in the queue itself, with exponential backoff, instead of as new WorkRequests.
+ * A rate-limited chunk waits for Retry-After and keeps its attempts. While the
+ * [TranscriptionCircuitBreaker] is open, no chunks are claimed, and chunks that fail because
+ * of the outage are parked until the next probe without using up attempts.
+ * After the queue empties, the run waits [IDLE_LINGER_MS] for more chunks before it exits, so
+ * one run normally covers a whole recording. To outlive WorkManager's execution limit, the run
+ * promotes itself to a foreground service. If the system refuses that (e.g. the app is in the
+ * background), the run stops claiming chunks after [BACKGROUND_RUN_MS] and queues its successor,
+ * so no upload is cut off mid-request.
  */
 class TranscriptionWorker(
 	context: Context,
@@ -50,82 +103,143 @@ class TranscriptionWorker(
 	companion object {
 		private const val TAG = "TranscriptionWorker"
 		
-		// Input data keys
+		const val UNIQUE_WORK_NAME = "transcription_queue"
+		
+		// Input data keys of per-chunk work requests queued by earlier versions; such a run queues its chunk first
 		const val KEY_AUDIO_FILE_PATH = "audio_file_path"
 		const val KEY_LANGUAGE = "language"
 		const val KEY_SESSION_ID = "session_id"
 		const val KEY_CHUNK_ORDER = "chunk_order"
+		const val KEY_DURATION_MS = "duration_ms"
+		const val KEY_OVERLAP_MS = "overlap_ms"
+		const val KEY_PAUSE_BEFORE_MS = "pause_before_ms"
 		
 		// Output data keys
-		const val KEY_RESULT_TEXT = "result_text"
 		const val KEY_ERROR_MESSAGE = "error_message"
 		
+		// Queue processing
+		private const val IDLE_LINGER_MS = 90_000L // Longer than a chunk, so a recording keeps one run alive
+		private const val CONSTRAINT_RETRY_MS = 30_000L
+		private const val RATE_LIMIT_RETRY_MS = 5_000L // 429 without Retry-After; the shared limiter paces the rest
+		private const val CIRCUIT_RECHECK_MS = 5_000L // While another request probes the API
+		private const val FAILED_RETENTION_MS = 7L * 24 * 60 * 60 * 1000
+		private const val BACKGROUND_RUN_MS = 6 * 60 * 1000L // Well inside WorkManager's 10 minute limit, uploads included
+		
+		// Notification shown while a run is in the foreground
+		private const val NOTIFICATION_ID = 2
+		private const val CHANNEL_ID = "transcription_channel"
+		private const val CHANNEL_NAME = "Transcription"
+		private const val CACHE_RETENTION_MS = 30L * 24 * 60 * 60 * 1000
+		
 		// Retry configuration
 		private const val MAX_RETRY_ATTEMPTS = 3
 		
+		// Whether a run is draining the queue in this process, and whether one has already
+		// re-queued the chunks a previous process left in progress; guarded by runMutex
+		private val runMutex = Mutex()
+		private var running = false
+		private var recoveredInProcess = false
+		
+		// Nudges a waiting run when a chunk is queued or an attempt finishes
+		private val wakeUp = Channel<Unit>(Channel.CONFLATED)
+		
+		// Chunks being transcribed by the current run
+		private val inFlight = AtomicInteger(0)
+		
 		/**
-		 * Create input data for the transcription worker
+		 * Queue depth, uploads in flight and transcripts held for ordering, for display
 		 */
-		fun createInputData(
-			audioFilePath: String, 
-			language: String? = null,
-			sessionId: Long? = null,
-			chunkOrder: Int? = null
-		): Data {
-			val builder = Data.Builder()
-				.putString(KEY_AUDIO_FILE_PATH, audioFilePath)
-			
-			// Only add language if it's not null (for auto-detection, omit the parameter)
-			if (language != null) {
-				builder.putString(KEY_LANGUAGE, language)
+		suspend fun getQueueMetrics(context: Context): TranscriptionQueueMetrics {
+			val active = inFlight.get()
+			val committer = TranscriptCommitter.getInstance(context)
+			return TranscriptionQueueMetrics(
+				queueDepth = (TranscriptionQueueRepository(context).getPendingCount() - active).coerceAtLeast(0),
+				inFlight = active,
+				heldResults = committer.heldCount,
+				commitLagMs = committer.commitLagMs,
+				concurrencyLimit = TranscriptionRepository.concurrencyLimit,
+				rateLimitWaitMs = WhisperRateLimiter.averageWaitMs.toLong(),
+				cacheHits = TranscriptCacheRepository.hitCount,
+				cacheMisses = TranscriptCacheRepository.missCount,
+				connections = NetworkClient.connectionStats(),
+				hedges = RequestHedger.stats()
+			)
+		}
+		
+		/**
+		 * Queue a chunk for transcription and make sure a run is draining the queue
+		 * @return ID of the queue entry
+		 */
+		suspend fun enqueue(context: Context, chunk: QueuedChunk): Long {
+			val id = TranscriptionQueueRepository(context).enqueue(chunk)
+			runMutex.withLock {
+				if (!running) {
+					val workManager = WorkManager.getInstance(context)
+					// A run that has already decided to exit will not see this chunk; queue the next run behind it
+					val exiting = withContext(Dispatchers.IO) {
+						workManager.getWorkInfosForUniqueWork(UNIQUE_WORK_NAME).get()
+					}.any { it.state == WorkInfo.State.RUNNING }
+					val policy = if (exiting) ExistingWorkPolicy.APPEND_OR_REPLACE else ExistingWorkPolicy.KEEP
+					// Waited for, so callers watching the unique work never see only the previous, finished run
+					withContext(Dispatchers.IO) {
+						workManager.enqueueUniqueWork(UNIQUE_WORK_NAME, policy, buildRequest(context)).result.get()
+					}
+				}
 			}
-			
-			// Add session information if provided
-			sessionId?.let { builder.putLong(KEY_SESSION_ID, it) }
-			chunkOrder?.let { builder.putInt(KEY_CHUNK_ORDER, it) }
-			
-			return builder.build()
+			wakeUp.trySend(Unit)
+			return id
+		}
+		
+		/**
+		 * Start a run if none is scheduled, e.g. to finish chunks left queued by a previous process
+		 */
+		fun resume(context: Context) {
+			WorkManager.getInstance(context)
+				.enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.KEEP, buildRequest(context))
+		}
+		
+		private fun buildRequest(context: Context): OneTimeWorkRequest {
+			return OneTimeWorkRequestBuilder<TranscriptionWorker>()
+				.setConstraints(WorkManagerConfig.getTranscriptionConstraints(context))
+				.setBackoffCriteria(
+					WorkManagerConfig.getBackoffPolicy(),
+					WorkManagerConfig.getInitialBackoffDelaySeconds(),
+					WorkManagerConfig.getBackoffTimeUnit()
+				)
+				.build()
 		}
 	}
 
 	private val transcriptionRepository = TranscriptionRepository()
-	private val sessionRepository by lazy { SessionRepository(applicationContext) }
+	private val queueRepository by lazy { TranscriptionQueueRepository(applicationContext) }
+	private val committer by lazy { TranscriptCommitter.getInstance(applicationContext) }
+	private val transcriptCache by lazy { TranscriptCacheRepository(applicationContext) }
 
 	override suspend fun doWork(): Result {
+		val firstRunInProcess = runMutex.withLock {
+			running = true
+			!recoveredInProcess.also { recoveredInProcess = true }
+		}
 		return try {
-			Log.d(TAG, "Starting transcription work (attempt ${runAttemptCount + 1})")
-			
-			// Check if work has been cancelled before starting
-			if (isStopped) {
-				Log.i(TAG, "Work was cancelled before starting")
-				return Result.failure(createErrorOutput("Work was cancelled"))
-			}
-			
-			// Get input parameters
-			val audioFilePath = inputData.getString(KEY_AUDIO_FILE_PATH)
-			val language = inputData.getString(KEY_LANGUAGE) // null means auto-detect
-			// Avoid hasKeyWithValueOfType to prevent type mismatch issues
-			val sessionIdValue = inputData.getLong(KEY_SESSION_ID, Long.MIN_VALUE)
-			val sessionId = sessionIdValue.takeIf { it != Long.MIN_VALUE }
-			val chunkOrderValue = inputData.getInt(KEY_CHUNK_ORDER, Int.MIN_VALUE)
-			val chunkOrder = chunkOrderValue.takeIf { it != Int.MIN_VALUE }
-			Log.d(TAG, "InputData -> sessionId=${sessionId ?: "null"}, chunkOrder=${chunkOrder ?: "null"}")
-			
-			if (audioFilePath.isNullOrBlank()) {
-				Log.e(TAG, "Audio file path is null or empty")
-				return Result.failure(createErrorOutput("Audio file path is required"))
-			}
+			Log.d(TAG, "Starting transcription queue run (attempt ${runAttemptCount + 1})")
 			
-			var audioFile = File(audioFilePath)
-			if (!audioFile.exists()) {
-				Log.e(TAG, "Audio file does not exist: $audioFilePath")
-				return Result.failure(createErrorOutput("Audio file not found: $audioFilePath"))
+			queueLegacyInput()
+			// Later runs in this process find chunks in progress only while their transcripts
+			// are held by the committer; those must not be uploaded again
+			if (firstRunInProcess) {
+				val recovered = queueRepository.recoverInterrupted()
+				if (recovered > 0) Log.i(TAG, "Re-queued $recovered chunks left in progress")
 			}
+			val pruned = queueRepository.pruneFailed(FAILED_RETENTION_MS)
+			if (pruned > 0) Log.d(TAG, "Pruned $pruned failed queue entries")
+			val expired = transcriptCache.prune(CACHE_RETENTION_MS)
+			if (expired > 0) Log.d(TAG, "Pruned $expired cached transcripts")
+			// Queued chunks hold back later transcripts of their session, even after a restart
+			queueRepository.getPendingChunks().forEach { committer.expect(it.sessionId, it.chunkOrder) }
 			
-			// Check cancellation again before API key retrieval
-			if (isStopped) {
-				Log.i(TAG, "Work was cancelled during validation")
-				return Result.failure(createErrorOutput("Work was cancelled"))
+			if (tryFinish()) {
+				Log.d(TAG, "Transcription queue is empty")
+				return Result.success()
 			}
 			
 			// Get API key
@@ -134,136 +248,382 @@ class TranscriptionWorker(
 				Log.e(TAG, "API key not configured")
 				val errorMessage = "OpenAI API key not configured. Set it in Settings."
 				sendTranscriptionBroadcast(error = errorMessage)
+				// Chunks stay queued for the run started when a key is saved or the app restarts;
+				// the capture service sees this run finish and stops waiting for them
 				return Result.failure(createErrorOutput(errorMessage))
 			}
+			val speedFactor = TranscriptionSettingsStore.getSpeedFactor(applicationContext)
+			val parallelism = TranscriptionSettingsStore.getMaxParallelUploads(applicationContext).coerceAtLeast(1)
 			
-			// Check device constraints before proceeding with expensive operation
-			if (!checkDeviceConstraints()) {
-				Log.w(TAG, "Device constraints not met, deferring work")
-				return Result.retry()
-			}
-			
-			Log.d(TAG, "Transcribing file: ${audioFile.name} (${audioFile.length()} bytes)")
+			val deadline = if (promoteToForeground()) null else SystemClock.elapsedRealtime() + BACKGROUND_RUN_MS
+			val expired = drainQueue(apiKey, speedFactor, parallelism, deadline)
 			
-			// Optional speed-up using Media3 Transformer, based on Settings
-			val speedFactor = TranscriptionSettingsStore.getSpeedFactor(applicationContext)
-			if (speedFactor > 1.0f) {
+			if (expired && !isStopped) {
+				// Hand over to a fresh run before the limit; it starts as soon as this one returns
+				Log.i(TAG, "Background run time used up, continuing in a new run")
+				WorkManager.getInstance(applicationContext)
+					.enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, buildRequest(applicationContext))
+				Result.success()
+			} else if (isStopped || queueRepository.getPendingCount() > 0) {
+				Log.i(TAG, "Queue run stopped with chunks pending, will retry")
+				Result.retry()
+			} else {
+				// Finished runs and earlier per-chunk requests have nothing left to report
+				WorkManager.getInstance(applicationContext).pruneWork()
+				Log.d(TAG, "Transcription queue drained (connections: ${NetworkClient.connectionStats()})")
+				Result.success()
+			}
+		} catch (e: CancellationException) {
+			throw e
+		} catch (e: Exception) {
+			Log.e(TAG, "Unexpected error while draining the transcription queue", e)
+			Result.retry()
+		} finally {
+			withContext(NonCancellable) {
+				runMutex.withLock { running = false }
+			}
+		}
+	}
+	
+	override suspend fun getForegroundInfo(): ForegroundInfo = createForegroundInfo()
+	
+	/**
+	 * Run the rest of this run as a foreground service, lifting the execution time limit
+	 * @return false if the system did not allow it
+	 */
+	private suspend fun promoteToForeground(): Boolean {
+		return try {
+			setForeground(createForegroundInfo())
+			true
+		} catch (e: CancellationException) {
+			throw e
+		} catch (e: Exception) {
+			Log.w(TAG, "Could not run in the foreground, limiting the run to ${BACKGROUND_RUN_MS / 1000} s: ${e.message}")
+			false
+		}
+	}
+	
+	private fun createForegroundInfo(): ForegroundInfo {
+		val notificationManager = applicationContext.getSystemService(NotificationManager::class.java)
+		notificationManager.createNotificationChannel(
+			NotificationChannel(CHANNEL_ID, CHANNEL_NAME, NotificationManager.IMPORTANCE_LOW).apply {
+				description = "Shows when Audioscribe is uploading recordings for transcription"
+				setSound(null, null)
+			}
+		)
+		val notification = NotificationCompat.Builder(applicationContext, CHANNEL_ID)
+			.setContentTitle("Transcribing")
+			.setContentText("Uploading recorded chunks...")
+			.setSmallIcon(R.drawable.ic_notification)
+			.setOngoing(true)
+			.setSilent(true)
+			.build()
+		return ForegroundInfo(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC)
+	}
+	
+	/**
+	 * Claim due chunks and transcribe them, at most [parallelism] at a time, until the queue
+	 * has been empty for [IDLE_LINGER_MS], the run is stopped, or [deadline] (elapsed realtime)
+	 * passes. Chunks already claimed are finished before returning.
+	 * @return true if the run ended because of [deadline]
+	 */
+	private suspend fun drainQueue(apiKey: String, speedFactor: Float, parallelism: Int, deadline: Long?): Boolean = coroutineScope {
+		val permits = Semaphore(parallelism)
+		val active = inFlight
+		var processedAny = false
+		var currentApiKey = apiKey
+		var expired = false
+		while (!isStopped) {
+			if (deadline != null && SystemClock.elapsedRealtime() >= deadline) {
+				expired = true
+				break
+			}
+			// Waits end at the deadline, so the run does not idle past it
+			val maxWaitMs = if (deadline != null) (deadline - SystemClock.elapsedRealtime()).coerceAtLeast(0L) else Long.MAX_VALUE
+			permits.acquire()
+			if (awaitCircuit(maxWaitMs)) {
+				permits.release()
+				// The outage may have been a revoked key that has since been replaced
+				currentApiKey = ApiKeyStore.getApiKey(applicationContext).ifBlank { currentApiKey }
+				continue
+			}
+			val chunk = queueRepository.claimNext()
+			if (chunk == null) {
+				permits.release()
+				if (awaitWork(busy = active.get() > 0, linger = processedAny, maxWaitMs = maxWaitMs)) continue
+				break
+			}
+			processedAny = true
+			active.incrementAndGet()
+			launch {
 				try {
-					val spedUp = exportWithSpeed(audioFile, speedFactor)
-					if (spedUp != null && spedUp.exists()) {
-						Log.d(TAG, "Using sped-up audio (${speedFactor}x): ${spedUp.name} -> ${spedUp.length()} bytes")
-						audioFile = spedUp
-					} else {
-						Log.w(TAG, "Speed-up export failed; falling back to original audio")
-					}
-				} catch (e: Exception) {
-					Log.w(TAG, "Speed-up export error; using original audio: ${e.message}")
+					transcribeQueued(chunk, currentApiKey, speedFactor)
+				} finally {
+					active.decrementAndGet()
+					permits.release()
+					wakeUp.trySend(Unit)
 				}
 			}
+		}
+		expired
+	}
+	
+	/**
+	 * Hold off claiming chunks while the circuit breaker is open, or while another request probes
+	 * @return true if the run waited and should check again
+	 */
+	private suspend fun awaitCircuit(maxWaitMs: Long): Boolean {
+		val status = TranscriptionCircuitBreaker.status.value
+		if (status.state == TranscriptionCircuitBreaker.State.CLOSED) return false
+		val waitMs = TranscriptionCircuitBreaker.remainingOpenMs()
+		// Open period over: the next request is the probe
+		if (status.state == TranscriptionCircuitBreaker.State.OPEN && waitMs == 0L) return false
+		Log.d(TAG, "Transcription API unavailable, parking the queue")
+		withTimeoutOrNull((if (waitMs > 0) waitMs else CIRCUIT_RECHECK_MS).coerceAtMost(maxWaitMs)) {
+			TranscriptionCircuitBreaker.status.first { it != status }
+		}
+		return true
+	}
+	
+	/**
+	 * Wait until a chunk may be due
+	 * @return false if the run should end: nothing is queued, in flight or arriving
+	 */
+	private suspend fun awaitWork(busy: Boolean, linger: Boolean, maxWaitMs: Long): Boolean {
+		val nextAttempt = queueRepository.getNextAttemptTime()
+		if (nextAttempt == null && !busy && !linger) return !tryFinish()
+		val waitMs = if (nextAttempt != null) {
+			(nextAttempt - System.currentTimeMillis()).coerceIn(0L, IDLE_LINGER_MS)
+		} else {
+			IDLE_LINGER_MS
+		}
+		val woken = withTimeoutOrNull(waitMs.coerceAtMost(maxWaitMs)) { wakeUp.receive() } != null
+		if (woken || nextAttempt != null || busy) return true
+		return !tryFinish()
+	}
+	
+	/**
+	 * Stop accepting chunks unless one slipped in; [enqueue] starts a new run after this
+	 * @return true if the queue is empty and the run may end
+	 */
+	private suspend fun tryFinish(): Boolean = runMutex.withLock {
+		val empty = queueRepository.getPendingCount() == 0
+		if (empty) running = false
+		empty
+	}
+	
+	/**
+	 * A run started by a per-chunk request from an earlier version queues that chunk first
+	 */
+	private suspend fun queueLegacyInput() {
+		val audioFilePath = inputData.getString(KEY_AUDIO_FILE_PATH) ?: return
+		// Avoid hasKeyWithValueOfType to prevent type mismatch issues
+		val sessionIdValue = inputData.getLong(KEY_SESSION_ID, Long.MIN_VALUE)
+		val chunkOrderValue = inputData.getInt(KEY_CHUNK_ORDER, Int.MIN_VALUE)
+		val durationMsValue = inputData.getLong(KEY_DURATION_MS, Long.MIN_VALUE)
+		queueRepository.enqueue(
+			QueuedChunk(
+				sessionId = sessionIdValue.takeIf { it != Long.MIN_VALUE },
+				chunkOrder = chunkOrderValue.takeIf { it != Int.MIN_VALUE },
+				audioFilePath = audioFilePath,
+				language = inputData.getString(KEY_LANGUAGE),
+				durationMs = durationMsValue.takeIf { it != Long.MIN_VALUE },
+				overlapMs = inputData.getLong(KEY_OVERLAP_MS, 0L),
+				pauseBeforeMs = inputData.getLong(KEY_PAUSE_BEFORE_MS, 0L)
+			)
+		)
+	}
+	
+	/**
+	 * Transcribe one claimed chunk and settle its queue entry: removed on success, rescheduled
+	 * after a retryable error, failed otherwise. A cancelled attempt goes straight back to the queue.
+	 */
+	private suspend fun transcribeQueued(chunk: QueuedChunk, apiKey: String, speedFactor: Float) {
+		try {
+			Log.d(TAG, "Transcribing queued chunk ${chunk.id} (attempt ${chunk.attemptCount + 1})")
 			
-			// Check cancellation one more time before starting the network call
-			if (isStopped) {
-				Log.i(TAG, "Work was cancelled before transcription")
-				return Result.failure(createErrorOutput("Work was cancelled"))
+			var audioFile = File(chunk.audioFilePath)
+			val originalAudioFile = audioFile
+			if (!audioFile.exists()) {
+				Log.e(TAG, "Audio file does not exist: ${chunk.audioFilePath}")
+				queueRepository.fail(chunk.id, "Audio file not found: ${chunk.audioFilePath}")
+				committer.skip(chunk.sessionId, chunk.chunkOrder)
+				return
+			}
+			
+			// Audio transcribed before, e.g. by an attempt whose result was lost, is not uploaded again
+			val cachedText = chunk.audioHash?.let { transcriptCache.lookup(it, chunk.language) }
+			if (cachedText == null) {
+				// Check device constraints before proceeding with expensive operation
+				if (!checkDeviceConstraints()) {
+					Log.w(TAG, "Device constraints not met, deferring chunk ${chunk.id}")
+					queueRepository.retryLater(chunk, CONSTRAINT_RETRY_MS, "Device constraints not met", countAttempt = false)
+					return
+				}
+			
+				Log.d(TAG, "Transcribing file: ${audioFile.name} (${audioFile.length()} bytes)")
+			
+				// Optional speed-up using Media3 Transformer, based on Settings
+				if (speedFactor > 1.0f) {
+					try {
+						val spedUp = exportWithSpeed(audioFile, speedFactor)
+						if (spedUp != null && spedUp.exists()) {
+							Log.d(TAG, "Using sped-up audio (${speedFactor}x): ${spedUp.name} -> ${spedUp.length()} bytes")
+							audioFile = spedUp
+						} else {
+							Log.w(TAG, "Speed-up export failed; falling back to original audio")
+						}
+					} catch (e: Exception) {
+						Log.w(TAG, "Speed-up export error; using original audio: ${e.message}")
+					}
+				}
 			}
 			
 			// Perform transcription
-			val result = transcriptionRepository.transcribeAudio(audioFile, apiKey, language)
+			// A sped-up copy is shorter than recorded; the repository measures it instead
+			val audioDurationMs = if (audioFile == originalAudioFile) chunk.durationMs else null
+			val result = if (cachedText != null) {
+				Result.success(cachedText)
+			} else {
+				transcriptionRepository.transcribeAudio(audioFile, apiKey, chunk.language, audioDurationMs).onSuccess { text ->
+					chunk.audioHash?.let { transcriptCache.store(it, chunk.language, text) }
+				}
+			}
 			
 			result.onSuccess { transcriptionText ->
-				Log.i(TAG, "Transcription completed successfully on attempt ${runAttemptCount + 1}")
+				Log.i(TAG, "Transcription of chunk ${chunk.id} completed on attempt ${chunk.attemptCount + 1}")
 				Log.d(TAG, "Transcription text: ${transcriptionText.take(100)}...")
 				
+				// The audio and the queue entry go only once the transcript is in the database
+				val finish: suspend () -> Unit = {
+					val fileDeleted = FileManager.deleteTranscribedFile(originalAudioFile)
+					if (fileDeleted) {
+						Log.d(TAG, "Audio file deleted after successful transcription: ${originalAudioFile.name}")
+					} else {
+						Log.w(TAG, "Failed to delete audio file after transcription: ${originalAudioFile.name}")
+					}
+					queueRepository.complete(chunk.id)
+					sendTranscriptionBroadcast(text = transcriptionText)
+				}
+				
 				// Store chunk in database if session information is available
-				if (sessionId != null && chunkOrder != null) {
+				if (chunk.sessionId != null && chunk.chunkOrder != null) {
 					try {
-						// Compute duration from file size (subtract WAV header ~44 bytes)
-						val bytesPerSecond = 44100 * 2 * 2 // sampleRate * channels(2) * bytesPerSample(2)
-						val dataBytes = (audioFile.length() - 44).coerceAtLeast(0)
-						val durationMs = ((dataBytes * 1000) / bytesPerSecond).toLong()
+						// Prefer the duration recorded by the capture pipeline; otherwise derive it
+						// from the original chunk (the sped-up copy is shorter)
+						val durationMs = chunk.durationMs
+							?: CaptureFormat.estimateDurationMs(originalAudioFile)
 						
-						val chunk = TranscriptChunk(
-							sessionId = sessionId,
-							chunkIndex = chunkOrder,
+						val transcript = TranscriptChunk(
+							sessionId = chunk.sessionId,
+							chunkIndex = chunk.chunkOrder,
 							text = transcriptionText,
+							overlapMs = chunk.overlapMs,
+							pauseBeforeMs = chunk.pauseBeforeMs,
 							durationMs = durationMs,
 							audioFileSizeBytes = audioFile.length(),
 							originalFileName = audioFile.name,
 							status = ChunkStatus.COMPLETED,
 							transcriptionCompletedAt = Date()
 						)
-						sessionRepository.addChunkToSession(chunk)
-						Log.d(TAG, "Stored chunk $chunkOrder for session $sessionId in database")
+						if (audioFile != originalAudioFile) audioFile.delete()
+						if (committer.commit(transcript, onStored = finish)) {
+							Log.d(TAG, "Committed chunk ${chunk.chunkOrder} for session ${chunk.sessionId}")
+						} else {
+							// Stays in progress, so a restart re-runs it from the transcript cache
+							Log.d(TAG, "Chunk ${chunk.id} held for an earlier chunk; keeping its audio and queue entry")
+						}
+					} catch (e: CancellationException) {
+						throw e
 					} catch (e: Exception) {
-						Log.e(TAG, "Failed to store chunk in database", e)
-						// Don't fail the work just because database storage failed
+						// Keep the entry and its audio; the next attempt is answered from the transcript cache
+						Log.e(TAG, "Failed to store chunk in database, keeping chunk ${chunk.id} queued", e)
+						settleStorageFailure(chunk, e)
 					}
 				} else {
 					Log.d(TAG, "No session information available, skipping database storage")
+					if (audioFile != originalAudioFile) audioFile.delete()
+					finish()
 				}
 				
-				// Delete the audio file after successful transcription
-				val fileDeleted = FileManager.deleteTranscribedFile(audioFile)
-				if (fileDeleted) {
-					Log.d(TAG, "Audio file deleted after successful transcription: ${audioFile.name}")
-				} else {
-					Log.w(TAG, "Failed to delete audio file after transcription: ${audioFile.name}")
-				}
-				
-				// Send success broadcast
-				sendTranscriptionBroadcast(text = transcriptionText)
-				
-				// Return success with result data
-				val outputData = Data.Builder()
-					.putString(KEY_RESULT_TEXT, transcriptionText)
-					.build()
-				
-				return Result.success(outputData)
-				
 			}.onFailure { error ->
-				Log.e(TAG, "Transcription failed on attempt ${runAttemptCount + 1}: ${error.message}", error)
-				
-				// Determine if this error should trigger a retry
-				val shouldRetry = shouldRetryForError(error)
-				
-				if (shouldRetry && runAttemptCount < MAX_RETRY_ATTEMPTS) {
-					Log.w(TAG, "Retryable error encountered, will retry. Attempt ${runAttemptCount + 1}/$MAX_RETRY_ATTEMPTS")
-					return Result.retry()
-				} else {
-					Log.e(TAG, "Non-retryable error or max attempts reached. Failing work.")
-					val errorMessage = error.message ?: "Unknown transcription error"
-					
-					// Send error broadcast
-					sendTranscriptionBroadcast(error = errorMessage)
-					
-					return Result.failure(createErrorOutput(errorMessage))
-				}
+				Log.e(TAG, "Transcription of chunk ${chunk.id} failed on attempt ${chunk.attemptCount + 1}: ${error.message}", error)
+				settleFailure(chunk, error)
 			}
 			
-			// This should never be reached due to the onSuccess/onFailure blocks above
-			Result.failure(createErrorOutput("Unexpected transcription result"))
-			
+		} catch (e: CancellationException) {
+			withContext(NonCancellable) { queueRepository.requeue(chunk) }
+			throw e
 		} catch (e: Exception) {
-			Log.e(TAG, "Unexpected error during transcription work on attempt ${runAttemptCount + 1}", e)
-			
-			// Determine if this exception should trigger a retry
-			val shouldRetry = shouldRetryForError(e)
+			Log.e(TAG, "Unexpected error during transcription of chunk ${chunk.id}", e)
+			settleFailure(chunk, e)
+		}
+	}
+	
+	/**
+	 * The transcript of [chunk] could not be stored. Retry with backoff while attempts remain;
+	 * the audio is kept, so the chunk is not lost in the meantime.
+	 */
+	private suspend fun settleStorageFailure(chunk: QueuedChunk, error: Exception) {
+		val message = "Failed to store transcript: ${error.message}"
+		if (chunk.attemptCount + 1 < MAX_RETRY_ATTEMPTS) {
+			queueRepository.retryLater(chunk, backoffDelayMs(chunk.attemptCount), message)
+		} else {
+			Log.e(TAG, "Giving up storing chunk ${chunk.id} after $MAX_RETRY_ATTEMPTS attempts")
+			queueRepository.fail(chunk.id, message)
+			committer.skip(chunk.sessionId, chunk.chunkOrder)
+			sendTranscriptionBroadcast(error = message)
+		}
+	}
+	
+	/**
+	 * Reschedule a failed chunk with exponential backoff, or fail it for good
+	 */
+	private suspend fun settleFailure(chunk: QueuedChunk, error: Throwable) {
+		// A rate limit says nothing about the chunk; retry it once the server allows, without using up an attempt
+		if (error is TranscriptionApiException && error.isRateLimited) {
+			val delayMs = error.retryAfterMs ?: RATE_LIMIT_RETRY_MS
+			Log.w(TAG, "Rate limited, retrying chunk ${chunk.id} in ${delayMs} ms")
+			queueRepository.retryLater(chunk, delayMs, error.message, countAttempt = false)
+			return
+		}
+		
+		// Refused locally, or failed in the outage that opened the breaker: park it until the probe
+		if (error is CircuitOpenException ||
+			TranscriptionCircuitBreaker.status.value.state != TranscriptionCircuitBreaker.State.CLOSED && shouldRetryOnRecovery(error)) {
+			val delayMs = TranscriptionCircuitBreaker.remainingOpenMs().coerceAtLeast(CIRCUIT_RECHECK_MS)
+			Log.w(TAG, "Transcription API unavailable, parking chunk ${chunk.id} for ${delayMs} ms")
+			queueRepository.retryLater(chunk, delayMs, error.message, countAttempt = false)
+			return
+		}
+		
+		// Determine if this error should trigger a retry
+		val shouldRetry = shouldRetryForError(error)
+		
+		if (shouldRetry && chunk.attemptCount + 1 < MAX_RETRY_ATTEMPTS) {
+			Log.w(TAG, "Retryable error encountered, will retry. Attempt ${chunk.attemptCount + 1}/$MAX_RETRY_ATTEMPTS")
+			val retryAfterMs = (error as? TranscriptionApiException)?.retryAfterMs ?: 0L
+			queueRepository.retryLater(chunk, maxOf(backoffDelayMs(chunk.attemptCount), retryAfterMs), error.message)
+		} else {
+			Log.e(TAG, "Non-retryable error or max attempts reached. Failing chunk ${chunk.id}.")
+			val errorMessage = error.message ?: "Unknown transcription error"
+			queueRepository.fail(chunk.id, errorMessage)
+			committer.skip(chunk.sessionId, chunk.chunkOrder)
 			
-			if (shouldRetry && runAttemptCount < MAX_RETRY_ATTEMPTS) {
-				Log.w(TAG, "Retryable exception encountered, will retry. Attempt ${runAttemptCount + 1}/$MAX_RETRY_ATTEMPTS")
-				return Result.retry()
-			} else {
-				Log.e(TAG, "Non-retryable exception or max attempts reached. Failing work.")
-				val errorMessage = e.message ?: "Unexpected error during transcription"
-				
-				// Send error broadcast
-				sendTranscriptionBroadcast(error = errorMessage)
-				
-				return Result.failure(createErrorOutput(errorMessage))
-			}
+			// Send error broadcast
+			sendTranscriptionBroadcast(error = errorMessage)
 		}
 	}
 	
+	/**
+	 * Exponential backoff after the [attempt]th failure, following the WorkManager configuration
+	 */
+	private fun backoffDelayMs(attempt: Int): Long {
+		val initialMs = WorkManagerConfig.getBackoffTimeUnit().toMillis(WorkManagerConfig.getInitialBackoffDelaySeconds())
+		val maxMs = TimeUnit.MINUTES.toMillis(WorkManagerConfig.getMaxBackoffDelayMinutes())
+		return (initialMs shl attempt.coerceAtMost(16)).coerceAtMost(maxMs)
+	}
+	
 	@OptIn(UnstableApi::class)
 	private suspend fun exportWithSpeed(input: File, speed: Float): File? = suspendCancellableCoroutine { cont ->
 		try {
@@ -399,57 +759,19 @@ class TranscriptionWorker(
 				true
 			}
 			
-			// HTTP errors - some are retryable, others are not
-			is HttpException -> {
-				when (error.code()) {
-					// Server errors (5xx) - likely transient, should retry
-					in 500..599 -> {
-						Log.d(TAG, "Server error ${error.code()} - retryable")
-						true
-					}
-					
-					// Rate limiting (429) - should retry with backoff
-					429 -> {
-						Log.d(TAG, "Rate limited (429) - retryable")
-						true
-					}
-					
-					// Client errors (4xx) - usually not retryable
-					400 -> {
-						Log.d(TAG, "Bad request (400) - not retryable")
-						false
-					}
-					401 -> {
-						Log.d(TAG, "Unauthorized (401) - not retryable (API key issue)")
-						false
-					}
-					403 -> {
-						Log.d(TAG, "Forbidden (403) - not retryable (permission issue)")
-						false
-					}
-					404 -> {
-						Log.d(TAG, "Not found (404) - not retryable")
-						false
-					}
-					413 -> {
-						Log.d(TAG, "Payload too large (413) - not retryable (file too big)")
-						false
-					}
-					
-					// Other 4xx errors - generally not retryable
-					in 400..499 -> {
-						Log.d(TAG, "Client error ${error.code()} - not retryable")
-						false
-					}
-					
-					// Other errors - retry to be safe
-					else -> {
-						Log.d(TAG, "HTTP error ${error.code()} - retryable")
-						true
-					}
+			// Rejected by the transcription API
+			is TranscriptionApiException -> {
+				if (error.quotaExhausted) {
+					Log.d(TAG, "Quota exhausted (429) - not retryable")
+					false
+				} else {
+					shouldRetryForStatus(error.code)
 				}
 			}
 			
+			// HTTP errors - some are retryable, others are not
+			is HttpException -> shouldRetryForStatus(error.code())
+			
 			// Security exceptions (API key issues) - not retryable
 			is SecurityException -> {
 				Log.d(TAG, "Security exception - not retryable")
@@ -469,4 +791,91 @@ class TranscriptionWorker(
 			}
 		}
 	}
+	
+	/**
+	 * Whether [error] is the kind of failure the circuit breaker counts, and so worth retrying
+	 * once the API is back, including a rejected key that may be replaced
+	 */
+	private fun shouldRetryOnRecovery(error: Throwable): Boolean {
+		return when (error) {
+			is IOException -> true
+			is TranscriptionApiException -> error.code == 401 || error.code == 403 || error.code in 500..599
+			else -> false
+		}
+	}
+	
+	/**
+	 * Determine if an HTTP status code should trigger a retry
+	 */
+	private fun shouldRetryForStatus(code: Int): Boolean {
+		return when (code) {
+			// Server errors (5xx) - likely transient, should retry
+			in 500..599 -> {
+				Log.d(TAG, "Server error ${code} - retryable")
+				true
+			}
+			
+			// Rate limiting (429) - should retry with backoff
+			429 -> {
+				Log.d(TAG, "Rate limited (429) - retryable")
+				true
+			}
+			
+			// Client errors (4xx) - usually not retryable
+			400 -> {
+				Log.d(TAG, "Bad request (400) - not retryable")
+				false
+			}
+			401 -> {
+				Log.d(TAG, "Unauthorized (401) - not retryable (API key issue)")
+				false
+			}
+			403 -> {
+				Log.d(TAG, "Forbidden (403) - not retryable (permission issue)")
+				false
+			}
+			404 -> {
+				Log.d(TAG, "Not found (404) - not retryable")
+				false
+			}
+			413 -> {
+				Log.d(TAG, "Payload too large (413) - not retryable (file too big)")
+				false
+			}
+			
+			// Other 4xx errors - generally not retryable
+			in 400..499 -> {
+				Log.d(TAG, "Client error ${code} - not retryable")
+				false
+			}
+			
+			// Other errors - retry to be safe
+			else -> {
+				Log.d(TAG, "HTTP error ${code} - retryable")
+				true
+			}
+		}
+	}
+}
+
+/**
+ * Point-in-time view of the transcription queue
+ */
+data class TranscriptionQueueMetrics(
+	val queueDepth: Int,
+	val inFlight: Int,
+	val heldResults: Int,
+	val commitLagMs: Long,
+	val concurrencyLimit: Int,
+	val rateLimitWaitMs: Long,
+	val cacheHits: Long,
+	val cacheMisses: Long,
+	val connections: NetworkConnectionStats,
+	val hedges: HedgeStats
+) {
+	override fun toString(): String {
+		return "$inFlight uploading (limit $concurrencyLimit), $queueDepth queued, $heldResults held for order " +
+			"(lag ${commitLagMs} ms), rate limit wait ${rateLimitWaitMs} ms, cache $cacheHits/${cacheHits + cacheMisses} hits, " +
+			"connections: $connections, $hedges"
+	}
 }
@@ -0,0 +1,111 @@
+package com.audioscribe.app.audio
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ChunkBoundaryPlannerTest {
+
+    companion object {
+        private const val RATE = 1_000          // Samples per second; keeps the buffers small
+        private const val FRAME_SAMPLES = 20    // 20 ms frames at RATE
+        private const val BYTES_PER_SECOND = 32_000
+        private const val LOUD = 10_000
+        private const val OFFER_BLOCK = 256
+    }
+
+    /**
+     * Chunk lengths in samples, and how much had been offered when each boundary was placed
+     */
+    private class Recorder : ChunkBoundaryPlanner.Listener {
+        val chunks = mutableListOf<Int>()
+        val offeredAtBoundary = mutableListOf<Int>()
+        var current = 0
+        var offered = 0
+
+        override fun onSamples(samples: ShortArray, offset: Int, count: Int) {
+            current += count
+        }
+
+        override fun onBoundary(next: ChunkWindow) {
+            chunks.add(current)
+            offeredAtBoundary.add(offered)
+            current = 0
+        }
+    }
+
+    private fun planner(preset: ChunkWindowPreset, recorder: Recorder, uplinkKbps: Int? = null) =
+        ChunkBoundaryPlanner(RATE, ChunkSizingPolicy(preset, BYTES_PER_SECOND) { uplinkKbps }, recorder)
+
+    /**
+     * Square wave whose level at each sample is [amplitude] of the sample index
+     */
+    private fun signal(length: Int, amplitude: (Int) -> Int) =
+        ShortArray(length) { i -> (if (i % 2 == 0) amplitude(i) else -amplitude(i)).toShort() }
+
+    private fun offer(planner: ChunkBoundaryPlanner, recorder: Recorder, samples: ShortArray) {
+        var pos = 0
+        while (pos < samples.size) {
+            val n = minOf(OFFER_BLOCK, samples.size - pos)
+            recorder.offered = pos + n
+            planner.offer(samples, pos, n)
+            pos += n
+        }
+    }
+
+    /**
+     * Level falls slowly across the window, so its quietest point is at the very end
+     */
+    private fun fadingSignal(minSeconds: Int, maxSeconds: Int): ShortArray {
+        val start = minSeconds * RATE
+        val span = (maxSeconds - minSeconds) * RATE
+        return signal(maxSeconds * RATE + RATE) { i ->
+            LOUD - 4_000 * (i - start).coerceIn(0, span) / span
+        }
+    }
+
+    @Test
+    fun everyPresetCanReachItsMaximum() {
+        for (preset in ChunkWindowPreset.values()) {
+            val recorder = Recorder()
+            offer(planner(preset, recorder), recorder, fadingSignal(preset.minSeconds, preset.maxSeconds))
+
+            // Centre of the last ~100 ms of the window
+            assertEquals(preset.name, preset.maxSeconds * RATE - 3 * FRAME_SAMPLES, recorder.chunks.first())
+        }
+    }
+
+    @Test
+    fun grownWindowCanReachItsMaximum() {
+        val recorder = Recorder()
+        offer(planner(ChunkWindowPreset.BALANCED, recorder, uplinkKbps = 10_000), recorder, fadingSignal(40, 90))
+
+        assertEquals(90 * RATE - 3 * FRAME_SAMPLES, recorder.chunks.first())
+    }
+
+    @Test
+    fun pauseCutsEarlyInsideTheSilence() {
+        val recorder = Recorder()
+        val silenceStart = 25 * RATE
+        val silenceEnd = silenceStart + 600
+        val samples = signal(50 * RATE) { i -> if (i in silenceStart until silenceEnd) 0 else LOUD }
+        offer(planner(ChunkWindowPreset.BALANCED, recorder), recorder, samples)
+
+        val cut = recorder.chunks.first()
+        // Detected after 400 ms of quiet, placed half of that back
+        assertEquals(silenceStart + 180, cut)
+        assertTrue(cut in silenceStart until silenceEnd)
+    }
+
+    @Test
+    fun steadyQuietAudioIsNotAPause() {
+        val recorder = Recorder()
+        // About -44 dBFS throughout, like a fan: near the floor, but neither very quiet nor a drop
+        val samples = signal(50 * RATE) { 200 }
+        offer(planner(ChunkWindowPreset.BALANCED, recorder), recorder, samples)
+
+        // No early cut: the boundary is placed only once the whole window has been seen
+        assertTrue(recorder.offeredAtBoundary.first() >= 45 * RATE)
+        assertEquals(20 * RATE + 2 * FRAME_SAMPLES, recorder.chunks.first())
+    }
+}
@@ -0,0 +1,114 @@
+package com.audioscribe.app.audio
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+class PcmResamplerTest {
+
+    companion object {
+        private const val IN_RATE = 44_100
+        private const val OUT_RATE = 16_000
+        private const val CHANNELS = 2
+        private const val FRAME_BYTES = CHANNELS * 2
+        private const val AMPLITUDE = 10_000.0
+
+        // Filter delay plus margin; output before this is still settling
+        private const val WARM_UP = 200
+    }
+
+    /**
+     * [seconds] of interleaved stereo PCM, one sine per channel
+     */
+    private fun stereo(seconds: Int, left: Double, right: Double = left): ByteBuffer {
+        val frames = IN_RATE * seconds
+        val buffer = ByteBuffer.allocateDirect(frames * FRAME_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+        for (i in 0 until frames) {
+            buffer.putShort((AMPLITUDE * sin(2 * PI * left * i / IN_RATE)).toInt().toShort())
+            buffer.putShort((AMPLITUDE * sin(2 * PI * right * i / IN_RATE)).toInt().toShort())
+        }
+        buffer.flip()
+        return buffer
+    }
+
+    private fun resampleAll(input: ByteBuffer): ShortArray {
+        val resampler = PcmResampler(IN_RATE, CHANNELS, OUT_RATE)
+        val out = ShortArray(resampler.maxOutputSamples(input.capacity()))
+        val n = resampler.process(input, 0, input.capacity(), out)
+        return out.copyOf(n)
+    }
+
+    private fun rms(samples: ShortArray, from: Int): Double {
+        var sum = 0.0
+        for (i in from until samples.size) {
+            sum += samples[i].toDouble() * samples[i]
+        }
+        return sqrt(sum / (samples.size - from))
+    }
+
+    @Test
+    fun oneSecondOfStereoBecomesOneSecondOfMono() {
+        val input = stereo(1, 440.0)
+        val resampler = PcmResampler(IN_RATE, CHANNELS, OUT_RATE)
+        val out = ShortArray(resampler.maxOutputSamples(input.capacity()))
+
+        val n = resampler.process(input, 0, input.capacity(), out)
+
+        assertEquals(OUT_RATE, n)
+        assertTrue(n <= out.size)
+        // The source buffer's position is left alone
+        assertEquals(0, input.position())
+    }
+
+    @Test
+    fun passbandToneKeepsItsLevel() {
+        val out = resampleAll(stereo(1, 1_000.0))
+
+        val expected = AMPLITUDE / sqrt(2.0)
+        assertTrue("rms ${rms(out, WARM_UP)}", abs(rms(out, WARM_UP) - expected) < expected * 0.02)
+    }
+
+    @Test
+    fun toneAboveOutputNyquistIsRemoved() {
+        // Without the low-pass this would alias to a full-level 4 kHz tone
+        val out = resampleAll(stereo(1, 12_000.0))
+
+        assertTrue("rms ${rms(out, WARM_UP)}", rms(out, WARM_UP) < AMPLITUDE * 0.001)
+    }
+
+    @Test
+    fun channelsAreAveraged() {
+        // Opposite-phase channels cancel in the downmix
+        val out = resampleAll(stereo(1, 1_000.0, right = -1_000.0))
+
+        assertTrue("rms ${rms(out, 0)}", rms(out, 0) < 2.0)
+    }
+
+    @Test
+    fun splitInputMatchesOneCall() {
+        val input = stereo(1, 1_000.0, right = 3_000.0)
+        val whole = resampleAll(input)
+
+        // Odd-sized pieces leave filter history and phase mid-cycle at every call
+        val resampler = PcmResampler(IN_RATE, CHANNELS, OUT_RATE)
+        val split = ShortArray(whole.size + 2)
+        val piece = 37 * FRAME_BYTES
+        var offset = 0
+        var n = 0
+        while (offset < input.capacity()) {
+            val length = minOf(piece, input.capacity() - offset)
+            n += resampler.process(input, offset, length, split, n)
+            offset += length
+        }
+
+        assertEquals(whole.size, n)
+        assertArrayEquals(whole, split.copyOf(n))
+    }
+}
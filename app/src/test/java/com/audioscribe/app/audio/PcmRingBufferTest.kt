@@ -0,0 +1,101 @@
+package com.audioscribe.app.audio
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.nio.ByteBuffer
+
+class PcmRingBufferTest {
+
+    /**
+     * Produces a running byte sequence, each read capped by the next scripted size
+     */
+    private class ScriptedSource(vararg sizes: Int) : PcmRingBuffer.PcmSource {
+        private val script = ArrayDeque(sizes.toList())
+        var next = 0
+
+        override fun read(target: ByteBuffer, sizeInBytes: Int): Int {
+            val n = minOf(sizeInBytes, script.removeFirstOrNull() ?: sizeInBytes)
+            for (i in 0 until n) {
+                target.put(i, (next++).toByte())
+            }
+            return n
+        }
+    }
+
+    private class Collector : PcmRingBuffer.PcmConsumer {
+        val bytes = mutableListOf<Int>()
+        var calls = 0
+
+        override fun consume(buffer: ByteBuffer, offset: Int, length: Int) {
+            calls++
+            for (i in 0 until length) {
+                bytes.add(buffer.get(offset + i).toInt())
+            }
+        }
+    }
+
+    private fun newRing() = PcmRingBuffer(capacityBytes = 16, frameBytes = 4, blockBytes = 8)
+
+    @Test
+    fun wrappedRegionIsDeliveredInOrderAsTwoParts() {
+        val ring = newRing()
+        val source = ScriptedSource()
+        ring.fill(source)
+        ring.fill(source)
+        ring.drain(Collector(), 12)
+
+        ring.fill(source)
+        val collector = Collector()
+        assertEquals(12, ring.drain(collector, 12))
+
+        assertEquals((12 until 24).toList(), collector.bytes)
+        assertEquals(2, collector.calls)
+    }
+
+    @Test
+    fun shortReadRealignsToTheNextBlock() {
+        val ring = newRing()
+        val source = ScriptedSource(4)
+
+        assertEquals(4, ring.fill(source))
+        assertEquals(4, ring.available())
+        // Finishes the part-filled block, then reads whole blocks again
+        assertEquals(4, ring.fill(source))
+        assertEquals(8, ring.fill(source))
+
+        val collector = Collector()
+        ring.drain(collector, 16)
+        assertEquals((0 until 16).toList(), collector.bytes)
+    }
+
+    @Test
+    fun fullRingDropsAndCountsOverrun() {
+        val ring = newRing()
+        val source = ScriptedSource()
+        ring.fill(source)
+        ring.fill(source)
+
+        assertEquals(0, ring.fill(source))
+        assertEquals(1L, ring.stats().overrunCount)
+        assertEquals(8L, ring.stats().overrunBytes)
+
+        val collector = Collector()
+        ring.drain(collector, 16)
+        assertEquals((0 until 16).toList(), collector.bytes)
+    }
+
+    @Test
+    fun discardLeavesTheRingUntouched() {
+        val ring = newRing()
+        val source = ScriptedSource()
+
+        assertEquals(8, ring.discard(source))
+        assertEquals(0, ring.available())
+        assertEquals(8, ring.fill(source))
+        assertEquals(0L, ring.stats().overrunCount)
+
+        val collector = Collector()
+        ring.drain(collector, 16)
+        assertEquals((8 until 16).toList(), collector.bytes)
+    }
+}
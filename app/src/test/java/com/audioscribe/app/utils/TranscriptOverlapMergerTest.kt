@@ -0,0 +1,70 @@
+package com.audioscribe.app.utils
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class TranscriptOverlapMergerTest {
+
+    @Test
+    fun trimsWordsRepeatedAcrossTheSeam() {
+        val trimmed = TranscriptOverlapMerger.trimOverlap(
+            "the quick brown fox jumps over",
+            "fox jumps over the lazy dog",
+            overlapMs = 2_000
+        )
+        assertEquals("the lazy dog", trimmed)
+    }
+
+    @Test
+    fun matchesIgnoringCaseAndPunctuation() {
+        val trimmed = TranscriptOverlapMerger.trimOverlap(
+            "The quick brown Fox jumps, over.",
+            "fox jumps over the lazy dog",
+            overlapMs = 2_000
+        )
+        assertEquals("the lazy dog", trimmed)
+    }
+
+    @Test
+    fun keepsLineBreaksOfTheNextChunk() {
+        val trimmed = TranscriptOverlapMerger.trimOverlap(
+            "the quick brown fox jumps over",
+            "fox jumps\nover the lazy\ndog",
+            overlapMs = 2_000
+        )
+        assertEquals("the lazy\ndog", trimmed)
+    }
+
+    @Test
+    fun returnsEmptyWhenTheNextChunkIsAllOverlap() {
+        assertEquals("", TranscriptOverlapMerger.trimOverlap("we will meet on friday", "on friday", overlapMs = 1_000))
+    }
+
+    @Test
+    fun ignoresSpuriousBigramAwayFromTheEndOfThePreviousChunk() {
+        val next = "people went home and then we slept"
+        val trimmed = TranscriptOverlapMerger.trimOverlap(
+            "and then the meeting finally ended for everyone today",
+            next,
+            overlapMs = 2_000
+        )
+        assertEquals(next, trimmed)
+    }
+
+    @Test
+    fun ignoresSpuriousBigramAwayFromTheStartOfTheNextChunk() {
+        val next = "people went home early that day and then slept"
+        val trimmed = TranscriptOverlapMerger.trimOverlap(
+            "so the meeting ended and then",
+            next,
+            overlapMs = 2_000
+        )
+        assertEquals(next, trimmed)
+    }
+
+    @Test
+    fun leavesTextAloneWithoutOverlap() {
+        val next = "fox jumps over the lazy dog"
+        assertEquals(next, TranscriptOverlapMerger.trimOverlap("the quick brown fox jumps over", next, overlapMs = 0))
+    }
+}